@@ -0,0 +1,118 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Proof that an item is not a leaf of a tree whose leaves are sorted (see {@linkplain
+ * SortedFixedLeafTree}). It consists of the {@linkplain Proof proofs} of the 2 adjacent leaves
+ * the item would fall between: the one just below it (the <em>left</em>), and the one just
+ * above it (the <em>right</em>). If the item would fall before the first leaf, there is
+ * no left proof; if after the last, no right proof. The 2 proofs must agree on the root.
+ * Each is a complete, independently verifiable proof, so the hashes above the leaves'
+ * lowest common ancestor are stored (and serialized) twice.
+ * <p>
+ * Note the proof is only meaningful if the tree's leaves are known to be sorted.
+ * </p>
+ *
+ * @see SortedFixedLeafTree#absenceProof(byte[])
+ */
+public final class AbsenceProof {
+
+  private final byte[] item;
+  private final Proof left;
+  private final Proof right;
+
+
+  /**
+   * @param item  the item proven absent (copied)
+   * @param left  proof of the greatest leaf less than the item; {@code null} if none
+   * @param right proof of the least leaf greater than the item; {@code null} if none
+   *
+   * @throws IllegalArgumentException if both proofs are {@code null}
+   */
+  public AbsenceProof(byte[] item, Proof left, Proof right) throws IllegalArgumentException {
+    this.item = Objects.requireNonNull(item, "item").clone();
+    this.left = left;
+    this.right = right;
+    if (left == null && right == null)
+      throw new IllegalArgumentException("left and right proofs both null");
+  }
+
+
+  /**
+   * Returns [a copy of] the item proven absent.
+   */
+  public byte[] item() {
+    return item.clone();
+  }
+
+
+  /**
+   * Returns the proof of the greatest leaf less than the item, or {@code null}, if
+   * the item is less than every leaf.
+   */
+  public Proof left() {
+    return left;
+  }
+
+
+  /**
+   * Returns the proof of the least leaf greater than the item, or {@code null}, if
+   * the item is greater than every leaf.
+   */
+  public Proof right() {
+    return right;
+  }
+
+
+  /**
+   * Returns [a copy of] the root hash of the tree.
+   */
+  public byte[] rootHash() {
+    return (left == null ? right : left).rootHash();
+  }
+
+
+  /**
+   * Returns the number of leaves in the tree.
+   */
+  public long leafCount() {
+    return (left == null ? right : left).longLeafCount();
+  }
+
+
+  /**
+   * Verifies the proof. It is valid iff
+   * <ol>
+   * <li>the left and right proofs are valid, and are for the same tree (root hash);</li>
+   * <li>their leaves are adjacent (or else, the one present is for the first or last leaf); and</li>
+   * <li>the item falls strictly between their leaves (as unsigned bytes, lexicographically).</li>
+   * </ol>
+   */
+  public boolean verify() {
+    if (left != null && right != null) {
+      if (!left.getHashAlgo().equals(right.getHashAlgo()) ||
+          left.longLeafCount() != right.longLeafCount() ||
+          left.longLeafIndex() + 1 != right.longLeafIndex() ||
+          !Arrays.equals(left.rootHash(), right.rootHash()))
+        return false;
+    } else if (left == null) {
+      if (right.longLeafIndex() != 0)
+        return false;
+    } else if (left.longLeafIndex() != left.longLeafCount() - 1)
+      return false;
+
+    if (left != null && Arrays.compareUnsigned(left.item(), item) >= 0)
+      return false;
+    if (right != null && Arrays.compareUnsigned(item, right.item()) >= 0)
+      return false;
+
+    return (left == null || left.verify()) && (right == null || right.verify());
+  }
+
+}
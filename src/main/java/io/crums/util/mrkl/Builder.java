@@ -6,25 +6,45 @@ package io.crums.util.mrkl;
 
 import static io.crums.util.mrkl.intenal.Bytes.copy;
 
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import io.crums.util.mrkl.index.AbstractNode;
 import io.crums.util.mrkl.index.TreeIndex;
+import io.crums.util.mrkl.intenal.AppendOnlyList;
+import io.crums.util.mrkl.intenal.ListExtension;
 
 /**
  * Collects items (byte arrays) and builds a Merkle tree. If all the items (the leaves of the tree)
  * {@linkplain #add(byte[]) added} are fixed-width (and the tree's data fits under 1GB memory), then the instance
- * builds a {@linkplain FixedLeafTree}; otherwise, it builds a {@linkplain FreeLeafTree} instance.
+ * builds a {@linkplain FixedLeafTree}; otherwise, it builds a {@linkplain CompactFreeLeafTree} instance
+ * (or if the leaves exceed 2GB, a {@linkplain FreeLeafTree}).
+ * <p>
+ * Instances are safe under concurrent access. Mutations are guarded by a
+ * {@linkplain ReentrantLock} (not a monitor), so they play well with virtual threads.
+ * </p><p>
+ * A tree over the items added so far can also be {@linkplain #snapshot() snapshot}
+ * without clearing the builder (e.g. to publish intermediate roots while items are
+ * still being added).
+ * </p><p>
+ * For repeated batches, an instance may be constructed in <em>reuse mode</em> (see
+ * {@linkplain #Builder(String, boolean, int, int)}), in which case the capacity allocated
+ * in one build cycle is retained for the next.
+ * </p>
  */
 public class Builder {
   
   /**
-   * Synchronization lock.
+   * Synchronization lock. An explicit lock (rather than a monitor), so that
+   * virtual threads blocked on (or hashing under) the lock are not pinned to
+   * their carrier threads.
    */
-  protected final Object lock;
+  protected final ReentrantLock lock;
   
   /**
    * Breadth-first view of the nodes' data.
@@ -32,6 +52,10 @@ public class Builder {
   protected final List<List<byte[]>> data;
   protected final MessageDigest digest;
   protected final boolean copyOnWrite;
+  /**
+   * Used for hashing outside the lock.
+   */
+  protected final DigestPool digests;
   
   /**
    * Keeps track of the leaf widths seen. -2 means unset; -1 means multiple widths seen.
@@ -41,6 +65,19 @@ public class Builder {
   private final static int LEAFWIDTH_UNSET = -2;
   private final static int LEAFWIDTH_VARIABLE = -1;
   
+  /**
+   * Sizing hint. Zero, if none.
+   */
+  private final int expectedLeaves;
+  /**
+   * Retained capacity, cycled thru on {@linkplain #clear()}. Empty, if not in reuse mode.
+   */
+  private final Slab[] slabs;
+  /**
+   * Index of the current slab.
+   */
+  private int slab;
+  
 
   /**
    * Creates a new copy-on-write (copy-on-add) instance with a dedicated <code>MessageDigest</code> using the
@@ -67,7 +104,46 @@ public class Builder {
    * @throws IllegalArgumentException in lieu of checked {@code NoSuchAlgorithmException}
    */
   public Builder(String algo, boolean copyOnWrite) throws IllegalArgumentException {
-    this.lock = new Object();
+    this(algo, copyOnWrite, 0, 0);
+  }
+  
+
+  /**
+   * Creates a new instance, optionally in reuse mode. In reuse mode, the builder retains
+   * the capacity it allocates (for the nodes' lists and, if the leaves are fixed-width,
+   * the tree's data buffer) across {@linkplain #build()} cycles in a ring of {@code slabs};
+   * so once the builder has warmed up, batches of up to {@code expectedLeaves} allocate
+   * little beyond the nodes themselves.
+   * <p>
+   * The price is that the trees built (and {@linkplain #snapshot() snapshots} taken) are
+   * only valid for a limited time: a built tree is valid until the {@code slabs}-th subsequent
+   * build (its buffer is then overwritten); a snapshot, until the {@code slabs}-th subsequent
+   * {@linkplain #clear() clear}, counting the one ending its build cycle. So with 1 slab,
+   * a tree is valid only until the next build; with 2 slabs (double-buffered), it remains valid
+   * thru the next build cycle. (Variable-width trees are not built into retained buffers.)
+   * </p>
+   * 
+   * @param algo the digest algorithm (e.g. MD5, SHA-1, SHA-256)
+   * @param copyOnWrite if <code>true</code>, then every {@linkplain #add(byte[])} is argument
+   *                    is copied
+   * @param expectedLeaves  sizing hint: the expected number of leaves per build (&ge; 0;
+   *                        zero, if unknown)
+   * @param slabs       the number of slabs of retained capacity (&ge; 0); zero, if not
+   *                    in reuse mode
+   * 
+   * @throws IllegalArgumentException in lieu of checked {@code NoSuchAlgorithmException}
+   */
+  public Builder(String algo, boolean copyOnWrite, int expectedLeaves, int slabs)
+      throws IllegalArgumentException {
+    if (expectedLeaves < 0)
+      throw new IllegalArgumentException("expectedLeaves: " + expectedLeaves);
+    if (slabs < 0)
+      throw new IllegalArgumentException("slabs: " + slabs);
+    this.expectedLeaves = expectedLeaves;
+    this.slabs = new Slab[slabs];
+    for (int index = 0; index < slabs; ++index)
+      this.slabs[index] = new Slab();
+    this.lock = new ReentrantLock();
     this.data = new ArrayList<>();
     try {
       digest = MessageDigest.getInstance(algo);
@@ -76,8 +152,9 @@ public class Builder {
     }
     if (digest.getDigestLength() == 0)
       throw new IllegalArgumentException(algo + " implementation does not advertise hash length");
+    this.digests = DigestPool.of(algo);
     this.copyOnWrite = copyOnWrite;
-    data.add(new ArrayList<>());
+    data.add(levelList(0));
   }
   
   
@@ -89,9 +166,13 @@ public class Builder {
   protected Builder(Builder copy) {
     this.lock = copy.lock;
     this.digest = copy.digest;
+    this.digests = copy.digests;
     this.copyOnWrite = copy.copyOnWrite;
     this.data = copy.data;
     this.leafWidth = copy.leafWidth;
+    this.expectedLeaves = copy.expectedLeaves;
+    this.slabs = copy.slabs;
+    this.slab = copy.slab;
   }
   
   
@@ -112,16 +193,16 @@ public class Builder {
   
   /**
    * Convenience method to hash using this instance's digest {@linkplain #getHashAlgo() algo}.
-   * Does not affect the state of the builder.
+   * Does not affect the state of the builder. Does not contend with other threads
+   * (uses a pooled digest, not the builder's).
    * 
    * @param data to be hashed
    * @return a new array containing the hash
+   * 
+   * @see DigestPool
    */
   public byte[] hash(byte[] data) {
-    synchronized (lock) {
-      digest.reset();
-      return digest.digest(data);
-    }
+    return digests.hash(data);
   }
   
   
@@ -141,20 +222,36 @@ public class Builder {
    */
   public int add(byte[] item, int off, int len) throws IndexOutOfBoundsException {
     
-    synchronized (lock) {
-      level(0).add(copyImpl(item, off, len));
-      
-      if (len != leafWidth && leafWidth != LEAFWIDTH_VARIABLE)
-        leafWidth = (leafWidth == LEAFWIDTH_UNSET) ? len : LEAFWIDTH_VARIABLE;
+    byte[] leaf = copyImpl(item, off, len);   // copy outside the lock
+    lock.lock();
+    try {
+      return addLeaf(leaf);
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  
+  /**
+   * Adds the given leaf as is (no copy). The caller holds the lock.
+   * 
+   * @return the leaf index
+   */
+  int addLeaf(byte[] leaf) {
+    
+    level(0).add(leaf);
+    
+    final int len = leaf.length;
+    if (len != leafWidth && leafWidth != LEAFWIDTH_VARIABLE)
+      leafWidth = (leafWidth == LEAFWIDTH_UNSET) ? len : LEAFWIDTH_VARIABLE;
+    
+    if (levelPaired(0)) {
+      nextLevel(0).add(Tree.hashLeaves(lastLeft(0), lastRight(0), digest));
       
-      if (levelPaired(0)) {
-        nextLevel(0).add(Tree.hashLeaves(lastLeft(0), lastRight(0), digest));
-        
-        for (int index = 1; levelPaired(index); ++index)
-          nextLevel(index).add(Tree.hashInternals(lastLeft(index), lastRight(index), digest));
-      }
-      return count() - 1;
+      for (int index = 1; levelPaired(index); ++index)
+        nextLevel(index).add(Tree.hashInternals(lastLeft(index), lastRight(index), digest));
     }
+    return count() - 1;
   }
   
   
@@ -173,22 +270,70 @@ public class Builder {
    */
   public Tree build() {
     
-    synchronized (lock) {
-      
-      Tree tree;
-      
-      if (leafWidth > 0)
-        tree = new FixedLeafBuilder(this).build();
+    lock.lock();
+    try {
       
-      else {
-        completeTree();
-        tree = packageTree();
-      }
+      // (the builder delegated to shares our state; only we clear it)
+      Builder delegate = leafWidth > 0 ? new FixedLeafBuilder(this) : this;
+      delegate.completeTree();
+      Tree tree = delegate.packageTree();
 
       clear();
       
       return tree;
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  
+  /**
+   * Returns an immutable snapshot of the tree over the items added so far. Unlike
+   * {@linkplain #build()}, the builder is not cleared and may continue to be added to
+   * (concurrently, even). The snapshot shares the nodes already computed by the builder:
+   * only the carries (at most one per level) are computed, and that outside the lock.
+   * So a snapshot costs O(log n) hashes, and O(log n) memory besides the shared nodes.
+   * <p>
+   * In reuse mode, a snapshot is only valid until the {@code slabs}-th subsequent
+   * {@linkplain #clear() clear} (counting the one ending its build cycle).
+   * </p>
+   * 
+   * @throws IllegalStateException if fewer than 2 items have been added
+   */
+  public Tree snapshot() throws IllegalStateException {
+    final int count;
+    final int width;
+    final List<List<byte[]>> levels;
+    
+    lock.lock();
+    try {
+      count = count();
+      if (count < 2)
+        throw new IllegalStateException("nothing to snapshot; count is " + count);
+      width = leafWidth();
+      levels = new ArrayList<>(data.size());
+      for (List<byte[]> level : data)
+        levels.add(frozenView(level));
+    } finally {
+      lock.unlock();
+    }
+    
+    return new SnapshotTree(count, getHashAlgo(), levels, width, digests);
+  }
+  
+  
+  /**
+   * Returns an immutable view of the given level's present nodes. The caller holds the lock.
+   */
+  private static List<byte[]> frozenView(List<byte[]> level) {
+    if (level instanceof AppendOnlyList)
+      return ((AppendOnlyList<byte[]>) level).view();
+    if (level instanceof ListExtension) {
+      var ext = (ListExtension<byte[]>) level;
+      return new ListExtension<>(ext.first(), frozenView(ext.second()));
     }
+    // (a subclass's own list type) copy it
+    return List.copyOf(level);
   }
   
   
@@ -238,6 +383,13 @@ public class Builder {
 
     TreeIndex<?> idx = TreeIndex.newGeneric(count());
     
+    long leavesSize = 0;
+    for (int index = 0; index < count(); ++index)
+      leavesSize += level(0).get(index).length;
+    
+    if (leavesSize <= Integer.MAX_VALUE)
+      return packageCompactTree(idx, (int) leavesSize);
+    
     byte[][] bb = new byte[idx.totalCount()][];
     
     for (int serialIndex = 0, level = idx.height(); level >= 0; --level)
@@ -249,6 +401,35 @@ public class Builder {
   }
   
   
+  private CompactFreeLeafTree packageCompactTree(TreeIndex<?> idx, int leavesSize) {
+    
+    final int count = count();
+    final int hashWidth = hashWidth();
+    
+    byte[] internals = new byte[(count - 1) * hashWidth];
+    int pos = 0;
+    for (int level = idx.height(); level > 0; --level)
+      for (int index = 0; index < levelSize(level); ++index, pos += hashWidth)
+        System.arraycopy(level(level).get(index), 0, internals, pos, hashWidth);
+    
+    assert pos == internals.length;
+    
+    int[] offsets = new int[count + 1];
+    byte[] leaves = new byte[leavesSize];
+    pos = 0;
+    for (int index = 0; index < count; ++index) {
+      byte[] leaf = level(0).get(index);
+      System.arraycopy(leaf, 0, leaves, pos, leaf.length);
+      pos += leaf.length;
+      offsets[index + 1] = pos;
+    }
+    
+    return new CompactFreeLeafTree(
+        count, getHashAlgo(),
+        ByteBuffer.wrap(internals), IntBuffer.wrap(offsets), ByteBuffer.wrap(leaves));
+  }
+  
+  
   /**
    * Returns the leaf width if fixed; -1 if variable; -2 if not set.
    * @return &ge; -2
@@ -262,22 +443,70 @@ public class Builder {
    * Clears the state of the instance, as if new.
    */
   public void clear() {
-    synchronized (lock) {
-      // help out the gc and clear references
-      data.forEach(level -> level.clear());
+    lock.lock();
+    try {
+      // replace the levels (rather than clear them):
+      // they may be shared with snapshots
       data.clear();
-      data.add(new ArrayList<>());
+      if (slabs.length != 0) {
+        slab = (slab + 1) % slabs.length;
+        for (List<byte[]> level : slabs[slab].levels)
+          recycle(level);
+      }
+      data.add(levelList(0));
       leafWidth = LEAFWIDTH_UNSET;
+    } finally {
+      lock.unlock();
     }
   }
   
   
+  /**
+   * Returns the expected number of leaves per build (sizing hint); zero, if unknown.
+   */
+  public final int expectedLeaves() {
+    return expectedLeaves;
+  }
+  
+  
+  /**
+   * Determines whether this instance is in reuse mode.
+   * 
+   * @see #Builder(String, boolean, int, int)
+   */
+  public final boolean isReusing() {
+    return slabs.length != 0;
+  }
+  
+  
+  /**
+   * Returns a buffer of at least {@code size} bytes for packaging a tree's data. In
+   * reuse mode, the buffer belongs to the current slab (and is retained across build cycles);
+   * otherwise, it is a new array of exactly {@code size} bytes. The caller holds the lock.
+   * 
+   * @param size      the minimum number of bytes needed
+   * @param capacity  the number of bytes to allocate, if the buffer must be (re)allocated
+   *                  in reuse mode (&ge; {@code size})
+   */
+  protected final byte[] packageBuffer(int size, int capacity) {
+    if (slabs.length == 0)
+      return new byte[size];
+    Slab current = slabs[slab];
+    if (current.buffer == null || current.buffer.length < size)
+      current.buffer = new byte[Math.max(size, capacity)];
+    return current.buffer;
+  }
+  
+  
   /**
    * Returns the number of items added.
    */
   public final int count() {
-    synchronized (lock) {
+    lock.lock();
+    try {
       return level(0).size();
+    } finally {
+      lock.unlock();
     }
   }
   
@@ -340,15 +569,42 @@ public class Builder {
   private List<byte[]> ensureLevel(int index) {
     List<byte[]> level;
     if (data.size() == index) {
-      level = newByteArrayList(index);
+      level = levelList(index);
       data.add(level);
     } else
       level = data.get(index);
     return level;
   }
   
+  /**
+   * Returns a new, empty list for the nodes at the given level. The returned list should be
+   * an {@linkplain AppendOnlyList}; otherwise, {@linkplain #snapshot() snapshots} must copy it.
+   */
   protected List<byte[]> newByteArrayList(int level) {
-    return new ArrayList<>();
+    if (expectedLeaves == 0)
+      return new AppendOnlyList<>();
+    // (+1 for the carry)
+    return new AppendOnlyList<>((expectedLeaves >>> level) + 1);
+  }
+  
+  /**
+   * Returns an empty list for the nodes at the given level: in reuse mode, the current slab's;
+   * otherwise, a {@linkplain #newByteArrayList(int) new} one.
+   */
+  private List<byte[]> levelList(int level) {
+    if (slabs.length == 0)
+      return newByteArrayList(level);
+    List<List<byte[]>> retained = slabs[slab].levels;
+    if (retained.size() == level)
+      retained.add(newByteArrayList(level));
+    return retained.get(level);
+  }
+  
+  private static void recycle(List<byte[]> level) {
+    if (level instanceof AppendOnlyList)
+      ((AppendOnlyList<byte[]>) level).recycle();
+    else
+      level.clear();
   }
   
   protected final List<byte[]> level(int index) {
@@ -358,5 +614,16 @@ public class Builder {
   private List<byte[]> nextLevel(int index) {
     return ensureLevel(index + 1);
   }
+  
+  
+  /**
+   * Capacity retained across build cycles in reuse mode.
+   */
+  private final static class Slab {
+    /** Retained level lists (not necessarily all in use). */
+    final List<List<byte[]>> levels = new ArrayList<>();
+    /** Retained packaging buffer. */
+    byte[] buffer;
+  }
 
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A caching view of another {@code Tree}. Designed to sit in front of disk-backed trees
+ * (e.g. ones {@linkplain Trees#load(java.nio.file.Path) loaded} from file) when serving
+ * proofs: every proof touches the top levels of the tree, while the lower levels are
+ * touched rarely.
+ * <p>
+ * The top {@linkplain #pinnedLevels() pinned levels} are read into memory on construction
+ * and served without locking. Nodes below these are kept in a least-recently-used (LRU)
+ * cache bounded by the total byte size of the cached nodes. Hit and miss counts are
+ * maintained for tuning.
+ * </p><p>
+ * Instances are safe under concurrent access (if the backing tree is).
+ * </p>
+ */
+public class CachedTree extends Tree {
+
+  /**
+   * Approximate per-entry overhead (in bytes) charged against the cache capacity.
+   */
+  private final static int ENTRY_OVERHEAD = 64;
+
+
+  private final Tree tree;
+  private final int minPinnedLevel;
+  private final byte[][][] pinned;
+
+  private final long capacity;
+  private final LinkedHashMap<Integer, byte[]> lru = new LinkedHashMap<>(256, 0.75f, true);
+  private long cachedBytes;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+
+  /**
+   * Creates a new instance.
+   *
+   * @param tree          the backing tree
+   * @param pinnedLevels  the number of levels, counting down from the root, that are read
+   *                      into memory now (&ge; 0; if greater than the number of levels,
+   *                      then the entire tree is pinned)
+   * @param capacity      the maximum number of bytes held in the LRU cache of the
+   *                      unpinned levels (&ge; 0)
+   */
+  public CachedTree(Tree tree, int pinnedLevels, long capacity) throws IllegalArgumentException {
+    // (own index: so that nodes, and therefore proofs, read thru the cache)
+    super(Objects.requireNonNull(tree, "tree").idx().count(), tree.getHashAlgo());
+    this.tree = tree;
+    this.capacity = capacity;
+    if (pinnedLevels < 0)
+      throw new IllegalArgumentException("pinnedLevels: " + pinnedLevels);
+    if (capacity < 0)
+      throw new IllegalArgumentException("capacity: " + capacity);
+
+    final int height = idx().height();
+    this.minPinnedLevel = Math.max(0, height + 1 - pinnedLevels);
+    this.pinned = new byte[height + 1 - minPinnedLevel][][];
+    for (int level = height; level >= minPinnedLevel; --level) {
+      byte[][] nodes = new byte[idx().count(level)][];
+      for (int index = 0; index < nodes.length; ++index)
+        nodes[index] = tree.data(level, index);
+      pinned[level - minPinnedLevel] = nodes;
+    }
+  }
+
+
+  /**
+   * Returns the backing tree.
+   */
+  public final Tree backingTree() {
+    return tree;
+  }
+
+
+  /**
+   * Returns the number of levels pinned in memory.
+   */
+  public final int pinnedLevels() {
+    return pinned.length;
+  }
+
+
+  /**
+   * Returns the maximum number of bytes held in the LRU cache.
+   */
+  public final long capacity() {
+    return capacity;
+  }
+
+
+  /**
+   * Returns the number of bytes currently held in the LRU cache. Each entry
+   * is charged its data length plus a fixed overhead.
+   */
+  public final long cachedBytes() {
+    synchronized (lru) {
+      return cachedBytes;
+    }
+  }
+
+
+  /**
+   * Returns the number of nodes currently held in the LRU cache.
+   */
+  public final int cachedNodes() {
+    synchronized (lru) {
+      return lru.size();
+    }
+  }
+
+
+  /**
+   * Returns the number of {@linkplain #data(int, int) data} lookups served from memory
+   * (either pinned or cached).
+   */
+  public final long hits() {
+    return hits.sum();
+  }
+
+
+  /**
+   * Returns the number of {@linkplain #data(int, int) data} lookups served from the
+   * backing tree.
+   */
+  public final long misses() {
+    return misses.sum();
+  }
+
+
+  /**
+   * Resets the hit and miss counters to zero.
+   */
+  public final void resetStats() {
+    hits.reset();
+    misses.reset();
+  }
+
+
+  /**
+   * Evicts all nodes from the LRU cache. The pinned levels are unaffected.
+   */
+  public final void clearCache() {
+    synchronized (lru) {
+      lru.clear();
+      cachedBytes = 0;
+    }
+  }
+
+
+  @Override
+  public byte[] data(int level, int index) {
+    if (level >= minPinnedLevel) {
+      byte[] node = pinned[level - minPinnedLevel][index];
+      hits.increment();
+      return node.clone();
+    }
+
+    Integer key = idx().serialIndex(level, index);
+    byte[] node;
+    synchronized (lru) {
+      node = lru.get(key);
+    }
+    if (node != null) {
+      hits.increment();
+      return node.clone();
+    }
+
+    misses.increment();
+    node = tree.data(level, index);
+    final long charge = node.length + ENTRY_OVERHEAD;
+    if (charge <= capacity) {
+      byte[] copy = node.clone();
+      synchronized (lru) {
+        if (lru.put(key, copy) == null)
+          cachedBytes += charge;
+        evict();
+      }
+    }
+    return node;
+  }
+
+
+  // caller holds lock on lru
+  private void evict() {
+    for (Iterator<Map.Entry<Integer, byte[]>> i = lru.entrySet().iterator();
+        cachedBytes > capacity && i.hasNext(); ) {
+      cachedBytes -= i.next().getValue().length + ENTRY_OVERHEAD;
+      i.remove();
+    }
+  }
+
+
+  @Override
+  public int leafWidth() {
+    return tree.leafWidth();
+  }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Objects;
+
+/**
+ * A compact {@code Tree} allowing variable length leaves. Unlike {@linkplain FreeLeafTree},
+ * which holds an object per node, this layout uses 3 contiguous blocks:
+ * <ol>
+ * <li><em>Internal nodes.</em> The fixed-width hashes of the internal nodes in serial (breadth-first)
+ * order.</li>
+ * <li><em>Leaf offsets.</em> <em>count + 1</em> offsets into the leaves block. The <em>i</em>th leaf
+ * begins at the <em>i</em>th offset and ends at the next.</li>
+ * <li><em>Leaves.</em> The leaves, back to back.</li>
+ * </ol>
+ * <p>
+ * The blocks may be on-heap, direct, or memory-mapped. Since offsets are {@code int}s, the leaves
+ * block is limited to 2 gigabytes.
+ * </p>
+ * 
+ * @see #newInstance(Tree)
+ * @see Trees
+ */
+public class CompactFreeLeafTree extends Tree {
+
+  private final ByteBuffer internals;
+  private final IntBuffer offsets;
+  private final ByteBuffer leaves;
+  private final int algoWidth;
+
+
+  /**
+   * Creates a new instance. The arguments' contents should not be modified. (Their
+   * positions and limits are not modified.)
+   * 
+   * @param count     the number of leaf nodes
+   * @param algo      the hashing algorithm
+   * @param internals the internal nodes' hashes in serial order (remaining bytes, a multiple
+   *                  of <em>count - 1</em>)
+   * @param offsets   <em>count + 1</em> non-decreasing offsets into {@code leaves} (remaining)
+   * @param leaves    the leaves' block (remaining bytes)
+   * 
+   * @throws IllegalArgumentException if the arguments are inconsistent
+   */
+  public CompactFreeLeafTree(
+      int count, String algo, ByteBuffer internals, IntBuffer offsets, ByteBuffer leaves)
+          throws IllegalArgumentException {
+
+    super(count, algo);
+    this.internals = Objects.requireNonNull(internals, "internals").slice();
+    this.offsets = Objects.requireNonNull(offsets, "offsets").slice();
+    this.leaves = Objects.requireNonNull(leaves, "leaves").slice();
+
+    this.algoWidth = this.internals.capacity() / (count - 1);
+    if (algoWidth * (count - 1) != this.internals.capacity())
+      throw new IllegalArgumentException(
+          "internals size " + this.internals.capacity() + " not a multiple of " + (count - 1));
+    if (algoWidth < FixedLeafTree.MIN_ALGO_WIDTH)
+      throw new IllegalArgumentException("algoWidth (" + algoWidth + ") < " + FixedLeafTree.MIN_ALGO_WIDTH);
+
+    if (this.offsets.capacity() != count + 1)
+      throw new IllegalArgumentException(
+          "expected " + (count + 1) + " offsets; actual " + this.offsets.capacity());
+
+    int prev = this.offsets.get(0);
+    if (prev < 0)
+      throw new IllegalArgumentException("negative offset: " + prev);
+    for (int index = 1; index <= count; ++index) {
+      int next = this.offsets.get(index);
+      if (next < prev)
+        throw new IllegalArgumentException(
+            "offsets out of order at [" + index + "]: " + prev + ", " + next);
+      prev = next;
+    }
+    if (prev > this.leaves.capacity())
+      throw new IllegalArgumentException(
+          "last offset " + prev + " > leaves block size " + this.leaves.capacity());
+  }
+
+
+  /**
+   * Copy constructor.
+   */
+  protected CompactFreeLeafTree(CompactFreeLeafTree copy) {
+    super(copy);
+    this.internals = copy.internals;
+    this.offsets = copy.offsets;
+    this.leaves = copy.leaves;
+    this.algoWidth = copy.algoWidth;
+  }
+
+
+  /**
+   * Returns a compact copy of the given tree.
+   * 
+   * @throws IllegalArgumentException if the leaves do not fit in a 2GB block
+   */
+  public static CompactFreeLeafTree newInstance(Tree tree) throws IllegalArgumentException {
+    final int count = tree.idx().count();
+
+    int[] offsets = new int[count + 1];
+    long size = 0;
+    for (int index = 0; index < count; ++index) {
+      size += tree.data(0, index).length;
+      if (size > Integer.MAX_VALUE)
+        throw new IllegalArgumentException("leaves exceed 2GB: " + tree);
+      offsets[index + 1] = (int) size;
+    }
+
+    byte[] leaves = new byte[(int) size];
+    for (int index = 0; index < count; ++index) {
+      byte[] leaf = tree.data(0, index);
+      System.arraycopy(leaf, 0, leaves, offsets[index], leaf.length);
+    }
+
+    final int algoWidth = tree.hashAlgoWidth();
+    byte[] internals = new byte[(count - 1) * algoWidth];
+    for (int serialIndex = 0, level = tree.idx().height(); level > 0; --level)
+      for (int index = 0; index < tree.idx().count(level); ++index, ++serialIndex)
+        System.arraycopy(tree.data(level, index), 0, internals, serialIndex * algoWidth, algoWidth);
+
+    return new CompactFreeLeafTree(
+        count, tree.getHashAlgo(),
+        ByteBuffer.wrap(internals), IntBuffer.wrap(offsets), ByteBuffer.wrap(leaves));
+  }
+
+
+  @Override
+  public byte[] data(int level, int index) {
+    byte[] data;
+    if (level == 0) {
+      Objects.checkIndex(index, idx().count());
+      int start = offsets.get(index);
+      data = new byte[offsets.get(index + 1) - start];
+      leaves.get(start, data);
+    } else {
+      data = new byte[algoWidth];
+      internals.get(idx().serialIndex(level, index) * algoWidth, data);
+    }
+    return data;
+  }
+
+
+  /**
+   * Returns the byte length of the leaf at the given index.
+   */
+  public final int leafLength(int index) {
+    Objects.checkIndex(index, idx().count());
+    return offsets.get(index + 1) - offsets.get(index);
+  }
+
+
+  /**
+   * Returns the internal nodes' block.
+   * 
+   * @return a new <em>read-only</em> view
+   */
+  public ByteBuffer internalsBlock() {
+    return internals.asReadOnlyBuffer();
+  }
+
+
+  /**
+   * Returns the leaf offsets.
+   * 
+   * @return a new <em>read-only</em> view of the <em>count + 1</em> offsets
+   */
+  public IntBuffer offsetsBlock() {
+    return offsets.asReadOnlyBuffer();
+  }
+
+
+  /**
+   * Returns the leaves' block.
+   * 
+   * @return a new <em>read-only</em> view of the leaves back to back
+   */
+  public ByteBuffer leavesBlock() {
+    int start = offsets.get(0);
+    return leaves.asReadOnlyBuffer().slice(start, offsets.get(idx().count()) - start);
+  }
+
+
+  /**
+   * <p>Returns -1 signifying <em>variable</em> width.</p>
+   * 
+   * {@inheritDoc}
+   * 
+   * @return -1
+   */
+  @Override
+  public int leafWidth() {
+    return -1;
+  }
+
+}
@@ -14,6 +14,10 @@ import io.crums.util.mrkl.intenal.ListExtension;
  * Builds an incrementally bigger tree by only recalculating and maintaining deltas.
  * Note this is an implementation path to building file-backed trees that would otherwise
  * have trouble fitting in memory.
+ * <p>
+ * Only items the width of the (hash) digest are allowed, because this is an
+ * omni-width tree.
+ * </p>
  * 
  * @see DeltaTree
  */
@@ -21,8 +25,6 @@ public class DeltaBuilder extends FixedLeafBuilder {
   
   private final Tree base;
   private final int nodeWidth;
-  
-  private int itemsAdded;
 
   /**
    * Constructs a copy-on-write instance.
@@ -57,7 +59,7 @@ public class DeltaBuilder extends FixedLeafBuilder {
     int heightSansCarries = 31 - Integer.numberOfLeadingZeros(base.idx().count()); // =floor( log( base.idx().count() )
     for (int level = 0; level <= heightSansCarries; ++level) {
       List<byte[]> treeLevelData = new LevelByteList(base, level);
-      data.add(new ListExtension<>(treeLevelData));
+      data.add(new ListExtension<>(treeLevelData, newByteArrayList(level)));
     }
 
     assert data.get(data.size() - 1).size() == 1;
@@ -68,10 +70,13 @@ public class DeltaBuilder extends FixedLeafBuilder {
   
   @Override
   public Tree build() {
-    synchronized (lock) {
+    lock.lock();
+    try {
       if (itemsAdded() == 0 && base.idx().totalCarries() == 0)
         return base;
       return super.build();
+    } finally {
+      lock.unlock();
     }
   }
   
@@ -119,43 +124,35 @@ public class DeltaBuilder extends FixedLeafBuilder {
   
   @Override
   public void clear() {
-    synchronized (lock) {
+    lock.lock();
+    try {
       
       for (int level = data.size(); level-- > 0; ) {
+        // replace (rather than clear) the appended nodes:
+        // they may be shared with snapshots
         List<byte[]> levelData = data.get(level);
         if (levelData instanceof ListExtension)
-          ((ListExtension<byte[]>) levelData).second().clear();
-        else {
-          levelData.clear();
+          data.set(level, new ListExtension<>(
+              ((ListExtension<byte[]>) levelData).first(), newByteArrayList(level)));
+        else
           data.remove(level);
-        }
       }
-      itemsAdded = 0;
-    }
-  }
-  
-  /**
-   * <p>Items only the width of the (hash) digest width are allowed because this is an
-   * omni-width tree.</p>
-   * 
-   * {@inheritDoc}
-   */
-  @Override
-  public int add(byte[] item, int off, int len) throws IndexOutOfBoundsException {
-    synchronized (lock) {
-      int indexOfItem = super.add(item, off, len);
-      ++itemsAdded;
-      return indexOfItem;
+    } finally {
+      lock.unlock();
     }
   }
   
   
-  
   /**
    * Returns the total number of items added (appended).
    */
   public int itemsAdded() {
-    return itemsAdded;
+    lock.lock();
+    try {
+      return count() - base.idx().count();
+    } finally {
+      lock.unlock();
+    }
   }
   
 
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A pool of {@linkplain MessageDigest} instances of a given algorithm. Threads
+ * {@linkplain #borrow() borrow} a digest, use it, then {@linkplain #release(MessageDigest)
+ * release} it; so independent threads hashing with the same algorithm never contend for
+ * a single digest (or lock). New digests are created by cloning a prototype, when the
+ * provider supports it, which is cheaper than a provider lookup.
+ * <p>
+ * Unlike a thread-local, a pool's footprint is bounded by the number of threads
+ * concurrently hashing (not the number of threads ever hashing), which matters when hashing from
+ * many short-lived (e.g. virtual) threads. Instances are safe under concurrent access.
+ * </p>
+ *
+ * @see #of(String)
+ */
+public final class DigestPool {
+
+  /**
+   * Maximum number of idle digests retained by a pool.
+   */
+  public final static int MAX_IDLE = 64;
+
+  private final static ConcurrentHashMap<String, DigestPool> POOLS = new ConcurrentHashMap<>();
+
+
+  /**
+   * Returns the shared pool for the given algorithm.
+   *
+   * @param algo the digest algorithm (e.g. SHA-256)
+   *
+   * @throws IllegalArgumentException in lieu of checked {@code NoSuchAlgorithmException}
+   */
+  public static DigestPool of(String algo) throws IllegalArgumentException {
+    DigestPool pool = POOLS.get(Objects.requireNonNull(algo, "algo"));
+    if (pool == null) {
+      pool = new DigestPool(algo);
+      DigestPool existing = POOLS.putIfAbsent(algo, pool);
+      if (existing != null)
+        pool = existing;
+    }
+    return pool;
+  }
+
+
+  private final MessageDigest prototype;
+  private final boolean cloneable;
+  private final ConcurrentLinkedQueue<MessageDigest> idle = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger idleCount = new AtomicInteger();
+
+
+  /**
+   * Creates a new (unshared) pool. Prefer {@linkplain #of(String)}.
+   *
+   * @param algo the digest algorithm (e.g. SHA-256)
+   *
+   * @throws IllegalArgumentException in lieu of checked {@code NoSuchAlgorithmException}
+   */
+  public DigestPool(String algo) throws IllegalArgumentException {
+    try {
+      this.prototype = MessageDigest.getInstance(Objects.requireNonNull(algo, "algo"));
+    } catch (NoSuchAlgorithmException nsax) {
+      throw new IllegalArgumentException("algo: " + algo, nsax);
+    }
+    boolean cloneable;
+    try {
+      prototype.clone();
+      cloneable = true;
+    } catch (CloneNotSupportedException cnsx) {
+      cloneable = false;
+    }
+    this.cloneable = cloneable;
+  }
+
+
+  /**
+   * Returns the digest algorithm.
+   */
+  public String getHashAlgo() {
+    return prototype.getAlgorithm();
+  }
+
+
+  /**
+   * Returns the byte length of the digest.
+   */
+  public int hashWidth() {
+    return prototype.getDigestLength();
+  }
+
+
+  /**
+   * Borrows a digest from the pool. The returned instance is in its reset state.
+   * It should be {@linkplain #release(MessageDigest) released} after use.
+   */
+  public MessageDigest borrow() {
+    MessageDigest digest = idle.poll();
+    if (digest != null) {
+      idleCount.decrementAndGet();
+      return digest;
+    }
+    return newDigest();
+  }
+
+
+  /**
+   * Returns the given digest (borrowed from this pool) to the pool.
+   */
+  public void release(MessageDigest digest) {
+    if (!digest.getAlgorithm().equals(getHashAlgo()))
+      throw new IllegalArgumentException(
+          "algo mismatch: expected '" + getHashAlgo() + "'; digest's '" + digest.getAlgorithm() + "'");
+    digest.reset();
+    if (idleCount.incrementAndGet() <= MAX_IDLE)
+      idle.offer(digest);
+    else
+      idleCount.decrementAndGet();
+  }
+
+
+  /**
+   * Applies the given function to a borrowed digest and returns the result.
+   * The digest is released on return.
+   */
+  public <T> T apply(Function<MessageDigest, T> func) {
+    MessageDigest digest = borrow();
+    try {
+      return func.apply(digest);
+    } finally {
+      release(digest);
+    }
+  }
+
+
+  /**
+   * Returns the hash of the given bytes.
+   */
+  public byte[] hash(byte[] data) {
+    MessageDigest digest = borrow();
+    try {
+      return digest.digest(data);
+    } finally {
+      release(digest);
+    }
+  }
+
+
+  private MessageDigest newDigest() {
+    if (cloneable) {
+      try {
+        return (MessageDigest) prototype.clone();
+      } catch (CloneNotSupportedException cnsx) {
+        // fall thru
+      }
+    }
+    try {
+      return MessageDigest.getInstance(getHashAlgo(), prototype.getProvider());
+    } catch (NoSuchAlgorithmException nsax) {
+      throw new IllegalStateException("algo: " + getHashAlgo(), nsax);
+    }
+  }
+
+}
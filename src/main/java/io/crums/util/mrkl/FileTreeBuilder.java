@@ -0,0 +1,378 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static io.crums.util.mrkl.Tree.BRANCH_PAD;
+import static io.crums.util.mrkl.Tree.LEAF_PAD;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+import io.crums.util.mrkl.index.LongNode;
+import io.crums.util.mrkl.index.LongTreeIndex;
+import io.crums.util.mrkl.index.TreeIndex;
+
+/**
+ * Builds fixed-width Merkle trees from flat files of fixed-width leaf records.
+ * The leaves are consumed using large sequential reads; no per-leaf objects
+ * are created.
+ * <p>
+ * There are 2 modes of operation. {@linkplain #build(FileChannel) build} loads the
+ * leaves into a new in-memory {@linkplain FixedLeafTree}; {@linkplain #writeTree(FileChannel, FileChannel)
+ * writeTree} streams the tree's data block (in the same serial layout as {@linkplain
+ * FixedLeafTree#dataBlock()}) to an output file level by level, so that memory use stays
+ * bounded by the instance's {@linkplain #bufferSize() buffer size}, no matter how large the tree.
+ * Streamed trees may have more than {@code Integer.MAX_VALUE} leaves: see {@linkplain LongFixedLeafTree}.
+ * </p><p>
+ * Instances are not safe under concurrent access.
+ * </p>
+ */
+public class FileTreeBuilder {
+
+  /**
+   * The default buffer size (1 MB).
+   */
+  public final static int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+
+  private final MessageDigest digest;
+  private final int algoWidth;
+  private final int leafWidth;
+  private final int bufferSize;
+
+  /**
+   * Creates an instance with the {@linkplain #DEFAULT_BUFFER_SIZE default buffer size}.
+   * 
+   * @param algo      the digest algorithm (e.g. SHA-256)
+   * @param leafWidth the byte width of each leaf record
+   */
+  public FileTreeBuilder(String algo, int leafWidth) throws IllegalArgumentException {
+    this(algo, leafWidth, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a new instance.
+   * 
+   * @param algo        the digest algorithm (e.g. SHA-256)
+   * @param leafWidth   the byte width of each leaf record
+   * @param bufferSize  the approximate upper bound on the number of bytes buffered in memory
+   *                    while streaming a tree to file (adjusted upward, if too small for
+   *                    a pair of nodes)
+   * 
+   * @throws IllegalArgumentException in lieu of checked {@code NoSuchAlgorithmException}; or
+   *         if the other arguments are out of bounds
+   */
+  public FileTreeBuilder(String algo, int leafWidth, int bufferSize) throws IllegalArgumentException {
+    Objects.requireNonNull(algo, "algo");
+    try {
+      this.digest = MessageDigest.getInstance(algo);
+    } catch (NoSuchAlgorithmException nsax) {
+      throw new IllegalArgumentException("algo: " + algo, nsax);
+    }
+    this.algoWidth = digest.getDigestLength();
+    this.leafWidth = leafWidth;
+
+    if (algoWidth < FixedLeafTree.MIN_ALGO_WIDTH)
+      throw new IllegalArgumentException(
+          algo + " hash width (" + algoWidth + ") < " + FixedLeafTree.MIN_ALGO_WIDTH);
+    if (leafWidth < FixedLeafTree.MIN_LEAF_WIDTH)
+      throw new IllegalArgumentException("leafWidth (" + leafWidth + ") < " + FixedLeafTree.MIN_LEAF_WIDTH);
+    if (bufferSize < 1)
+      throw new IllegalArgumentException("bufferSize: " + bufferSize);
+
+    this.bufferSize = Math.max(bufferSize, 2 * Math.max(algoWidth, leafWidth) + algoWidth);
+  }
+
+
+
+  /**
+   * Returns the hashing algorithm.
+   */
+  public final String getHashAlgo() {
+    return digest.getAlgorithm();
+  }
+
+
+  /**
+   * Returns the byte width of the leaf records.
+   */
+  public final int leafWidth() {
+    return leafWidth;
+  }
+
+
+  /**
+   * Returns the byte width of the hashing algorithm.
+   */
+  public final int hashWidth() {
+    return algoWidth;
+  }
+
+
+  /**
+   * Returns the approximate upper bound on the number of bytes buffered in memory.
+   */
+  public final int bufferSize() {
+    return bufferSize;
+  }
+
+
+
+  /**
+   * Builds and returns an in-memory tree from the given leaves file.
+   * 
+   * @param leavesFile  path to file of fixed-width leaf records
+   * 
+   * @see #build(FileChannel)
+   */
+  public FixedLeafTree build(Path leavesFile) throws IOException {
+    try (var leaves = FileChannel.open(leavesFile, StandardOpenOption.READ)) {
+      return build(leaves);
+    }
+  }
+
+
+  /**
+   * Builds and returns an in-memory tree from the given channel's contents.
+   * The leaves are read directly into the new tree's data block.
+   * 
+   * @param leaves  file channel of fixed-width leaf records, the size of which must
+   *                be a multiple of {@linkplain #leafWidth()} (not modified)
+   * 
+   * @throws IllegalArgumentException if the tree is too big to fit in memory, or if the
+   *         leaves file's size is not a multiple of the leaf width
+   */
+  public FixedLeafTree build(FileChannel leaves) throws IOException, IllegalArgumentException {
+
+    final long leafCount = leafCount(leaves);
+    if (leafCount > Integer.MAX_VALUE)
+      throw new IllegalArgumentException(
+          "tree with " + leafCount + " leaves exceeds in-memory model capacity");
+    final int count = (int) leafCount;
+    final int size = FixedLeafTree.treeDataLength(count, algoWidth, leafWidth);
+    if (size == -1)
+      throw new IllegalArgumentException(
+          "tree with " + count + " leaves exceeds in-memory model capacity");
+
+    byte[] data = new byte[size];
+
+    final int levelZeroOffset = (count - 1) * algoWidth;
+
+    // large sequential reads directly into the data block
+    for (int off = levelZeroOffset; off < size; ) {
+      int len = Math.min(size - off, bufferSize);
+      readFully(leaves, ByteBuffer.wrap(data, off, len), off - (long) levelZeroOffset);
+      off += len;
+    }
+
+    FixedLeafTree.computeInternalNodes(TreeIndex.newGeneric(count), data, algoWidth, leafWidth, digest);
+
+    return new FixedLeafTree(count, getHashAlgo(), data, algoWidth, leafWidth);
+  }
+
+
+
+  /**
+   * Writes the tree built from the given leaves file to the given output file.
+   * 
+   * @param leavesFile  path to file of fixed-width leaf records
+   * @param outFile     path to output file (created or overwritten)
+   * 
+   * @return the number of bytes written
+   * 
+   * @see #writeTree(FileChannel, FileChannel)
+   */
+  public long writeTree(Path leavesFile, Path outFile) throws IOException {
+    try (var leaves = FileChannel.open(leavesFile, StandardOpenOption.READ);
+         var out = FileChannel.open(
+             outFile,
+             StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+             StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+      return writeTree(leaves, out);
+    }
+  }
+
+
+  /**
+   * Writes the tree built from the given leaves file to the given output file in the
+   * self-describing format documented in {@linkplain Trees} (without a checksum).
+   * The resultant file can be memory-mapped using {@linkplain Trees#load(Path)}.
+   * 
+   * @param leavesFile  path to file of fixed-width leaf records
+   * @param treeFile    path to output file (created or overwritten)
+   * 
+   * @return the number of bytes written
+   */
+  public long writeTreeFile(Path leavesFile, Path treeFile) throws IOException {
+    try (var leaves = FileChannel.open(leavesFile, StandardOpenOption.READ);
+         var out = FileChannel.open(
+             treeFile,
+             StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+             StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      
+      final long count = leafCount(leaves);
+      long bodyLength = (count - 1L) * algoWidth + count * leafWidth;
+      ByteBuffer header = Trees.header(
+          Trees.FIXED_LAYOUT, 1, count, algoWidth, leafWidth, bodyLength, getHashAlgo(), false, 0);
+      writeFully(out, header, 0);
+      out.position(Trees.HEADER_SIZE);
+      
+      return Trees.HEADER_SIZE + writeTree(leaves, out);
+    }
+  }
+
+
+  /**
+   * Writes the tree built from the given leaves to the output channel, streaming
+   * it level by level. The layout of the written data is the same as that of
+   * {@linkplain FixedLeafTree#dataBlock()}: internal nodes in serial (breadth-first)
+   * order, followed by the leaves. Each level is computed from the one below it
+   * (read back from {@code out}), so memory use is bounded by the {@linkplain #bufferSize()
+   * buffer size}.
+   * 
+   * @param leaves  file channel of fixed-width leaf records, the size of which must
+   *                be a multiple of {@linkplain #leafWidth()} (not modified)
+   * @param out     the output channel, opened for both reading and writing. Written to
+   *                starting from its current position; on return, its position is
+   *                advanced by the number of bytes written.
+   * 
+   * @return the number of bytes written
+   */
+  public long writeTree(FileChannel leaves, FileChannel out) throws IOException {
+
+    final long count = leafCount(leaves);
+    final LongTreeIndex idx = new LongTreeIndex(count);
+
+    final long base = out.position();
+    final long levelZeroOffset = base + (count - 1L) * algoWidth;
+    final long leavesLength = count * leafWidth;
+    final long totalLength = levelZeroOffset + leavesLength - base;
+
+    // copy the leaves
+    for (long pos = 0; pos < leavesLength; ) {
+      long copied = leaves.transferTo(pos, leavesLength - pos, out.position(levelZeroOffset + pos));
+      if (copied <= 0)
+        throw new EOFException("leaves channel truncated at " + pos);
+      pos += copied;
+    }
+
+    byte[] inBlock = new byte[bufferSize];
+    byte[] outBlock = new byte[bufferSize];
+
+    try {
+
+      for (int level = 1; level <= idx.height(); ++level) {
+
+        final int childLevel = level - 1;
+        final int childWidth = childLevel == 0 ? leafWidth : algoWidth;
+        final long childOffset = childLevel == 0 ?
+            levelZeroOffset : base + idx.serialIndex(childLevel, 0) * (long) algoWidth;
+        final long levelOffset = base + idx.serialIndex(level, 0) * (long) algoWidth;
+        final byte pad = childLevel == 0 ? LEAF_PAD : BRANCH_PAD;
+
+        final long pairs = idx.countSansCarry(level);
+        final int pairsPerBlock = bufferSize / (2 * Math.max(childWidth, algoWidth));
+
+        for (long index = 0; index < pairs; ) {
+
+          final int batch = (int) Math.min(pairs - index, pairsPerBlock);
+          final int inLen = batch * 2 * childWidth;
+
+          readFully(
+              childLevel == 0 ? leaves : out,
+              ByteBuffer.wrap(inBlock, 0, inLen),
+              childLevel == 0 ? 2L * index * leafWidth : childOffset + 2L * index * childWidth);
+
+          for (int b = 0, inOff = 0; b < batch; ++b, inOff += 2 * childWidth) {
+            digest.reset();
+            digest.update(pad);
+            digest.update(inBlock, inOff, childWidth);
+            digest.update(pad);
+            digest.update(inBlock, inOff + childWidth, childWidth);
+            digest.digest(outBlock, b * algoWidth, algoWidth);
+          }
+
+          writeFully(
+              out,
+              ByteBuffer.wrap(outBlock, 0, batch * algoWidth),
+              levelOffset + index * (long) algoWidth);
+          index += batch;
+        }
+
+        if (idx.hasCarry(level)) {
+
+          final long index = idx.maxIndex(level);
+
+          // the left child of a carry is never a leaf
+          readFully(out, ByteBuffer.wrap(inBlock, 0, algoWidth), childOffset + 2L * index * algoWidth);
+          LongNode right = idx.getRightChild(level, index);
+
+          digest.reset();
+          digest.update(BRANCH_PAD);
+          digest.update(inBlock, 0, algoWidth);
+
+          if (right.isLeaf()) {
+            readFully(leaves, ByteBuffer.wrap(inBlock, 0, leafWidth), right.index() * (long) leafWidth);
+            digest.update(LEAF_PAD);
+            digest.update(inBlock, 0, leafWidth);
+          } else {
+            long rightOffset = base + idx.serialIndex(right.level(), right.index()) * (long) algoWidth;
+            readFully(out, ByteBuffer.wrap(inBlock, 0, algoWidth), rightOffset);
+            digest.update(BRANCH_PAD);
+            digest.update(inBlock, 0, algoWidth);
+          }
+          digest.digest(outBlock, 0, algoWidth);
+
+          writeFully(out, ByteBuffer.wrap(outBlock, 0, algoWidth), levelOffset + index * (long) algoWidth);
+        }
+      }
+
+    } catch (DigestException dx) {
+      throw new IllegalStateException("digest: " + dx.getMessage(), dx);
+    }
+
+    out.position(base + totalLength);
+    return totalLength;
+  }
+
+
+
+  private long leafCount(FileChannel leaves) throws IOException, IllegalArgumentException {
+    long size = leaves.size();
+    long count = size / leafWidth;
+    if (count * leafWidth != size)
+      throw new IllegalArgumentException(
+          "leaves file size " + size + " not a multiple of leaf width " + leafWidth);
+    if (count < 2)
+      throw new IllegalArgumentException("leaves (" + count + ") < 2");
+    return count;
+  }
+
+
+  static void readFully(FileChannel ch, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = ch.read(buffer, position);
+      if (read == -1)
+        throw new EOFException("at position " + position + "; remaining " + buffer.remaining());
+      position += read;
+    }
+  }
+
+
+  static void writeFully(FileChannel ch, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining())
+      position += ch.write(buffer, position);
+  }
+
+}
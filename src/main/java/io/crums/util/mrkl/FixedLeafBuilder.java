@@ -3,8 +3,12 @@
  */
 package io.crums.util.mrkl;
 
+import static io.crums.util.mrkl.intenal.Bytes.copy;
 import static io.crums.util.mrkl.intenal.Bytes.transfer;
 
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
 import io.crums.util.mrkl.index.TreeIndex;
 
 /**
@@ -36,7 +40,25 @@ public class FixedLeafBuilder extends Builder {
    * @throws IllegalArgumentException
    */
   public FixedLeafBuilder(String algo, int leafWidth, boolean copyOnWrite) throws IllegalArgumentException {
-    super(algo, copyOnWrite);
+    this(algo, leafWidth, copyOnWrite, 0, 0);
+  }
+
+  /**
+   * Creates a new instance, optionally in reuse mode.
+   * 
+   * @param algo
+   * @param leafWidth
+   * @param copyOnWrite
+   * @param expectedLeaves  sizing hint: the expected number of leaves per build (&ge; 0)
+   * @param slabs           the number of slabs of retained capacity; zero, if not in reuse mode
+   * @throws IllegalArgumentException
+   * 
+   * @see Builder#Builder(String, boolean, int, int)
+   */
+  public FixedLeafBuilder(
+      String algo, int leafWidth, boolean copyOnWrite, int expectedLeaves, int slabs)
+          throws IllegalArgumentException {
+    super(algo, copyOnWrite, expectedLeaves, slabs);
     this.leafWidth = leafWidth;
     if (leafWidth < 1)
       throw new IllegalArgumentException("leaf width: " + leafWidth);
@@ -88,13 +110,90 @@ public class FixedLeafBuilder extends Builder {
   }
   
   
+  /**
+   * Adds a contiguous block of fixed-width leaves. The builder's lock is acquired
+   * only once for the entire block. On return the given buffer has no remaining bytes.
+   * 
+   * @param leaves  a block of leaves, each {@linkplain #leafWidth()} bytes wide (copied)
+   * 
+   * @return the leaf index of the first item in the block
+   * 
+   * @throws IllegalArgumentException if the remaining bytes in {@code leaves} is not a
+   *         multiple of {@linkplain #leafWidth()}
+   */
+  public int addAll(ByteBuffer leaves) throws IllegalArgumentException {
+    final int count = leafCount(leaves.remaining());
+    
+    if (leaves.hasArray()) {
+      int first = addAll(leaves.array(), leaves.arrayOffset() + leaves.position(), count);
+      leaves.position(leaves.limit());
+      return first;
+    }
+    
+    lock.lock();
+    try {
+      final int first = count();
+      for (int countDown = count; countDown-- > 0; ) {
+        byte[] leaf = new byte[leafWidth];
+        leaves.get(leaf);
+        addLeaf(leaf);
+      }
+      return first;
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  
+  /**
+   * Adds a contiguous block of fixed-width leaves. The builder's lock is acquired
+   * only once for the entire block.
+   * 
+   * @param block   the source of the leaves (copied)
+   * @param off     starting offset into {@code block}
+   * @param count   the number of leaves (each {@linkplain #leafWidth()} bytes wide)
+   * 
+   * @return the leaf index of the first item in the block
+   */
+  public int addAll(byte[] block, int off, int count) throws IndexOutOfBoundsException {
+    if (count < 0)
+      throw new IllegalArgumentException("count: " + count);
+    long len = ((long) count) * leafWidth;
+    if (len > Integer.MAX_VALUE)
+      throw new IndexOutOfBoundsException("count " + count + " x leaf width " + leafWidth);
+    Objects.checkFromIndexSize(off, (int) len, block.length);
+    
+    lock.lock();
+    try {
+      final int first = count();
+      for (int index = 0; index < count; ++index, off += leafWidth)
+        addLeaf(copy(block, off, leafWidth));
+      return first;
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  
+  private int leafCount(int bytes) throws IllegalArgumentException {
+    int count = bytes / leafWidth;
+    if (count * leafWidth != bytes)
+      throw new IllegalArgumentException(
+          "block size " + bytes + " not a multiple of leaf width " + leafWidth);
+    return count;
+  }
+  
+  
   @Override
   public Tree build() {
-    synchronized (lock) {
+    lock.lock();
+    try {
       completeTree();
       Tree tree = packageTree();
       clear();
       return tree;
+    } finally {
+      lock.unlock();
     }
     
   }
@@ -112,10 +211,13 @@ public class FixedLeafBuilder extends Builder {
 
     TreeIndex<?> idx = TreeIndex.newGeneric(count());
     
-    byte[] buffer = new byte[fixedByteSize];
+    final int pWidth = digest.getDigestLength();
+    
+    int capacity = count() < expectedLeaves() ?
+        FixedLeafTree.treeDataLength(expectedLeaves(), pWidth, leafWidth) : fixedByteSize;
+    byte[] buffer = packageBuffer(fixedByteSize, capacity);
     
     int pos = 0;
-    final int pWidth = digest.getDigestLength();
     
     for (int level = idx.height(); level > 0; --level) 
       for (int index = 0; index < levelSize(level); ++index, pos += pWidth)
@@ -124,9 +226,10 @@ public class FixedLeafBuilder extends Builder {
     for (int index = 0; index < count(); ++index, pos += leafWidth)
       transfer(level(0).get(index), buffer, pos);
     
-    assert pos == buffer.length;
+    assert pos == fixedByteSize;
     
-    return new FixedLeafTree(count(), getHashAlgo(), buffer, pWidth, leafWidth);
+    return new FixedLeafTree(
+        count(), getHashAlgo(), ByteBuffer.wrap(buffer, 0, fixedByteSize), pWidth, leafWidth);
   }
   
   
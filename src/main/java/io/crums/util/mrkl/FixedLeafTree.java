@@ -4,26 +4,40 @@
 package io.crums.util.mrkl;
 
 
-import static io.crums.util.mrkl.intenal.Bytes.copy;
-
 import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Objects;
 
+import io.crums.util.mrkl.index.BlockLayout;
+import io.crums.util.mrkl.index.TreeIndex;
+
 /**
  * A more compact {@code Tree} appropriate if the leaves are fixed-width
- * and it'all fits under 2 gigabytes.
+ * and it'all fits under 2 gigabytes. The data block may be on-heap, direct,
+ * or memory-mapped.
+ * <p>
+ * By default, the internal nodes are laid out in serial (breadth-first) order.
+ * Optionally, they may be laid out in cache (and page) friendly blocks of subtrees:
+ * see {@linkplain BlockLayout}.
+ * </p>
  * 
  * @see #treeDataLength(int, int, int)
+ * @see #toBlockLayout(int)
+ * @see Trees#load(java.nio.file.Path)
  */
 public class FixedLeafTree extends Tree {
   
   public final static int MIN_ALGO_WIDTH = 8;
   public final static int MIN_LEAF_WIDTH = 1;
   
-  private final byte[] data;
+  private final ByteBuffer data;
   private final int algoWidth;
   private final int leafWidth;
   private final int levelZeroOffset;
+  /** Null, if serial. */
+  private final BlockLayout layout;
 
   /**
    * Creates a new instance.
@@ -36,22 +50,63 @@ public class FixedLeafTree extends Tree {
    */
   public FixedLeafTree(int leaves, String algo, byte[] data, int algoWidth, int leafWidth)
       throws IllegalArgumentException {
+    this(leaves, algo, ByteBuffer.wrap(Objects.requireNonNull(data, "data")), algoWidth, leafWidth);
+  }
+  
+  
+  /**
+   * Creates a new instance backed by the given buffer. The buffer may be
+   * a memory-mapped file, for example.
+   * 
+   * @param leaves    number of leaf nodes in the tree   
+   * @param algo      hash algo used for the trees internal nodes
+   * @param data      node data in serial form (interpreted by next parameters). The
+   *                  block is defined by the buffer's remaining bytes (its position and limit
+   *                  are not modified). The contents of the block should not be modified.
+   * @param algoWidth number of bytes in the hash generated by <code>algo</code>
+   * @param leafWidth number of bytes in a leaf node
+   */
+  public FixedLeafTree(int leaves, String algo, ByteBuffer data, int algoWidth, int leafWidth)
+      throws IllegalArgumentException {
+    this(leaves, algo, data, algoWidth, leafWidth, 1);
+  }
+  
+  
+  /**
+   * Creates a new instance backed by the given buffer with the internal nodes laid out
+   * in blocks.
+   * 
+   * @param leaves      number of leaf nodes in the tree   
+   * @param algo        hash algo used for the trees internal nodes
+   * @param data        node data (interpreted by next parameters). The
+   *                    block is defined by the buffer's remaining bytes (its position and limit
+   *                    are not modified). The contents of the block should not be modified.
+   * @param algoWidth   number of bytes in the hash generated by <code>algo</code>
+   * @param leafWidth   number of bytes in a leaf node
+   * @param blockLevels the number of levels in a {@linkplain BlockLayout block} of internal nodes.
+   *                    If 1, then the internal nodes are in serial form.
+   */
+  public FixedLeafTree(
+      int leaves, String algo, ByteBuffer data, int algoWidth, int leafWidth, int blockLevels)
+      throws IllegalArgumentException {
     super(leaves, algo);
     
-    this.data = Objects.requireNonNull(data, "data");
+    this.layout = blockLevels == 1 ? null : new BlockLayout(idx(), blockLevels);
+    
+    this.data = Objects.requireNonNull(data, "data").slice();
     this.algoWidth = algoWidth;
     this.leafWidth = leafWidth;
 
     validateArgs(algoWidth, leafWidth);
     
     {
-      long zOff = (idx().totalCount() - leaves) * ((long) algoWidth);
+      long zOff = (leaves - 1L) * algoWidth;
       if (zOff >= Integer.MAX_VALUE)
         throw new IllegalArgumentException("data provably too short");
       levelZeroOffset = (int) zOff;
     }
     
-    if (data.length < levelZeroOffset + leaves*((long) leafWidth))
+    if (this.data.capacity() < levelZeroOffset + leaves*((long) leafWidth))
       throw new IllegalArgumentException("data too short");
   }
   
@@ -65,18 +120,116 @@ public class FixedLeafTree extends Tree {
     this.algoWidth = copy.algoWidth;
     this.leafWidth = copy.leafWidth;
     this.levelZeroOffset = copy.levelZeroOffset;
+    this.layout = copy.layout;
   }
   
 
   @Override
   public byte[] data(int level, int index) {
+    Objects.checkIndex(index, idx().count(level));
     if (level == 0) {
       int offset = levelZeroOffset + index*leafWidth;
-      return copy(data, offset, leafWidth);
+      return copy(offset, leafWidth);
     } else {
-      int offset = idx().serialIndex(level, index) * algoWidth;
-      return copy(data, offset, algoWidth);
+      return copy(internalOffset(level, index), algoWidth);
+    }
+  }
+  
+  
+  /**
+   * Hashes the children directly from the data block.
+   */
+  @Override
+  boolean verifyInternal(int level, int index, MessageDigest digest, byte[] scratch) {
+    final int leftLevel = level - 1;
+    final int leftIndex = index << 1;
+    final int rightLevel = idx().rightChildLevel(level, index);
+    final int rightIndex = rightLevel == leftLevel ? leftIndex + 1 : idx().maxIndex(rightLevel);
+
+    digest.reset();
+    update(digest, leftLevel, leftIndex);
+    update(digest, rightLevel, rightIndex);
+    finishDigest(digest, scratch);
+
+    final int offset = internalOffset(level, index);
+    for (int i = 0; i < algoWidth; ++i)
+      if (data.get(offset + i) != scratch[i])
+        return false;
+    return true;
+  }
+
+
+  private void update(MessageDigest digest, int level, int index) {
+    final int offset;
+    final int len;
+    if (level == 0) {
+      digest.update(LEAF_PAD);
+      offset = levelZeroOffset + index * leafWidth;
+      len = leafWidth;
+    } else {
+      digest.update(BRANCH_PAD);
+      offset = internalOffset(level, index);
+      len = algoWidth;
+    }
+    if (data.hasArray())
+      digest.update(data.array(), data.arrayOffset() + offset, len);
+    else
+      digest.update(data.slice(offset, len));
+  }
+
+
+  private int internalOffset(int level, int index) {
+    int slot = layout == null ? idx().serialIndex(level, index) : layout.slot(level, index);
+    return slot * algoWidth;
+  }
+  
+  
+  /**
+   * Returns the number of levels in each block of internal nodes.
+   * 
+   * @return 1, if the internal nodes are in serial (breadth-first) order
+   * 
+   * @see BlockLayout
+   */
+  public final int blockLevels() {
+    return layout == null ? 1 : layout.blockLevels();
+  }
+  
+  
+  /**
+   * Returns a copy of this tree with its internal nodes laid out in blocks
+   * of the given number of levels. If the layout is unchanged, this instance
+   * is returned.
+   * 
+   * @param blockLevels the number of levels in each {@linkplain BlockLayout block}. If 1,
+   *                    then the internal nodes are laid out in serial order
+   */
+  public FixedLeafTree toBlockLayout(int blockLevels) {
+    if (blockLevels == blockLevels())
+      return this;
+    
+    BlockLayout target = blockLevels == 1 ? null : new BlockLayout(idx(), blockLevels);
+    
+    byte[] out = new byte[treeDataLength(idx().count(), algoWidth, leafWidth)];
+    
+    final TreeIndex<?> idx = idx();
+    for (int level = idx.height(); level > 0; --level) {
+      for (int index = 0; index < idx.count(level); ++index) {
+        int slot = target == null ? idx.serialIndex(level, index) : target.slot(level, index);
+        data.get(internalOffset(level, index), out, slot * algoWidth, algoWidth);
+      }
     }
+    data.get(levelZeroOffset, out, levelZeroOffset, out.length - levelZeroOffset);
+    
+    return new FixedLeafTree(
+        idx.count(), getHashAlgo(), ByteBuffer.wrap(out), algoWidth, leafWidth, blockLevels);
+  }
+  
+  
+  private byte[] copy(int offset, int len) {
+    byte[] copy = new byte[len];
+    data.get(offset, copy);
+    return copy;
   }
   
   
@@ -92,12 +245,13 @@ public class FixedLeafTree extends Tree {
   
   
   /**
-   * Returns entire data block.
+   * Returns entire data block. The internal nodes come first (laid out per
+   * {@linkplain #blockLevels()}), followed by the leaves.
    * 
    * @return a new <em>read-only</em> view of the entire block.
    */
   public ByteBuffer dataBlock() {
-    return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    return data.asReadOnlyBuffer();
   }
   
   
@@ -107,7 +261,7 @@ public class FixedLeafTree extends Tree {
    * @return a new <em>read-only</em> view of leaves' block.
    */
   public ByteBuffer leavesBlock() {
-    return ByteBuffer.wrap(data, levelZeroOffset, leafWidth * idx().count()).slice().asReadOnlyBuffer();
+    return data.asReadOnlyBuffer().slice(levelZeroOffset, leafWidth * idx().count());
   }
   
   
@@ -119,7 +273,7 @@ public class FixedLeafTree extends Tree {
    */
   protected ByteBuffer extraBlock() {
     int startIndex = treeDataLength(idx().count(), algoWidth, leafWidth);
-    return ByteBuffer.wrap(data, startIndex, data.length - startIndex).slice().asReadOnlyBuffer();
+    return data.asReadOnlyBuffer().slice(startIndex, data.capacity() - startIndex);
   }
   
   
@@ -129,6 +283,115 @@ public class FixedLeafTree extends Tree {
   
   
   
+  /**
+   * Creates and returns a new instance directly from a contiguous block of fixed-width
+   * leaves. No per-leaf objects are created: the leaves are copied into the new tree's data block in
+   * one go and the internal nodes are hashed in place. The source could be the
+   * {@linkplain #leavesBlock() leaves block} of another tree, or a memory-mapped file, for example.
+   * 
+   * @param leaves    the leaves block. Its remaining bytes must be a multiple of {@code leafWidth}
+   *                  (and yield at least 2 leaves). Its position is not modified.
+   * @param leafWidth the number of bytes in a leaf node
+   * @param algo      hash algo used for the tree's internal nodes
+   * 
+   * @throws IllegalArgumentException if the arguments are invalid or the tree would not fit
+   *         in a single block
+   */
+  public static FixedLeafTree newInstance(ByteBuffer leaves, int leafWidth, String algo)
+      throws IllegalArgumentException {
+    
+    Objects.requireNonNull(leaves, "leaves");
+    MessageDigest digest = newDigest(algo);
+    final int algoWidth = digest.getDigestLength();
+    
+    validateArgs(algoWidth, leafWidth);
+    
+    final int count = leaves.remaining() / leafWidth;
+    if (count * leafWidth != leaves.remaining())
+      throw new IllegalArgumentException(
+          "leaves block size " + leaves.remaining() + " not a multiple of leaf width " + leafWidth);
+    
+    final int size = treeDataLength(count, algoWidth, leafWidth);
+    if (size == -1)
+      throw new IllegalArgumentException(
+          "tree with " + count + " leaves exceeds model capacity");
+    
+    byte[] data = new byte[size];
+    
+    final int levelZeroOffset = (count - 1) * algoWidth;
+    leaves.duplicate().get(data, levelZeroOffset, count * leafWidth);
+    
+    computeInternalNodes(TreeIndex.newGeneric(count), data, algoWidth, leafWidth, digest);
+    
+    return new FixedLeafTree(count, algo, data, algoWidth, leafWidth);
+  }
+  
+  
+  /**
+   * Computes the internal nodes of a tree whose leaves are already in place.
+   * The data is laid out in serial (breadth-first) order, the leaves last.
+   */
+  static void computeInternalNodes(
+      TreeIndex<?> idx, byte[] data, int algoWidth, int leafWidth, MessageDigest digest) {
+    
+    final int levelZeroOffset = (idx.count() - 1) * algoWidth;
+    
+    try {
+      
+      for (int level = 1; level <= idx.height(); ++level) {
+        
+        final int levelOffset = idx.serialIndex(level, 0) * algoWidth;
+        final int childLevel = level - 1;
+        final int childWidth = childLevel == 0 ? leafWidth : algoWidth;
+        final int childLevelOffset =
+            childLevel == 0 ? levelZeroOffset : idx.serialIndex(childLevel, 0) * algoWidth;
+        final byte pad = childLevel == 0 ? LEAF_PAD : BRANCH_PAD;
+        
+        final int count = idx.count(level);
+        
+        for (int index = 0; index < count; ++index) {
+          
+          int leftOff = childLevelOffset + 2 * index * childWidth;
+          digest.reset();
+          digest.update(pad);
+          digest.update(data, leftOff, childWidth);
+          
+          if (idx.isCarry(level, index)) {
+            var right = idx.getRightChild(level, index);
+            if (right.isLeaf()) {
+              digest.update(LEAF_PAD);
+              digest.update(data, levelZeroOffset + right.index() * leafWidth, leafWidth);
+            } else {
+              digest.update(BRANCH_PAD);
+              digest.update(
+                  data, idx.serialIndex(right.level(), right.index()) * algoWidth, algoWidth);
+            }
+          } else {
+            digest.update(pad);
+            digest.update(data, leftOff + childWidth, childWidth);
+          }
+          
+          digest.digest(data, levelOffset + index * algoWidth, algoWidth);
+        }
+      }
+    
+    } catch (DigestException dx) {
+      throw new IllegalArgumentException("digest: " + dx.getMessage(), dx);
+    }
+  }
+  
+  
+  private static MessageDigest newDigest(String algo) throws IllegalArgumentException {
+    Objects.requireNonNull(algo, "algo");
+    try {
+      return MessageDigest.getInstance(algo);
+    } catch (NoSuchAlgorithmException nsax) {
+      throw new IllegalArgumentException("algo: " + algo, nsax);
+    }
+  }
+  
+  
+  
   public static boolean fitsModelCapacity(int leaves, int algoWidth, int leafWidth) {
     return treeDataLength(leaves, algoWidth, leafWidth) > 0;
   }
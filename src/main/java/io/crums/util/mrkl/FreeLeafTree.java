@@ -11,6 +11,8 @@ import java.util.Objects;
 /**
  * A {@code Tree} allowing variable length leaves. Note although less efficient,
  * this layout allows larger in-memory fixed-width trees than {@linkplain FixedLeafTree}.
+ * It costs an object per node; if the leaves fit in 2 gigabytes, consider
+ * {@linkplain CompactFreeLeafTree} instead.
  */
 public class FreeLeafTree extends Tree {
 
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.crums.util.mrkl.index.AbstractNode;
+
+/**
+ * A fixed-width {@code Tree} that stores only its leaves and the top few levels of
+ * its internal nodes. The internal nodes below the stored levels are computed from the
+ * leaves on demand (and optionally memoized). This roughly halves the resident size of
+ * a tree (more, if the leaves are narrower than the hash) at the cost of some hashing
+ * per {@linkplain #proof(int) proof}.
+ * <p>
+ * Computing an unstored node at level <em>L</em> takes on the order of 2<sup><em>L</em></sup>
+ * hashes. So a proof costs on the order of 2<sup><em>m</em></sup> hashes, where <em>m</em> is
+ * the {@linkplain #minStoredLevel() lowest stored level}.
+ * </p><p>
+ * Instances are safe under concurrent access.
+ * </p>
+ *
+ * @see #newInstance(FixedLeafTree, int, boolean)
+ */
+public class LazyTree extends Tree {
+
+  private final ByteBuffer leaves;
+  private final int leafWidth;
+  private final int algoWidth;
+  private final int minStoredLevel;
+  /** Indexed by level - minStoredLevel; a level is stored once its array is set. */
+  private final byte[][][] stored;
+  /** Keyed by serial index. Null, if not memoizing. */
+  private final Map<Integer, byte[]> memo;
+  private final DigestPool digests;
+
+
+  /**
+   * Creates a new instance, computing its stored levels from the given leaves.
+   *
+   * @param algo          hash algo used for the tree's internal nodes
+   * @param leaves        the leaves block. Its remaining bytes must be a multiple of {@code leafWidth}
+   *                      (and yield at least 2 leaves). The block is not copied; its contents should
+   *                      not be modified. (Its position and limit are not modified.)
+   * @param leafWidth     the number of bytes in a leaf node
+   * @param storedLevels  the number of levels of internal nodes, counting down from the root,
+   *                      that are stored (&ge; 1; if greater than the number of internal levels,
+   *                      then all internal nodes are stored)
+   * @param memoize       if {@code true}, then computed nodes are remembered
+   */
+  public LazyTree(String algo, ByteBuffer leaves, int leafWidth, int storedLevels, boolean memoize)
+      throws IllegalArgumentException {
+    this(algo, leaves, leafWidth, storedLevels, memoize, null);
+  }
+
+
+  private LazyTree(
+      String algo, ByteBuffer leaves, int leafWidth, int storedLevels, boolean memoize,
+      FixedLeafTree source)
+      throws IllegalArgumentException {
+
+    super(leafCount(leaves, leafWidth), algo);
+    this.leaves = leaves.slice();
+    this.leafWidth = leafWidth;
+    this.digests = DigestPool.of(algo);
+    this.algoWidth = digests.hashWidth();
+    this.memo = memoize ? new ConcurrentHashMap<>() : null;
+
+    if (storedLevels < 1)
+      throw new IllegalArgumentException("storedLevels: " + storedLevels);
+
+    final int height = idx().height();
+    this.minStoredLevel = Math.max(1, height + 1 - storedLevels);
+    this.stored = new byte[height + 1 - minStoredLevel][][];
+
+    // compute (or copy) bottom-up, so that each stored level is computed
+    // from the one below it. (Nodes computed here are not memoized.)
+    for (int level = minStoredLevel; level <= height; ++level) {
+      byte[][] nodes = new byte[idx().count(level)][];
+      for (int index = 0; index < nodes.length; ++index)
+        nodes[index] = source == null ? compute(level, index, false) : source.data(level, index);
+      stored[level - minStoredLevel] = nodes;
+    }
+  }
+
+
+  /**
+   * Creates and returns a lazy copy of the given tree. The new instance copies the
+   * given tree's {@linkplain FixedLeafTree#leavesBlock() leaves block} and its stored levels
+   * (no hashing); it does not reference the given tree's storage, which may then be
+   * released.
+   *
+   * @param tree          the source tree
+   * @param storedLevels  the number of levels of internal nodes, counting down from the root,
+   *                      that are stored (&ge; 1)
+   * @param memoize       if {@code true}, then computed nodes are remembered
+   */
+  public static LazyTree newInstance(FixedLeafTree tree, int storedLevels, boolean memoize) {
+    ByteBuffer src = tree.leavesBlock();
+    ByteBuffer leaves = ByteBuffer.allocate(src.remaining());
+    leaves.put(src).flip();
+    return new LazyTree(
+        tree.getHashAlgo(), leaves, tree.leafWidth(), storedLevels, memoize, tree);
+  }
+
+
+  private static int leafCount(ByteBuffer leaves, int leafWidth) {
+    if (leafWidth < FixedLeafTree.MIN_LEAF_WIDTH)
+      throw new IllegalArgumentException("leafWidth: " + leafWidth);
+    int count = leaves.remaining() / leafWidth;
+    if (count * leafWidth != leaves.remaining())
+      throw new IllegalArgumentException(
+          "leaves block size " + leaves.remaining() + " not a multiple of leaf width " + leafWidth);
+    return count;
+  }
+
+
+  /**
+   * Returns the lowest level of internal nodes stored. Nodes at (or above) this level are
+   * not computed on demand.
+   */
+  public final int minStoredLevel() {
+    return minStoredLevel;
+  }
+
+
+  /**
+   * Determines whether computed nodes are memoized.
+   */
+  public final boolean isMemoized() {
+    return memo != null;
+  }
+
+
+  /**
+   * Returns the number of memoized nodes.
+   */
+  public final int memoizedNodes() {
+    return memo == null ? 0 : memo.size();
+  }
+
+
+  /**
+   * Returns the leaves' data block.
+   *
+   * @return a new <em>read-only</em> view of leaves' block.
+   */
+  public ByteBuffer leavesBlock() {
+    return leaves.asReadOnlyBuffer();
+  }
+
+
+  @Override
+  public byte[] data(int level, int index) {
+    Objects.checkIndex(index, idx().count(level));
+    if (level == 0) {
+      byte[] leaf = new byte[leafWidth];
+      leaves.get(index * leafWidth, leaf);
+      return leaf;
+    }
+    return node(level, index, memo != null).clone();
+  }
+
+
+  /**
+   * Returns the node hash. Returned arrays may be shared (if stored or memoized).
+   */
+  private byte[] node(int level, int index, boolean memoize) {
+    if (level >= minStoredLevel) {
+      byte[][] nodes = stored[level - minStoredLevel];
+      if (nodes != null)
+        return nodes[index];
+    }
+    if (!memoize)
+      return compute(level, index, false);
+
+    Integer key = idx().serialIndex(level, index);
+    byte[] node = memo.get(key);
+    if (node == null) {
+      node = compute(level, index, true);
+      memo.put(key, node);
+    }
+    return node;
+  }
+
+
+  /**
+   * Computes the hash of the internal node at the given coordinates from its children.
+   * The structure of this computation mirrors {@code Tree.verify(Node, MessageDigest)}.
+   */
+  private byte[] compute(int level, int index, boolean memoize) {
+    AbstractNode right = idx().getRightChild(level, index);
+    byte[] left = level == 1 ? data(0, index << 1) : node(level - 1, index << 1, memoize);
+    final boolean rightLeaf = right.isLeaf();
+    byte[] rightData = rightLeaf ?
+        data(0, right.index()) : node(right.level(), right.index(), memoize);
+
+    // borrow the digest only after the children are computed (no nesting)
+    MessageDigest digest = digests.borrow();
+    try {
+      if (!rightLeaf)
+        return hashInternals(left, rightData, digest);
+      return level == 1 ?
+          hashLeaves(left, rightData, digest) :
+          hashUncommon(left, rightData, digest);
+    } finally {
+      digests.release(digest);
+    }
+  }
+
+
+  /**
+   * Returns the number of bytes in a hash.
+   */
+  public int hashWidth() {
+    return algoWidth;
+  }
+
+
+  @Override
+  public int leafWidth() {
+    return leafWidth;
+  }
+
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Reverse lookup of a tree's leaves: maps a leaf value to its index in O(1) expected
+ * time, so that an item's {@linkplain #proofOf(byte[]) proof} can be found from the item
+ * alone. The index is an open-addressing (linear probing) hash table of leaf indices,
+ * kept off-heap (in a direct, or memory-mapped, buffer). Leaf values are not copied
+ * into the table: a probe is confirmed by comparing against the tree's leaf. So the
+ * table costs 4 bytes per slot; since the slot count is a power of 2 no less than
+ * count / {@linkplain #MAX_LOAD_FACTOR}, that's between 5.3 and 10.7 bytes per leaf.
+ * <p>
+ * Leaves are hashed in full, or optionally only their first {@linkplain #prefix() prefix}
+ * bytes (which is enough when the leaves are themselves hashes). If a value occurs at
+ * more than one leaf, the lowest index is returned.
+ * </p>
+ * <h2>Persistence</h2>
+ * <p>
+ * An index can be {@linkplain #writeTo(WritableByteChannel) written} on its own, or
+ * {@linkplain #writeWithTree(WritableByteChannel) together with its tree} (right after it,
+ * in the same file), and loaded back without rebuilding (see {@linkplain
+ * #loadWithTree(Path, boolean)} and {@linkplain #load(Tree, Path, long)}). The format is big-endian:
+ * </p>
+ * <pre>
+ *   offset  type    field
+ *   ------  ----    -----
+ *    0      int     magic ({@linkplain #MAGIC})
+ *    4      int     version ({@linkplain #VERSION})
+ *    8      int     leaf count
+ *   12      int     prefix (0, if leaves are hashed in full)
+ *   16      int     slot count (a power of 2)
+ *   20      int     length of the tree's root hash (h)
+ *   24      h bytes the tree's root hash
+ *   24 + h  int[]   the slots (leaf index + 1; zero, if empty)
+ * </pre>
+ * <p>
+ * Instances are safe under concurrent access.
+ * </p>
+ *
+ * @see #newInstance(Tree)
+ */
+public final class LeafIndex {
+
+  /**
+   * File format magic number ("LIDX").
+   */
+  public final static int MAGIC = 0x4c494458;
+
+  /**
+   * File format version.
+   */
+  public final static int VERSION = 1;
+
+  /**
+   * Maximum ratio of leaves to slots.
+   */
+  public final static double MAX_LOAD_FACTOR = 0.75;
+
+  private final static int MAX_SLOTS = 1 << 28;
+
+  private final static int HEADER_SIZE = 24;
+
+
+  private final Tree tree;
+  private final int prefix;
+  private final IntBuffer slots;
+  private final int mask;
+
+
+  private LeafIndex(Tree tree, int prefix, IntBuffer slots) {
+    this.tree = tree;
+    this.prefix = prefix;
+    this.slots = slots;
+    this.mask = slots.capacity() - 1;
+  }
+
+
+  /**
+   * Builds and returns an index of the given tree's leaves, hashed in full.
+   */
+  public static LeafIndex newInstance(Tree tree) {
+    return newInstance(tree, 0);
+  }
+
+
+  /**
+   * Builds and returns an index of the given tree's leaves.
+   *
+   * @param tree    the tree
+   * @param prefix  the number of leading bytes of each leaf hashed; 0 for all. (Leaves
+   *                that are hashes are well enough distributed for a prefix of 8 bytes.)
+   */
+  public static LeafIndex newInstance(Tree tree, int prefix) throws IllegalArgumentException {
+    Objects.requireNonNull(tree, "tree");
+    if (prefix < 0)
+      throw new IllegalArgumentException("prefix: " + prefix);
+    final int count = tree.idx().count();
+    long minSlots = (long) Math.ceil(count / MAX_LOAD_FACTOR);
+    if (minSlots > MAX_SLOTS)
+      throw new IllegalArgumentException("too many leaves to index: " + count);
+    int slotCount = Math.max(2, Integer.highestOneBit((int) minSlots - 1) << 1);
+
+    IntBuffer slots = ByteBuffer.allocateDirect(slotCount * 4).asIntBuffer();
+    LeafIndex index = new LeafIndex(tree, prefix, slots);
+    for (int leaf = 0; leaf < count; ++leaf)
+      index.insert(leaf);
+    return new LeafIndex(tree, prefix, slots.asReadOnlyBuffer());
+  }
+
+
+  private void insert(int leaf) {
+    byte[] item = tree.data(0, leaf);
+    int slot = hash(item) & mask;
+    for (int value; (value = slots.get(slot)) != 0; slot = (slot + 1) & mask) {
+      if (Arrays.equals(item, tree.data(0, value - 1)))
+        return;   // keep the lowest index
+    }
+    slots.put(slot, leaf + 1);
+  }
+
+
+  /**
+   * Loads an index of the given tree from the start of the given file (memory-mapped,
+   * not copied).
+   *
+   * @see #load(Tree, Path, long)
+   * @see #load(Tree, ByteBuffer)
+   */
+  public static LeafIndex load(Tree tree, Path file) throws IOException {
+    return load(tree, file, 0);
+  }
+
+
+  /**
+   * Loads an index of the given tree from the given file, starting at the given offset
+   * (memory-mapped, not copied). The file may contain other data before the index (e.g. the
+   * tree itself): see also {@linkplain #loadWithTree(Path, boolean)}.
+   *
+   * @param offset the index's starting position in the file (&ge; 0)
+   *
+   * @see #load(Tree, ByteBuffer)
+   */
+  public static LeafIndex load(Tree tree, Path file, long offset) throws IOException {
+    try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = ch.size();
+      if (offset < 0 || offset > size)
+        throw new IllegalArgumentException("offset " + offset + "; file size " + size);
+      if (size - offset > Integer.MAX_VALUE)
+        throw new IllegalArgumentException(
+            "index too large to map: " + file + " (" + (size - offset) + " bytes)");
+      return load(tree, ch.map(FileChannel.MapMode.READ_ONLY, offset, size - offset));
+    }
+  }
+
+
+  /**
+   * Loads a tree and its index from a file written by {@linkplain
+   * #writeWithTree(WritableByteChannel)}: the tree (in the format documented in {@linkplain
+   * Trees}), followed immediately by its index. Both are memory-mapped, not copied.
+   *
+   * @param file            the file
+   * @param verifyChecksum  if {@code true} and the tree contains a checksum, then it is
+   *                        verified (see {@linkplain Trees#load(Path, boolean)})
+   *
+   * @return the index, whose {@linkplain #tree() tree} is the one loaded
+   */
+  public static LeafIndex loadWithTree(Path file, boolean verifyChecksum) throws IOException {
+    try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = ch.size();
+      if (size > Integer.MAX_VALUE)
+        throw new IllegalArgumentException("file too large to map: " + file + " (" + size + " bytes)");
+      ByteBuffer block = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      Tree tree = Trees.load(block, verifyChecksum);
+      return load(tree, block);
+    }
+  }
+
+
+  /**
+   * Loads an index of the given tree from the given block. The returned index is backed by
+   * the block's contents (which should not be modified).
+   *
+   * @param tree  the tree the index was built from
+   * @param block the index in the format described above. Read from its position; on return
+   *              its position is advanced past the end of the index.
+   *
+   * @throws IllegalArgumentException if the block is malformed, or if it is not an index
+   *         of the given tree (per its leaf count and root hash)
+   */
+  public static LeafIndex load(Tree tree, ByteBuffer block) throws IllegalArgumentException {
+    Objects.requireNonNull(tree, "tree");
+    ByteBuffer header = block.slice();
+    final int slotCount;
+    final int prefix;
+    try {
+      int magic = header.getInt();
+      if (magic != MAGIC)
+        throw new IllegalArgumentException("bad magic: " + Integer.toHexString(magic));
+      int version = header.getInt();
+      if (version < 1 || version > VERSION)
+        throw new IllegalArgumentException("unsupported version: " + version);
+      int count = header.getInt();
+      if (count != tree.idx().count())
+        throw new IllegalArgumentException(
+            "leaf count mismatch: index " + count + "; tree " + tree.idx().count());
+      prefix = header.getInt();
+      slotCount = header.getInt();
+      if (prefix < 0 || slotCount < 2 || slotCount > MAX_SLOTS || Integer.bitCount(slotCount) != 1)
+        throw new IllegalArgumentException("prefix " + prefix + "; slots " + slotCount);
+      final int rootLength = header.getInt();
+      if (rootLength < 0 || rootLength > header.remaining())
+        throw new IllegalArgumentException("bad root hash length: " + rootLength);
+      byte[] root = new byte[rootLength];
+      header.get(root);
+      if (!Arrays.equals(root, tree.hash()))
+        throw new IllegalArgumentException("root hash does not match tree's");
+    } catch (BufferUnderflowException bux) {
+      throw new IllegalArgumentException("block too short for header: " + block.remaining(), bux);
+    }
+
+    if (header.remaining() < slotCount * 4)
+      throw new IllegalArgumentException(
+          "block too short for " + slotCount + " slots: " + header.remaining());
+    IntBuffer slots = header.slice(header.position(), slotCount * 4).asIntBuffer();
+    checkSlots(slots, tree.idx().count());
+    block.position(block.position() + header.position() + slotCount * 4);
+    return new LeafIndex(tree, prefix, slots.asReadOnlyBuffer());
+  }
+
+
+  /**
+   * Checks that every slot value is a (1-based) leaf number no greater than {@code count},
+   * or zero (empty); and that at least one slot is empty, so that probes terminate.
+   */
+  private static void checkSlots(IntBuffer slots, int count) throws IllegalArgumentException {
+    boolean empty = false;
+    for (int slot = slots.capacity(); slot-- > 0; ) {
+      int value = slots.get(slot);
+      if (value < 0 || value > count)
+        throw new IllegalArgumentException("slot [" + slot + "] value out of bounds: " + value);
+      empty |= value == 0;
+    }
+    if (!empty)
+      throw new IllegalArgumentException("no empty slots");
+  }
+
+
+  /**
+   * Writes the tree (with a checksum) followed by this index, so that both can be
+   * loaded from a single file.
+   *
+   * @return the number of bytes written
+   *
+   * @see #loadWithTree(Path, boolean)
+   */
+  public long writeWithTree(WritableByteChannel out) throws IOException {
+    return tree.writeTo(out) + writeTo(out);
+  }
+
+
+  /**
+   * Writes this index in the format described above.
+   *
+   * @return the number of bytes written
+   */
+  public long writeTo(WritableByteChannel out) throws IOException {
+    byte[] root = tree.hash();
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + root.length);
+    header.putInt(MAGIC).putInt(VERSION).putInt(tree.idx().count()).putInt(prefix);
+    header.putInt(slots.capacity()).putInt(root.length).put(root).flip();
+    Trees.writeFully(out, header);
+
+    ByteBuffer buffer = ByteBuffer.allocate(Math.min(64 * 1024, slots.capacity() * 4));
+    IntBuffer ints = buffer.asIntBuffer();
+    for (int slot = 0; slot < slots.capacity(); ) {
+      int n = Math.min(ints.capacity(), slots.capacity() - slot);
+      ints.clear().put(slots.slice(slot, n));
+      Trees.writeFully(out, buffer.clear().limit(n * 4));
+      slot += n;
+    }
+    return HEADER_SIZE + root.length + slots.capacity() * 4L;
+  }
+
+
+  /**
+   * Returns the indexed tree.
+   */
+  public Tree tree() {
+    return tree;
+  }
+
+
+  /**
+   * Returns the number of leading leaf bytes hashed; 0, if hashed in full.
+   */
+  public int prefix() {
+    return prefix;
+  }
+
+
+  /**
+   * Returns the number of slots in the hash table.
+   */
+  public int slots() {
+    return slots.capacity();
+  }
+
+
+  /**
+   * Returns the index of the leaf with the given value, or -1 if not found. If the
+   * value occurs at more than one leaf, the lowest index is returned.
+   */
+  public int indexOf(byte[] item) {
+    int slot = hash(item) & mask;
+    for (int value; (value = slots.get(slot)) != 0; slot = (slot + 1) & mask) {
+      if (Arrays.equals(item, tree.data(0, value - 1)))
+        return value - 1;
+    }
+    return -1;
+  }
+
+
+  /**
+   * Determines whether a leaf has the given value.
+   */
+  public boolean contains(byte[] item) {
+    return indexOf(item) != -1;
+  }
+
+
+  /**
+   * Returns the proof for the leaf with the given value, or {@code null} if not found.
+   */
+  public Proof proofOf(byte[] item) {
+    int index = indexOf(item);
+    return index == -1 ? null : tree.proof(index);
+  }
+
+
+  /**
+   * FNV-1a over the (prefix) bytes, followed by a 64-bit finalizer (from MurmurHash3).
+   */
+  private int hash(byte[] item) {
+    final int len = prefix == 0 ? item.length : Math.min(prefix, item.length);
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < len; ++i)
+      h = (h ^ (item[i] & 0xff)) * 0x100000001b3L;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+}
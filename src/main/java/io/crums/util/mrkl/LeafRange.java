@@ -0,0 +1,86 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+/**
+ * A contiguous range of leaf indices, from {@linkplain #start() start} (inclusive) to
+ * {@linkplain #end() end} (exclusive). Instances are immutable.
+ *
+ * @see Trees#diff(Tree, Tree)
+ */
+public final class LeafRange {
+
+  private final int start;
+  private final int end;
+
+
+  /**
+   * @param start the first leaf index (&ge; 0)
+   * @param end   one beyond the last leaf index (&gt; {@code start})
+   */
+  public LeafRange(int start, int end) throws IllegalArgumentException {
+    if (start < 0 || end <= start)
+      throw new IllegalArgumentException("start " + start + "; end " + end);
+    this.start = start;
+    this.end = end;
+  }
+
+
+  /**
+   * Returns the first leaf index in the range.
+   */
+  public int start() {
+    return start;
+  }
+
+
+  /**
+   * Returns one beyond the last leaf index in the range.
+   */
+  public int end() {
+    return end;
+  }
+
+
+  /**
+   * Returns the number of leaves in the range.
+   */
+  public int size() {
+    return end - start;
+  }
+
+
+  /**
+   * Determines whether the given leaf index is in the range.
+   */
+  public boolean contains(int index) {
+    return index >= start && index < end;
+  }
+
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true;
+    else if (o instanceof LeafRange) {
+      LeafRange other = (LeafRange) o;
+      return start == other.start && end == other.end;
+    } else
+      return false;
+  }
+
+
+  @Override
+  public int hashCode() {
+    return start * 31 + end;
+  }
+
+
+  /** @return {@code "[" + start() + "," + end() + ")"} */
+  @Override
+  public String toString() {
+    return "[" + start + "," + end + ")";
+  }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+import io.crums.util.mrkl.index.LongNode;
+import io.crums.util.mrkl.index.LongTreeIndex;
+
+/**
+ * A read-only, fixed-width Merkle tree with a 64-bit leaf count, backed by a tree file
+ * memory-mapped in segments. Unlike {@linkplain FixedLeafTree}, which is backed by a single
+ * buffer (and is therefore limited to 2GB), the size of the tree is bounded only by the
+ * file system.
+ * <p>
+ * The backing file is in the fixed-width, <em>serial</em> layout documented in {@linkplain Trees}
+ * (for example, one written by {@linkplain FileTreeBuilder#writeTreeFile(Path, Path)}).
+ * Since this class does not extend the {@code int}-indexed {@linkplain Tree}, its structure
+ * is described by a {@linkplain LongTreeIndex}. Instances are safe under concurrent access.
+ * </p>
+ *
+ * @see #load(Path)
+ * @see #proof(long)
+ */
+public class LongFixedLeafTree {
+
+  /**
+   * The default segment size (1 GB).
+   */
+  public final static int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+
+  private final LongTreeIndex idx;
+  private final String algo;
+  private final int algoWidth;
+  private final int leafWidth;
+  private final int segmentSize;
+  private final ByteBuffer[] segments;
+  private final long levelZeroOffset;
+
+
+  private LongFixedLeafTree(
+      LongTreeIndex idx, String algo, int algoWidth, int leafWidth,
+      int segmentSize, ByteBuffer[] segments) {
+    this.idx = idx;
+    this.algo = algo;
+    this.algoWidth = algoWidth;
+    this.leafWidth = leafWidth;
+    this.segmentSize = segmentSize;
+    this.segments = segments;
+    this.levelZeroOffset = (idx.count() - 1) * algoWidth;
+  }
+
+
+  /**
+   * Loads the tree in the given file, memory-mapped in segments of
+   * {@linkplain #DEFAULT_SEGMENT_SIZE default size}. The file's checksum (if any) is
+   * not verified.
+   *
+   * @param file  path to a file in the fixed-width, serial layout
+   *
+   * @see #load(Path, int)
+   */
+  public static LongFixedLeafTree load(Path file) throws IOException {
+    return load(file, DEFAULT_SEGMENT_SIZE);
+  }
+
+
+  /**
+   * Loads the tree in the given file, memory-mapped in segments of the given size.
+   * The file's checksum (if any) is not verified.
+   *
+   * @param file        path to a file in the fixed-width, serial layout
+   * @param segmentSize the maximum number of bytes in each mapped segment (&ge; 1)
+   *
+   * @throws IllegalArgumentException if the file is malformed or not in the fixed-width,
+   *         serial layout
+   */
+  public static LongFixedLeafTree load(Path file, int segmentSize) throws IOException {
+    if (segmentSize < 1)
+      throw new IllegalArgumentException("segmentSize: " + segmentSize);
+
+    try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+
+      final long fileSize = ch.size();
+      if (fileSize < Trees.HEADER_SIZE)
+        throw new IllegalArgumentException("file too short for header: " + file);
+
+      ByteBuffer headerBlock = ByteBuffer.allocate(Trees.HEADER_SIZE);
+      FileTreeBuilder.readFully(ch, headerBlock, 0);
+      var header = new Trees.Header(headerBlock.flip());
+
+      if (header.layout != Trees.FIXED_LAYOUT)
+        throw new IllegalArgumentException("not a fixed-width tree: " + file);
+      if (header.blockLevels != 1)
+        throw new IllegalArgumentException(
+            "block layout (" + header.blockLevels + ") not supported: " + file);
+      if (header.algoWidth < FixedLeafTree.MIN_ALGO_WIDTH || header.leafWidth < FixedLeafTree.MIN_LEAF_WIDTH)
+        throw new IllegalArgumentException(
+            "hash/leaf width " + header.algoWidth + "/" + header.leafWidth + ": " + file);
+
+      final long count = header.leafCount;
+      long expectedBody;
+      try {
+        expectedBody = Math.addExact(
+            Math.multiplyExact(count - 1, header.algoWidth),
+            Math.multiplyExact(count, header.leafWidth));
+      } catch (ArithmeticException ax) {
+        throw new IllegalArgumentException("leaf count: " + count);
+      }
+      if (header.bodyLength != expectedBody)
+        throw new IllegalArgumentException(
+            "body length " + header.bodyLength + " does not match tree [" + header.algo + ":" +
+            count + ":" + header.leafWidth + "]");
+      if (fileSize - Trees.HEADER_SIZE < expectedBody)
+        throw new IllegalArgumentException(
+            "file truncated: expected " + expectedBody + " body bytes; actual " +
+            (fileSize - Trees.HEADER_SIZE));
+
+      final int segCount = (int) ((expectedBody + segmentSize - 1) / segmentSize);
+      ByteBuffer[] segments = new ByteBuffer[segCount];
+      for (int s = 0; s < segCount; ++s) {
+        long offset = s * (long) segmentSize;
+        long size = Math.min(segmentSize, expectedBody - offset);
+        segments[s] = ch.map(FileChannel.MapMode.READ_ONLY, Trees.HEADER_SIZE + offset, size);
+      }
+
+      return new LongFixedLeafTree(
+          new LongTreeIndex(count), header.algo,
+          header.algoWidth, header.leafWidth, segmentSize, segments);
+    }
+  }
+
+
+  /**
+   * Returns the tree's structural index.
+   */
+  public final LongTreeIndex idx() {
+    return idx;
+  }
+
+
+  /**
+   * Returns the hashing algorithm.
+   */
+  public final String getHashAlgo() {
+    return algo;
+  }
+
+
+  /**
+   * Returns the byte width of the hashing algorithm.
+   */
+  public final int hashWidth() {
+    return algoWidth;
+  }
+
+
+  /**
+   * Returns the byte width of the leaves.
+   */
+  public final int leafWidth() {
+    return leafWidth;
+  }
+
+
+  /**
+   * Returns the maximum number of bytes in each mapped segment.
+   */
+  public final int segmentSize() {
+    return segmentSize;
+  }
+
+
+  /**
+   * Returns [a copy of] the data at the node with the given coordinates.
+   *
+   * @param level &ge; 0 and &le; {@code idx().height()}
+   * @param index &ge; 0 and &lt; {@code idx().count(level)}
+   */
+  public byte[] data(int level, long index) throws IndexOutOfBoundsException {
+    byte[] data;
+    long offset;
+    if (level == 0) {
+      Objects.checkIndex(index, idx.count());
+      data = new byte[leafWidth];
+      offset = levelZeroOffset + index * leafWidth;
+    } else {
+      data = new byte[algoWidth];
+      offset = idx.serialIndex(level, index) * algoWidth;
+    }
+    read(offset, data);
+    return data;
+  }
+
+
+  /**
+   * Returns [a copy of] the root hash.
+   */
+  public final byte[] hash() {
+    return data(idx.height(), 0);
+  }
+
+
+  /**
+   * Returns the proof of the leaf at the given index.
+   *
+   * @param leafIndex &ge; 0 and &lt; {@code idx().count()}
+   */
+  public Proof proof(long leafIndex) throws IndexOutOfBoundsException {
+    byte[][] chain = new byte[Proof.chainLength(idx.count(), leafIndex)][];
+    chain[0] = data(0, leafIndex);
+    int c = 1;
+    for (LongNode node = idx.getNode(0, leafIndex); node.level() != idx.height(); ) {
+      LongNode sibling = idx.getSibling(node.level(), node.index());
+      chain[c++] = data(sibling.level(), sibling.index());
+      node = idx.getParent(node.level(), node.index());
+    }
+    chain[c] = hash();
+    return new Proof(algo, idx.count(), leafIndex, chain, false);
+  }
+
+
+  /** @return {@code "LongFixedLeafTree(" + idx().count() + ":" + leafWidth() + ")"} */
+  @Override
+  public String toString() {
+    return "LongFixedLeafTree(" + idx.count() + ":" + leafWidth + ")";
+  }
+
+
+  /**
+   * Reads {@code out.length} bytes starting at the given body offset. A read may
+   * straddle segments.
+   */
+  private void read(long offset, byte[] out) {
+    for (int pos = 0; pos < out.length; ) {
+      ByteBuffer segment = segments[(int) (offset / segmentSize)];
+      int within = (int) (offset % segmentSize);
+      int len = Math.min(out.length - pos, segment.capacity() - within);
+      segment.get(within, out, pos, len);
+      pos += len;
+      offset += len;
+    }
+  }
+
+}
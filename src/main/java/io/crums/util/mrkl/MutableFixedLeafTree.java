@@ -0,0 +1,373 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * A {@linkplain FixedLeafTree} whose leaves can be updated in place. Updating a leaf
+ * rehashes only the nodes on its path to the root (including any carries), so a
+ * single update costs O(log n) hashes rather than a rebuild. Batches of updates
+ * are best made via {@linkplain #setLeaves(int[], byte[][])}, which rehashes shared
+ * ancestors only once, level by level, hashing the dirty nodes at each level in parallel.
+ * <p>
+ * Unlike most {@code Tree}s, instances are <em>not</em> immutable. They are safe under
+ * concurrent access: updates are guarded by a write lock, and reads by a read lock. The
+ * inherited methods that expose the backing storage ({@linkplain #dataBlock()}, {@linkplain
+ * #leavesBlock()}, {@linkplain #toBlockLayout(int)}) return consistent <em>copies</em>, not
+ * live views. {@linkplain #writeTo(java.nio.channels.WritableByteChannel) Writing} the
+ * tree writes an {@linkplain #immutableCopy() immutable copy}, so it never tears. But a sequence of reads (e.g. walking the tree) may straddle
+ * an update; use {@linkplain #consistentProof(int)} for a consistent proof, or {@linkplain
+ * #immutableCopy()} for a consistent tree. The internal nodes are always laid out in serial
+ * order.
+ * </p>
+ *
+ * @see #newInstance(FixedLeafTree)
+ */
+public class MutableFixedLeafTree extends FixedLeafTree {
+
+  /**
+   * Minimum number of dirty nodes at a level for them to be hashed in parallel.
+   */
+  public final static int PARALLEL_THRESHOLD = 1024;
+
+  private final static int CHUNK_SIZE = 256;
+
+
+  private final byte[] bytes;
+  private final int algoWidth;
+  private final int leafWidth;
+  private final int levelZeroOffset;
+  private final DigestPool digests;
+  private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
+
+
+  /**
+   * Creates a new instance backed by the given array (not copied). The array should not be
+   * accessed by the caller thereafter.
+   *
+   * @param leaves    number of leaf nodes in the tree
+   * @param algo      hash algo used for the trees internal nodes
+   * @param data      node data in serial form (interpreted by next parameters)
+   * @param algoWidth number of bytes in the hash generated by <code>algo</code>
+   * @param leafWidth number of bytes in a leaf node
+   */
+  public MutableFixedLeafTree(int leaves, String algo, byte[] data, int algoWidth, int leafWidth)
+      throws IllegalArgumentException {
+    super(leaves, algo, data, algoWidth, leafWidth);
+    this.bytes = data;
+    this.algoWidth = algoWidth;
+    this.leafWidth = leafWidth;
+    this.levelZeroOffset = (leaves - 1) * algoWidth;
+    this.digests = DigestPool.of(algo);
+    if (digests.hashWidth() != algoWidth)
+      throw new IllegalArgumentException(
+          "algoWidth " + algoWidth + " does not match " + algo + " (" + digests.hashWidth() + ")");
+  }
+
+
+  /**
+   * Creates and returns a mutable copy of the given tree.
+   */
+  public static MutableFixedLeafTree newInstance(FixedLeafTree tree) {
+    FixedLeafTree serial = tree.toBlockLayout(1);
+    final int count = serial.idx().count();
+    byte[] data = new byte[treeDataLength(count, serial.hashWidth(), serial.leafWidth())];
+    serial.dataBlock().get(0, data);
+    return new MutableFixedLeafTree(
+        count, serial.getHashAlgo(), data, serial.hashWidth(), serial.leafWidth());
+  }
+
+
+  @Override
+  public byte[] data(int level, int index) {
+    rwLock.readLock().lock();
+    try {
+      return super.data(level, index);
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Since the tree is mutable, this is a copy of the present state, not a live view.
+   * </p>
+   */
+  @Override
+  public ByteBuffer dataBlock() {
+    rwLock.readLock().lock();
+    try {
+      return ByteBuffer.wrap(bytes.clone()).asReadOnlyBuffer();
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Since the tree is mutable, this is a copy of the present state, not a live view.
+   * </p>
+   */
+  @Override
+  public ByteBuffer leavesBlock() {
+    final int end = levelZeroOffset + idx().count() * leafWidth;
+    rwLock.readLock().lock();
+    try {
+      return ByteBuffer.wrap(Arrays.copyOfRange(bytes, levelZeroOffset, end)).asReadOnlyBuffer();
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+
+  @Override
+  protected ByteBuffer extraBlock() {
+    rwLock.readLock().lock();
+    try {
+      ByteBuffer extra = super.extraBlock();
+      return ByteBuffer.allocate(extra.remaining()).put(extra).flip().asReadOnlyBuffer();
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+
+  /**
+   * Returns an immutable copy of the present state with its internal nodes laid out in
+   * blocks of the given number of levels. Unlike the base implementation, this instance
+   * is never returned (not even if the layout is unchanged).
+   */
+  @Override
+  public FixedLeafTree toBlockLayout(int blockLevels) {
+    if (blockLevels == 1)
+      return immutableCopy();
+    rwLock.readLock().lock();
+    try {
+      return super.toBlockLayout(blockLevels);
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+
+  @Override
+  boolean verifyInternal(int level, int index, MessageDigest digest, byte[] scratch) {
+    // updates hold the write lock until every dirty node is rehashed, so each
+    // node is consistent with its children whenever the read lock is held
+    rwLock.readLock().lock();
+    try {
+      return super.verifyInternal(level, index, digest, scratch);
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+
+  /**
+   * Returns the proof for the leaf at the given index. Unlike {@linkplain #proof(int)},
+   * the proof is consistent under concurrent updates.
+   */
+  public Proof consistentProof(int leafIndex) throws IndexOutOfBoundsException {
+    rwLock.readLock().lock();
+    try {
+      return new Proof(this, leafIndex);
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+
+  /**
+   * Returns an immutable copy of this tree's present state.
+   */
+  public FixedLeafTree immutableCopy() {
+    rwLock.readLock().lock();
+    try {
+      return new FixedLeafTree(idx().count(), getHashAlgo(), bytes.clone(), algoWidth, leafWidth);
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+
+  /**
+   * Sets the leaf at the given index and rehashes its path to the root.
+   *
+   * @param index the leaf index
+   * @param leaf  the new leaf value ({@linkplain #leafWidth()} bytes; copied)
+   */
+  public void setLeaf(int index, byte[] leaf) throws IndexOutOfBoundsException {
+    Objects.checkIndex(index, idx().count());
+    checkLeaf(leaf);
+
+    rwLock.writeLock().lock();
+    MessageDigest digest = digests.borrow();
+    try {
+      System.arraycopy(leaf, 0, bytes, levelZeroOffset + index * leafWidth, leafWidth);
+      final int height = idx().height();
+      for (int level = 0; level != height; ) {
+        Node parent = idx().getParent(level, index);
+        level = parent.level();
+        index = parent.index();
+        rehash(level, index, digest);
+      }
+    } finally {
+      digests.release(digest);
+      rwLock.writeLock().unlock();
+    }
+  }
+
+
+  /**
+   * Sets the leaves at the given indices and rehashes their paths to the root. Ancestors
+   * shared by the updated leaves are rehashed only once. The dirty nodes are rehashed level by
+   * level; at levels with at least {@linkplain #PARALLEL_THRESHOLD} dirty nodes, in parallel
+   * (using the common fork-join pool). If an index repeats, the last of its leaves wins.
+   *
+   * @param indices the leaf indices
+   * @param leaves  the new leaf values (each {@linkplain #leafWidth()} bytes; copied),
+   *                in the same order as {@code indices}
+   *
+   * @return the number of internal nodes rehashed
+   */
+  public int setLeaves(int[] indices, byte[][] leaves) throws IndexOutOfBoundsException {
+    if (indices.length != leaves.length)
+      throw new IllegalArgumentException(
+          "indices/leaves length mismatch: " + indices.length + "/" + leaves.length);
+    final int count = idx().count();
+    for (int i = 0; i < indices.length; ++i) {
+      Objects.checkIndex(indices[i], count);
+      checkLeaf(leaves[i]);
+    }
+
+    final int height = idx().height();
+    // dirty nodes, by level
+    BitSet[] dirty = new BitSet[height + 1];
+
+    rwLock.writeLock().lock();
+    try {
+      for (int i = 0; i < indices.length; ++i) {
+        System.arraycopy(leaves[i], 0, bytes, levelZeroOffset + indices[i] * leafWidth, leafWidth);
+        markParent(dirty, 0, indices[i]);
+      }
+
+      int rehashed = 0;
+      for (int level = 1; level <= height; ++level) {
+        if (dirty[level] == null)
+          continue;
+        int[] nodes = dirty[level].stream().toArray();
+        dirty[level] = null;
+        rehashAll(level, nodes);
+        rehashed += nodes.length;
+        if (level != height) {
+          for (int index : nodes)
+            markParent(dirty, level, index);
+        }
+      }
+      return rehashed;
+
+    } finally {
+      rwLock.writeLock().unlock();
+    }
+  }
+
+
+  private void markParent(BitSet[] dirty, int level, int index) {
+    Node parent = idx().getParent(level, index);
+    BitSet set = dirty[parent.level()];
+    if (set == null)
+      dirty[parent.level()] = set = new BitSet();
+    set.set(parent.index());
+  }
+
+
+  /**
+   * Rehashes the given nodes at the given level (whose children are up to date).
+   * Nodes at the same level never depend on one another.
+   */
+  private void rehashAll(int level, int[] nodes) {
+    if (nodes.length < PARALLEL_THRESHOLD) {
+      MessageDigest digest = digests.borrow();
+      try {
+        for (int index : nodes)
+          rehash(level, index, digest);
+      } finally {
+        digests.release(digest);
+      }
+      return;
+    }
+
+    final int chunks = (nodes.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    IntStream.range(0, chunks).parallel().forEach(chunk -> {
+      MessageDigest digest = digests.borrow();
+      try {
+        int end = Math.min(nodes.length, (chunk + 1) * CHUNK_SIZE);
+        for (int n = chunk * CHUNK_SIZE; n < end; ++n)
+          rehash(level, nodes[n], digest);
+      } finally {
+        digests.release(digest);
+      }
+    });
+  }
+
+
+  /**
+   * Recomputes the hash of the internal node at the given coordinates from its children.
+   * The structure of this computation mirrors {@code FixedLeafTree.computeInternalNodes}.
+   */
+  private void rehash(int level, int index, MessageDigest digest) {
+    final int leftLevel = level - 1;
+    final int leftIndex = index << 1;
+    final int rightLevel = idx().rightChildLevel(level, index);
+    final int rightIndex = rightLevel == leftLevel ? leftIndex + 1 : idx().maxIndex(rightLevel);
+
+    digest.reset();
+    update(digest, leftLevel, leftIndex);
+    update(digest, rightLevel, rightIndex);
+    try {
+      digest.digest(bytes, offset(level, index), algoWidth);
+    } catch (DigestException dx) {
+      throw new IllegalArgumentException("digest: " + dx.getMessage(), dx);
+    }
+  }
+
+
+  private void update(MessageDigest digest, int level, int index) {
+    if (level == 0) {
+      digest.update(LEAF_PAD);
+      digest.update(bytes, offset(0, index), leafWidth);
+    } else {
+      digest.update(BRANCH_PAD);
+      digest.update(bytes, offset(level, index), algoWidth);
+    }
+  }
+
+
+  private int offset(int level, int index) {
+    return level == 0 ?
+        levelZeroOffset + index * leafWidth :
+        idx().serialIndex(level, index) * algoWidth;
+  }
+
+
+  private void checkLeaf(byte[] leaf) {
+    if (leaf.length != leafWidth)
+      throw new IllegalArgumentException(
+          "leaf length " + leaf.length + "; expected " + leafWidth);
+  }
+
+}
@@ -73,6 +73,17 @@ public class Node extends AbstractNode {
   }
   
   
+  /**
+   * Verifies the hash of this node against its children using a digest
+   * from the shared {@linkplain DigestPool pool}.
+   * 
+   * @see #verify(MessageDigest)
+   */
+  public boolean verify() {
+    return DigestPool.of(tree.getHashAlgo()).apply(this::verify);
+  }
+  
+  
   
   // Navigation methods
   
@@ -139,7 +150,7 @@ public class Node extends AbstractNode {
    * left child.
    */
   public final boolean isCarry() {
-    return !isLeaf() && leftChild().level() != rightChild().level();
+    return !isLeaf() && tree.idx().rightChildLevel(level(), index()) != level() - 1;
   }
   
   
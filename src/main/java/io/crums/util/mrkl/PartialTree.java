@@ -0,0 +1,276 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Objects;
+
+import io.crums.util.mrkl.index.LongNode;
+import io.crums.util.mrkl.index.LongTreeIndex;
+import io.crums.util.mrkl.intenal.LongObjectMap;
+
+/**
+ * A sparse view of a Merkle tree assembled from {@linkplain Proof}s against the same root.
+ * Only the nodes contained in (or computed from) the ingested proofs are stored, keyed by
+ * their serial index.
+ * <p>
+ * Each ingested proof is verified once: hashing stops as soon as the path reaches a node
+ * already known (i.e. already verified); the rest of the proof is then checked by comparison.
+ * Every known node's sibling path to the root is also known, so any leaf that is known is
+ * {@linkplain #covers(long) covered}: its proof can be {@linkplain #proof(long) emitted}
+ * or {@linkplain #verify(Proof) verified} without hashing.
+ * </p><p>
+ * Instances are not safe under concurrent access.
+ * </p>
+ *
+ * @see #add(Proof)
+ */
+public class PartialTree {
+
+  private final String algo;
+  private final LongTreeIndex idx;
+  private final byte[] root;
+  private final MessageDigest digest;
+  private final LongObjectMap<byte[]> nodes = new LongObjectMap<>();
+  private long hashCount;
+
+
+  /**
+   * Creates an instance that knows only the root.
+   *
+   * @param algo      the hashing algorithm
+   * @param leafCount the number of leaves in the tree (&ge; 2)
+   * @param rootHash  the root hash (copied)
+   */
+  public PartialTree(String algo, long leafCount, byte[] rootHash) throws IllegalArgumentException {
+    this.algo = Objects.requireNonNull(algo, "algo");
+    this.idx = new LongTreeIndex(leafCount);
+    this.root = rootHash.clone();
+    try {
+      this.digest = MessageDigest.getInstance(algo);
+    } catch (NoSuchAlgorithmException nsax) {
+      throw new IllegalArgumentException("algo: " + algo, nsax);
+    }
+    if (root.length != digest.getDigestLength())
+      throw new IllegalArgumentException(
+          "root hash length " + root.length + " does not match " + algo);
+    nodes.put(0L, root);
+  }
+
+
+  /**
+   * Creates and returns a new instance from the given proof.
+   *
+   * @throws IllegalArgumentException if the proof does not verify
+   */
+  public static PartialTree newInstance(Proof proof) throws IllegalArgumentException {
+    PartialTree tree = new PartialTree(proof.getHashAlgo(), proof.longLeafCount(), proof.rootHash());
+    if (!tree.add(proof))
+      throw new IllegalArgumentException("proof does not verify: " + proof);
+    return tree;
+  }
+
+
+  /**
+   * Returns the hashing algorithm.
+   */
+  public final String getHashAlgo() {
+    return algo;
+  }
+
+
+  /**
+   * Returns the tree's structural index.
+   */
+  public final LongTreeIndex idx() {
+    return idx;
+  }
+
+
+  /**
+   * Returns [a copy of] the root hash.
+   */
+  public final byte[] rootHash() {
+    return root.clone();
+  }
+
+
+  /**
+   * Returns the number of known nodes (including the root).
+   */
+  public int knownNodes() {
+    return nodes.size();
+  }
+
+
+  /**
+   * Returns the number of hashes computed verifying proofs so far.
+   */
+  public long hashCount() {
+    return hashCount;
+  }
+
+
+  /**
+   * Returns [a copy of] the known data at the given coordinates, or {@code null}
+   * if unknown.
+   */
+  public byte[] data(int level, long index) throws IndexOutOfBoundsException {
+    byte[] node = nodes.get(idx.serialIndex(level, index));
+    return node == null ? null : node.clone();
+  }
+
+
+  /**
+   * Determines whether the proof of the leaf at the given index is known.
+   */
+  public boolean covers(long leafIndex) throws IndexOutOfBoundsException {
+    return nodes.containsKey(idx.serialIndex(0, leafIndex));
+  }
+
+
+  /**
+   * Returns the proof of the given (covered) leaf. No hashing is involved.
+   *
+   * @throws IllegalArgumentException if the leaf is not {@linkplain #covers(long) covered}
+   */
+  public Proof proof(long leafIndex) throws IllegalArgumentException {
+    if (!covers(leafIndex))
+      throw new IllegalArgumentException("leaf not covered: " + leafIndex);
+
+    byte[][] chain = new byte[Proof.chainLength(idx.count(), leafIndex)][];
+    chain[0] = nodes.get(idx.serialIndex(0, leafIndex));
+    int c = 1;
+    long index = leafIndex;
+    for (int level = 0; level != idx.height(); ) {
+      LongNode sibling = idx.getSibling(level, index);
+      chain[c++] = nodes.get(idx.serialIndex(sibling.level(), sibling.index()));
+      LongNode parent = idx.getParent(level, index);
+      level = parent.level();
+      index = parent.index();
+    }
+    chain[c] = root;
+    return new Proof(algo, idx.count(), leafIndex, chain, false);
+  }
+
+
+  /**
+   * Verifies the given proof and, if it verifies, adds its nodes to this instance.
+   *
+   * @return {@code true} iff the proof verifies
+   *
+   * @throws IllegalArgumentException if the proof is not for this tree (algo, leaf count, or
+   *         root hash mismatch)
+   */
+  public boolean add(Proof proof) throws IllegalArgumentException {
+    if (!sameTree(proof))
+      throw new IllegalArgumentException("proof is for another tree: " + proof);
+    return check(proof, true);
+  }
+
+
+  /**
+   * Verifies the given proof without adding its nodes to this instance. If the proof's leaf is
+   * {@linkplain #covers(long) covered}, no hashing is involved.
+   *
+   * @return {@code true} iff the proof verifies against this tree's root
+   */
+  public boolean verify(Proof proof) {
+    return sameTree(proof) && check(proof, false);
+  }
+
+
+  private boolean sameTree(Proof proof) {
+    return
+        proof.longLeafCount() == idx.count() &&
+        proof.getHashAlgo().equals(algo) &&
+        Arrays.equals(proof.link(proof.chainSize() - 1), root);
+  }
+
+
+  private boolean check(Proof proof, boolean store) {
+
+    final int maxNew = 2 * proof.chainSize();
+    long[] newKeys = new long[maxNew];
+    byte[][] newNodes = new byte[maxNew][];
+    int n = 0;
+
+    int level = 0;
+    long index = proof.longLeafIndex();
+    byte[] hash = proof.link(0);
+    int c = 1;
+
+    // walk up, hashing, until we hit a known node
+    while (true) {
+      long key = idx.serialIndex(level, index);
+      byte[] known = nodes.get(key);
+      if (known != null) {
+        if (!Arrays.equals(known, hash))
+          return false;
+        break;
+      }
+      // (the root is always known, so we never walk past it)
+      newKeys[n] = key;
+      newNodes[n++] = hash;
+
+      LongNode node = idx.getNode(level, index);
+      LongNode sibling = idx.getSibling(level, index);
+      byte[] siblingHash = proof.link(c++);
+      long siblingKey = idx.serialIndex(sibling.level(), sibling.index());
+      byte[] knownSibling = nodes.get(siblingKey);
+      if (knownSibling == null) {
+        newKeys[n] = siblingKey;
+        newNodes[n++] = siblingHash;
+      } else if (!Arrays.equals(knownSibling, siblingHash))
+        return false;
+
+      LongNode left, right;
+      byte[] leftHash, rightHash;
+      if (node.isLeft()) {
+        left = node;  leftHash = hash;
+        right = sibling;  rightHash = siblingHash;
+      } else {
+        left = sibling;  leftHash = siblingHash;
+        right = node;  rightHash = hash;
+      }
+
+      ++hashCount;
+      try {
+        if (!right.isLeaf())
+          hash = Tree.hashInternals(leftHash, rightHash, digest);
+        else if (left.isLeaf())
+          hash = Tree.hashLeaves(leftHash, rightHash, digest);
+        else
+          hash = Tree.hashUncommon(leftHash, rightHash, digest);
+      } catch (IllegalArgumentException iax) {
+        return false;
+      }
+
+      LongNode parent = idx.getParent(level, index);
+      level = parent.level();
+      index = parent.index();
+    }
+
+    // the known node's sibling path is known: compare the rest of the chain
+    for (; level != idx.height(); ++c) {
+      LongNode sibling = idx.getSibling(level, index);
+      byte[] known = nodes.get(idx.serialIndex(sibling.level(), sibling.index()));
+      if (!Arrays.equals(known, proof.link(c)))
+        return false;
+      LongNode parent = idx.getParent(level, index);
+      level = parent.level();
+      index = parent.index();
+    }
+
+    if (store) {
+      for (int i = 0; i < n; ++i)
+        nodes.put(newKeys[i], newNodes[i]);
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.security.MessageDigest;
+import java.util.BitSet;
+import java.util.Objects;
+
+import io.crums.util.mrkl.intenal.PersistentSparseArray;
+
+/**
+ * A version of a base tree with some of its leaves changed. Each version is an immutable
+ * {@code Tree}: {@linkplain #setLeaf(int, byte[]) updating} a version yields a new version,
+ * leaving the old one intact. Versions share all unchanged nodes, both with the base tree
+ * and with each other: only the nodes on the updated leaves' paths to the root are new
+ * (path copying). So a version costs memory on the order of log(n) per updated leaf, and
+ * keeping a long history of versions (e.g. for audits) does not require full copies of the tree.
+ * <p>
+ * Changed nodes are kept in a {@linkplain PersistentSparseArray persistent} overlay keyed by
+ * serial index; the rest are read from the base tree. So a node lookup (and therefore a version's
+ * {@linkplain #hash() hash} and {@linkplain #proof(int) proofs}) costs a few more steps than in
+ * the base tree, no matter how many versions are retained.
+ * </p>
+ *
+ * @see #newInstance(Tree)
+ */
+public final class PersistentTree extends Tree {
+
+  private final Tree base;
+  private final PersistentSparseArray<byte[]> overlay;
+  private final long version;
+  private final DigestPool digests;
+
+
+  // Note each version gets its own index: nodes (and therefore proofs) navigate
+  // thru the tree that created them.
+
+  private PersistentTree(Tree base) {
+    super(base.idx().count(), base.getHashAlgo());
+    this.base = base;
+    this.overlay = new PersistentSparseArray<>(base.idx().totalCount());
+    this.version = 0;
+    this.digests = DigestPool.of(base.getHashAlgo());
+  }
+
+
+  private PersistentTree(PersistentTree prev, PersistentSparseArray<byte[]> overlay) {
+    super(prev.idx().count(), prev.getHashAlgo());
+    this.base = prev.base;
+    this.overlay = overlay;
+    this.version = prev.version + 1;
+    this.digests = prev.digests;
+  }
+
+
+  /**
+   * Returns the initial version of the given base tree (version zero). The base tree
+   * is not copied.
+   */
+  public static PersistentTree newInstance(Tree base) {
+    return new PersistentTree(Objects.requireNonNull(base, "base"));
+  }
+
+
+  /**
+   * Returns the base tree.
+   */
+  public Tree base() {
+    return base;
+  }
+
+
+  /**
+   * Returns the number of updates between this version and the base tree.
+   */
+  public long version() {
+    return version;
+  }
+
+
+  /**
+   * Returns the number of nodes that differ from the base tree.
+   */
+  public int changedNodes() {
+    return overlay.size();
+  }
+
+
+  @Override
+  public byte[] data(int level, int index) {
+    return node(level, index).clone();
+  }
+
+
+  @Override
+  public int leafWidth() {
+    return base.leafWidth();
+  }
+
+
+  /**
+   * Returns the next version, with the leaf at the given index set.
+   *
+   * @param index the leaf index
+   * @param leaf  the new leaf value (copied). If the base tree's leaves are fixed-width,
+   *              then its length must be the {@linkplain #leafWidth() leaf width}.
+   */
+  public PersistentTree setLeaf(int index, byte[] leaf) throws IndexOutOfBoundsException {
+    return setLeaves(new int[] { index }, new byte[][] { leaf });
+  }
+
+
+  /**
+   * Returns the next version, with the leaves at the given indices set. Ancestors shared by
+   * the updated leaves are rehashed (and copied) only once. If an index repeats, the last of
+   * its leaves wins.
+   *
+   * @param indices the leaf indices
+   * @param leaves  the new leaf values (copied), in the same order as {@code indices}
+   */
+  public PersistentTree setLeaves(int[] indices, byte[][] leaves) throws IndexOutOfBoundsException {
+    if (indices.length != leaves.length)
+      throw new IllegalArgumentException(
+          "indices/leaves length mismatch: " + indices.length + "/" + leaves.length);
+    final int count = idx().count();
+    final int leafWidth = leafWidth();
+    for (int i = 0; i < indices.length; ++i) {
+      Objects.checkIndex(indices[i], count);
+      if (leafWidth > 0 && leaves[i].length != leafWidth)
+        throw new IllegalArgumentException(
+            "leaf length " + leaves[i].length + "; expected " + leafWidth);
+    }
+
+    final int height = idx().height();
+    // dirty internal nodes, by level
+    BitSet[] dirty = new BitSet[height + 1];
+    PersistentSparseArray<byte[]>.Editor editor = overlay.edit();
+    for (int i = 0; i < indices.length; ++i) {
+      editor.set(idx().serialIndex(0, indices[i]), leaves[i].clone());
+      markParent(dirty, 0, indices[i]);
+    }
+
+    // rehash level by level: a node's children (even a carry's) are at lower levels
+    MessageDigest digest = digests.borrow();
+    try {
+      for (int level = 1; level <= height; ++level) {
+        BitSet nodes = dirty[level];
+        if (nodes == null)
+          continue;
+        for (int index = nodes.nextSetBit(0); index >= 0; index = nodes.nextSetBit(index + 1)) {
+          editor.set(idx().serialIndex(level, index), rehash(editor, level, index, digest));
+          if (level != height)
+            markParent(dirty, level, index);
+        }
+      }
+    } finally {
+      digests.release(digest);
+    }
+    return new PersistentTree(this, editor.done());
+  }
+
+
+  private void markParent(BitSet[] dirty, int level, int index) {
+    Node parent = idx().getParent(level, index);
+    BitSet set = dirty[parent.level()];
+    if (set == null)
+      dirty[parent.level()] = set = new BitSet();
+    set.set(parent.index());
+  }
+
+
+  /**
+   * Computes the hash of the internal node at the given coordinates from its children
+   * as edited so far.
+   */
+  private byte[] rehash(
+      PersistentSparseArray<byte[]>.Editor editor, int level, int index, MessageDigest digest) {
+    final int leftLevel = level - 1;
+    final int leftIndex = index << 1;
+    final int rightLevel = idx().rightChildLevel(level, index);
+    final int rightIndex = rightLevel == leftLevel ? leftIndex + 1 : idx().maxIndex(rightLevel);
+
+    byte[] left = node(editor.get(idx().serialIndex(leftLevel, leftIndex)), leftLevel, leftIndex);
+    byte[] right = node(editor.get(idx().serialIndex(rightLevel, rightIndex)), rightLevel, rightIndex);
+    if (rightLevel != 0)
+      return hashInternals(left, right, digest);
+    return leftLevel == 0 ? hashLeaves(left, right, digest) : hashUncommon(left, right, digest);
+  }
+
+
+  /**
+   * Returns the node's data, which may be shared.
+   */
+  private byte[] node(int level, int index) {
+    return node(overlay.get(idx().serialIndex(level, index)), level, index);
+  }
+
+
+  /**
+   * Returns the given overlay node, if not null; otherwise, the base tree's.
+   */
+  private byte[] node(byte[] overlayNode, int level, int index) {
+    return overlayNode == null ? base.data(level, index) : overlayNode;
+  }
+
+}
@@ -5,6 +5,7 @@ package io.crums.util.mrkl;
 
 
 import java.nio.ByteBuffer;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.util.AbstractList;
 import java.util.ArrayList;
@@ -12,8 +13,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
-import io.crums.util.mrkl.index.AbstractNode;
-import io.crums.util.mrkl.index.TreeIndex;
+import io.crums.util.mrkl.index.ProofPath;
 import io.crums.util.mrkl.intenal.ByteList;
 
 /**
@@ -21,6 +21,10 @@ import io.crums.util.mrkl.intenal.ByteList;
  * root of a Merkle tree. Note although instances are immutable, a reference to one
  * does <em>not</em> imply a {@linkplain #verify(MessageDigest) verified} proof.
  * For such a guarantee, considering defining a subclass.
+ * <p>
+ * Leaf coordinates are 64-bit: proofs from trees with more than {@code Integer.MAX_VALUE}
+ * leaves are supported. The {@code int} accessors are retained for compatibility.
+ * </p>
  * 
  * @see #hashChain()
  * @see #verify(MessageDigest)
@@ -29,8 +33,8 @@ public class Proof {
   
   private final String algo;
   
-  private final int leafCount;
-  private final int leafIndex;
+  private final long leafCount;
+  private final long leafIndex;
   private final List<byte[]> hashChain;
   
 
@@ -58,6 +62,20 @@ public class Proof {
   
   
   public Proof(String algo, int leafCount, int leafIndex, byte[][] chain, boolean copy) {
+    this(algo, (long) leafCount, (long) leafIndex, chain, copy);
+  }
+
+
+  /**
+   * Creates a new instance with 64-bit coordinates.
+   * 
+   * @param algo      the hashing algorithm
+   * @param leafCount the number of leaves in the tree (&ge; 2)
+   * @param leafIndex the index of the leaf proven
+   * @param chain     the hash chain (see {@linkplain #hashChain()})
+   * @param copy      if {@code true}, then the elements of {@code chain} are copied
+   */
+  public Proof(String algo, long leafCount, long leafIndex, byte[][] chain, boolean copy) {
     this.algo = Objects.requireNonNull(algo, "algo");
     Objects.checkIndex(leafIndex, leafCount);
     this.leafCount = leafCount;
@@ -95,18 +113,133 @@ public class Proof {
    * Verifies this proof and returns the result.
    */
   public final boolean verify(MessageDigest digest) {
+    return verify(digest, new byte[digest.getDigestLength()]);
+  }
+  
+  
+  /**
+   * Verifies this proof using the given scratch buffer and returns the result.
+   * Nothing is allocated: the root is computed in {@code scratch}. (So for a high rate of
+   * verifications, reuse the scratch buffer, e.g. per thread.)
+   * 
+   * @param digest  the digest (of this proof's {@linkplain #getHashAlgo() algo})
+   * @param scratch at least as many bytes as the digest's length. Its contents are overwritten.
+   * 
+   * @see #computeRoot(MessageDigest, byte[], int)
+   */
+  public final boolean verify(MessageDigest digest, byte[] scratch) {
+    computeRoot(digest, scratch, 0);
+    byte[] root = link(hashChain.size() - 1);
+    return Arrays.equals(scratch, 0, digest.getDigestLength(), root, 0, root.length);
+  }
+  
+  
+  /**
+   * Computes the root hash from this proof's hash chain, writing it into the given
+   * output buffer. No per-hop objects are allocated: each intermediate hash is computed
+   * in place at {@code out[off]}. This does not compare the computed root with the proof's
+   * {@linkplain #rootHash() root hash}.
+   * 
+   * @param digest  the digest (of this proof's {@linkplain #getHashAlgo() algo})
+   * @param out     the output buffer
+   * @param off     the offset into {@code out} at which the hash is written (the next
+   *                {@code digest.getDigestLength()} bytes are overwritten)
+   * 
+   * @throws IllegalArgumentException on algo mismatch, or if an internal node in the chain
+   *         is not the width of the digest
+   * @throws IndexOutOfBoundsException if the output buffer is too small
+   */
+  public final void computeRoot(MessageDigest digest, byte[] out, int off)
+      throws IllegalArgumentException, IndexOutOfBoundsException {
     if (!digest.getAlgorithm().equals(algo))
       throw new IllegalArgumentException(
           "algo mismatch: expected '" + algo + "'; digest's '" + digest.getAlgorithm() + "'");
-    
-    
-    byte[] rootHash = merkeRootInternal(
-        leafIndex,
-        leafCount,
-        chain(),
-        digest);
-    
-    return Arrays.equals(rootHash, rootHash());
+    final int width = digest.getDigestLength();
+    Objects.checkFromIndexSize(off, width, out.length);
+
+    final int hops = hashChain.size() - 2;
+    final long rightMask = ProofPath.rightMask(leafCount, leafIndex);
+    final int uncommonHop = ProofPath.uncommonHop(leafCount, leafIndex);
+
+    for (int hop = 0; hop < hops; ++hop) {
+      // invariant: out[off] holds the hash of the path node at this hop (the item, at hop zero)
+      final boolean nodeRight = (rightMask & (1L << hop)) != 0;
+      final byte[] sibling = link(hop + 1);
+      final byte leftPad, rightPad;
+      if (hop == uncommonHop) {
+        leftPad = Tree.BRANCH_PAD;
+        rightPad = Tree.LEAF_PAD;
+        if (nodeRight)
+          checkInternal(sibling, width);
+      } else if (hop == 0) {
+        leftPad = rightPad = Tree.LEAF_PAD;
+      } else {
+        leftPad = rightPad = Tree.BRANCH_PAD;
+        checkInternal(sibling, width);
+      }
+
+      digest.reset();
+      digest.update(leftPad);
+      if (nodeRight)
+        digest.update(sibling);
+      else
+        updateNode(digest, hop, out, off, width);
+      digest.update(rightPad);
+      if (nodeRight)
+        updateNode(digest, hop, out, off, width);
+      else
+        digest.update(sibling);
+      // (the input is already consumed, so it's ok to overwrite it)
+      finish(digest, out, off, width);
+    }
+  }
+  
+  
+  private void updateNode(MessageDigest digest, int hop, byte[] out, int off, int width) {
+    if (hop == 0)
+      digest.update(link(0));
+    else
+      digest.update(out, off, width);
+  }
+  
+  
+  private static void checkInternal(byte[] node, int width) {
+    if (node.length != width)
+      throw new IllegalArgumentException(
+          "internal node length " + node.length + "; expected " + width);
+  }
+  
+  
+  private static void finish(MessageDigest digest, byte[] out, int off, int width) {
+    try {
+      digest.digest(out, off, width);
+    } catch (DigestException dx) {
+      throw new IllegalArgumentException("on writing hash into output buffer: " + dx, dx);
+    }
+  }
+  
+  
+  
+  /**
+   * Verifies this proof using a digest from the shared {@linkplain DigestPool pool}
+   * and returns the result. Safe to invoke from any thread without external
+   * synchronization.
+   * 
+   * @see #verify(MessageDigest)
+   */
+  public final boolean verify() {
+    return DigestPool.of(algo).apply(this::verify);
+  }
+  
+  
+  /**
+   * Verifies this proof using the given verification context and returns the result.
+   * Hashing stops as soon as the path reaches a node the context has already verified.
+   * 
+   * @see ProofVerifier
+   */
+  public final boolean verify(ProofVerifier verifier) {
+    return verifier.verify(this);
   }
   
   
@@ -115,18 +248,16 @@ public class Proof {
    * Returns the chain length.
    */
   public static int chainLength(int leafCount, int leafIndex) {
-    
-    TreeIndex<?> tree = TreeIndex.newGeneric(leafCount);
-    AbstractNode node = tree.getNode(0, leafIndex);
-
-    int count = 2;  // count self and root
-    while (!tree.isRoot(node)) {
-      ++count;
-      // needs sibling hash to form:
-      node = tree.getParent(node);
-    }
-    
-    return count;
+    return chainLength((long) leafCount, (long) leafIndex);
+  }
+
+
+  /**
+   * Returns the chain length for the given 64-bit coordinates.
+   */
+  public static int chainLength(long leafCount, long leafIndex) {
+    // count self and root
+    return ProofPath.hops(leafCount, leafIndex) + 2;
   }
   
 
@@ -138,6 +269,14 @@ public class Proof {
   }
 
 
+  /**
+   * Returns the funnel length for the given 64-bit coordinates.
+   */
+  public static int funnelLength(long leafCount, long leafIndex) {
+    return chainLength(leafCount, leafIndex) - 2;
+  }
+
+
   /**
    * Computes and returns the merkle root for the given item and proof-funnel.
    * 
@@ -168,77 +307,110 @@ public class Proof {
       ByteBuffer item, int index, int count,
       List<ByteBuffer> funnel,
       MessageDigest digest) {
+    return merkleRoot(item, (long) index, (long) count, funnel, digest);
+  }
 
-    if (funnel.size() != funnelLength(count, index))
-      throw new IllegalArgumentException(
-        "funnel size (" + funnel.size() + ") for " + index + ":" + count +
-        "; expected " + funnelLength(count, index));
-
-    var chain = new ArrayList<ByteBuffer>() {
-          @Override public ByteBuffer get(int index) {
-            return super.get(index).slice();
-          }
-        };
 
-    chain.add(item);
-    chain.addAll(funnel);
+  /**
+   * Computes and returns the merkle root for the given item and proof-funnel
+   * using 64-bit coordinates.
+   * 
+   * @see #merkleRoot(ByteBuffer, int, int, List, MessageDigest)
+   */
+  public static byte[] merkleRoot(
+      ByteBuffer item, long index, long count,
+      List<ByteBuffer> funnel,
+      MessageDigest digest) {
 
-    return merkeRootInternal(index, count, chain, digest);
+    byte[] root = new byte[digest.getDigestLength()];
+    merkleRoot(item, index, count, funnel, digest, root, 0);
+    return root;
   }
-  
-
 
 
-  private static byte[] merkeRootInternal(
-      int index, int count, List<ByteBuffer> hashChain,
-      MessageDigest digest) {
-
-    TreeIndex<?> tree = TreeIndex.newGeneric(count);
-    AbstractNode node = tree.getSibling(0, index);
+  /**
+   * Computes the merkle root for the given item and proof-funnel, writing it into
+   * the given output buffer. No per-hop objects are allocated: each intermediate hash is
+   * computed in place at {@code out[off]}. The positions of the given buffers are restored
+   * on return (so they must not be concurrently modified).
+   * 
+   * @param item          the leaf value in the merkle tree; its coordinates follow..
+   * @param index         {@code item} leaf-index in the merkle tree
+   * @param count         no. of items in the merkle tree
+   * @param funnel        intermediate node hashes in a merkle proof
+   * @param digest        digester
+   * @param out           the output buffer
+   * @param off           the offset into {@code out} at which the hash is written (the next
+   *                      {@code digest.getDigestLength()} bytes are overwritten)
+   * 
+   * @see #merkleRoot(ByteBuffer, int, int, List, MessageDigest)
+   */
+  public static void merkleRoot(
+      ByteBuffer item, long index, long count,
+      List<ByteBuffer> funnel,
+      MessageDigest digest,
+      byte[] out, int off) {
 
-    byte[] hash;
-    
-    if (node.isLeaf()) {
-      ByteBuffer left, right;
-      if (node.isLeft()) {
-        left = hashChain.get(1);
-        right = hashChain.get(0);
-      } else {
-        left = hashChain.get(0);
-        right = hashChain.get(1);
-      }
-      hash = Tree.hashLeaves(left, right, digest);
-      
-    } else {
-      assert node.isLeft();
-      hash = Tree.hashUncommon(hashChain.get(1), hashChain.get(0), digest);
-    }
-    
-    node = tree.getParent(node);
-    
-    int cindex = 2;
-    for (; node.level() != tree.height(); node = tree.getParent(node), ++cindex) {
-      // invariant: *hash belongs to *node
-      ByteBuffer left, right;
-      AbstractNode rightNode;
-      if (node.isLeft()) {
-        left = ByteBuffer.wrap(hash);
-        right = hashChain.get(cindex);
-        rightNode = tree.getSibling(node);
-        assert !node.isLeaf();
+    final int hops = ProofPath.hops(count, index);
+    if (funnel.size() != hops)
+      throw new IllegalArgumentException(
+        "funnel size (" + funnel.size() + ") for " + index + ":" + count +
+        "; expected " + hops);
+    final int width = digest.getDigestLength();
+    Objects.checkFromIndexSize(off, width, out.length);
+
+    final long rightMask = ProofPath.rightMask(count, index);
+    final int uncommonHop = ProofPath.uncommonHop(count, index);
+
+    for (int hop = 0; hop < hops; ++hop) {
+      // invariant: out[off] holds the hash of the path node at this hop (the item, at hop zero)
+      final boolean nodeRight = (rightMask & (1L << hop)) != 0;
+      final ByteBuffer sibling = funnel.get(hop);
+      final byte leftPad, rightPad;
+      if (hop == uncommonHop) {
+        leftPad = Tree.BRANCH_PAD;
+        rightPad = Tree.LEAF_PAD;
+        if (nodeRight)
+          checkInternal(sibling, width);
+      } else if (hop == 0) {
+        leftPad = rightPad = Tree.LEAF_PAD;
       } else {
-        // node is right
-        left = hashChain.get(cindex);
-        right = ByteBuffer.wrap(hash);
-        rightNode = node;
+        leftPad = rightPad = Tree.BRANCH_PAD;
+        checkInternal(sibling, width);
       }
-      if (rightNode.isLeaf())
-        hash = Tree.hashUncommon(left, right, digest);
+
+      digest.reset();
+      digest.update(leftPad);
+      if (nodeRight)
+        update(digest, sibling);
+      else if (hop == 0)
+        update(digest, item);
       else
-        hash = Tree.hashInternals(left, right, digest);
+        digest.update(out, off, width);
+      digest.update(rightPad);
+      if (!nodeRight)
+        update(digest, sibling);
+      else if (hop == 0)
+        update(digest, item);
+      else
+        digest.update(out, off, width);
+      finish(digest, out, off, width);
     }
-    // assert cindex == funnel.size();
-    return hash;
+  }
+  
+  
+  /** Updates the digest with the buffer's remaining bytes, restoring its position. */
+  private static void update(MessageDigest digest, ByteBuffer buffer) {
+    int pos = buffer.position();
+    digest.update(buffer);
+    buffer.position(pos);
+  }
+  
+  
+  private static void checkInternal(ByteBuffer node, int width) {
+    if (node.remaining() != width)
+      throw new IllegalArgumentException(
+          "internal node remaining bytes " + node.remaining() + "; expected " + width);
   }
 
 
@@ -263,15 +435,18 @@ public class Proof {
   @Override
   public final int hashCode() {
     int hash = hashChain.hashCode();
-    return hash ^ leafIndex ^ (2*leafCount - 1);
+    return hash ^ Long.hashCode(leafIndex) ^ Long.hashCode(2*leafCount - 1);
   }
   
   
   /**
    * The [leaf] index of the item proven.
+   * 
+   * @throws ArithmeticException if the index overflows an {@code int}
+   * @see #longLeafIndex()
    */
-  public final int leafIndex() {
-    return leafIndex;
+  public final int leafIndex() throws ArithmeticException {
+    return Math.toIntExact(leafIndex);
   }
   
   
@@ -279,8 +454,28 @@ public class Proof {
    * Returns the total number of leaves in the tree from which this proof was constructed.
    * The number of leaves determines the structure of the tree, which in turn governs the
    * validity of the proof.
+   * 
+   * @throws ArithmeticException if the count overflows an {@code int}
+   * @see #longLeafCount()
    */
-  public final int leafCount() {
+  public final int leafCount() throws ArithmeticException {
+    return Math.toIntExact(leafCount);
+  }
+
+
+  /**
+   * The [leaf] index of the item proven, as a {@code long}.
+   */
+  public final long longLeafIndex() {
+    return leafIndex;
+  }
+
+
+  /**
+   * Returns the total number of leaves in the tree from which this proof was constructed,
+   * as a {@code long}.
+   */
+  public final long longLeafCount() {
     return leafCount;
   }
   
@@ -354,6 +549,34 @@ public class Proof {
   }
   
   
+  /**
+   * Returns the element in the hash chain at the given index <em>without copying</em>.
+   * The returned array must not be modified.
+   */
+  final byte[] link(int index) {
+    return hashChain.get(index);
+  }
+
+
+  /**
+   * Returns the number of elements in the hash chain.
+   */
+  final int chainSize() {
+    return hashChain.size();
+  }
+
+
+  /**
+   * Returns the total byte length of the hash chain.
+   */
+  final int chainBytes() {
+    int bytes = 0;
+    for (byte[] link : hashChain)
+      bytes += link.length;
+    return bytes;
+  }
+
+
   /**
    * Returns[a copy of] the hash at the root of the Merkle tree.
    */
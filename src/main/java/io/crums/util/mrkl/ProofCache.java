@@ -0,0 +1,289 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, concurrent cache of {@linkplain Proof}s keyed by tree root hash and leaf index.
+ * Since proofs are immutable, cached instances (and the hash chains they hold) are shared
+ * freely among callers.
+ * <p>
+ * The cache is partitioned into <em>stripes</em> (each guarded by its own lock) to
+ * reduce contention. Each stripe is a least-recently-used (LRU) cache bounded by
+ * weight: a proof's weight is the byte length of its hash chain plus a fixed overhead.
+ * Hit, miss, and eviction counts are maintained.
+ * </p>
+ *
+ * @see #proof(Tree, int)
+ */
+public class ProofCache {
+
+  /**
+   * The default number of stripes.
+   */
+  public final static int DEFAULT_STRIPES = 16;
+
+  /**
+   * Approximate per-entry overhead (in bytes) charged against the cache capacity.
+   */
+  private final static int ENTRY_OVERHEAD = 96;
+
+
+  private final Stripe[] stripes;
+  private final long capacity;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+
+  /**
+   * Creates an instance with the {@linkplain #DEFAULT_STRIPES default number} of stripes.
+   *
+   * @param capacity the maximum total weight of the cached proofs, in bytes
+   */
+  public ProofCache(long capacity) {
+    this(capacity, DEFAULT_STRIPES);
+  }
+
+
+  /**
+   * Creates a new instance.
+   *
+   * @param capacity the maximum total weight of the cached proofs, in bytes (&ge; 0).
+   *                 The capacity is divided evenly among the stripes.
+   * @param stripes  the number of stripes (&ge; 1)
+   */
+  public ProofCache(long capacity, int stripes) throws IllegalArgumentException {
+    if (capacity < 0)
+      throw new IllegalArgumentException("capacity: " + capacity);
+    if (stripes < 1)
+      throw new IllegalArgumentException("stripes: " + stripes);
+    this.capacity = capacity;
+    this.stripes = new Stripe[stripes];
+    for (int s = 0; s < stripes; ++s)
+      this.stripes[s] = new Stripe(capacity / stripes);
+  }
+
+
+  /**
+   * Returns the proof for the given leaf in the given tree, from the cache if present;
+   * otherwise, the proof is generated from the tree and cached under its own
+   * {@linkplain Proof#rootHash() root hash}. If the tree is a {@linkplain MutableFixedLeafTree},
+   * the proof is generated via {@linkplain MutableFixedLeafTree#consistentProof(int)}, and
+   * may be for a later version of the tree than the one looked up.
+   *
+   * @param tree      the tree
+   * @param leafIndex the index of the leaf proven
+   */
+  public Proof proof(Tree tree, int leafIndex) throws IndexOutOfBoundsException {
+    Proof proof = get(tree.hash(), leafIndex);
+    if (proof == null) {
+      proof = tree instanceof MutableFixedLeafTree ?
+          ((MutableFixedLeafTree) tree).consistentProof(leafIndex) :
+          tree.proof(leafIndex);
+      put(proof);
+    }
+    return proof;
+  }
+
+
+  /**
+   * Returns the cached proof for the given leaf, or {@code null} if not cached.
+   *
+   * @param rootHash  the root hash of the tree
+   * @param leafIndex the index of the leaf proven
+   */
+  public Proof get(byte[] rootHash, long leafIndex) {
+    Key key = new Key(Objects.requireNonNull(rootHash, "rootHash"), leafIndex);
+    Proof proof = stripe(key).get(key);
+    if (proof == null)
+      misses.increment();
+    else
+      hits.increment();
+    return proof;
+  }
+
+
+  /**
+   * Adds the given proof to the cache, keyed by its {@linkplain Proof#rootHash() root hash}
+   * and {@linkplain Proof#longLeafIndex() leaf index}. The proof is assumed valid (it is not
+   * verified).
+   */
+  public void put(Proof proof) {
+    put(new Key(proof.rootHash(), proof.longLeafIndex()), proof);
+  }
+
+
+  private void put(Key key, Proof proof) {
+    stripe(key).put(key, proof);
+  }
+
+
+  /**
+   * Removes all proofs from the cache. The counters are unaffected.
+   */
+  public void clear() {
+    for (var stripe : stripes)
+      stripe.clear();
+  }
+
+
+  /**
+   * Returns the number of proofs in the cache.
+   */
+  public int size() {
+    int size = 0;
+    for (var stripe : stripes)
+      size += stripe.size();
+    return size;
+  }
+
+
+  /**
+   * Returns the total weight of the proofs in the cache, in bytes.
+   */
+  public long weight() {
+    long weight = 0;
+    for (var stripe : stripes)
+      weight += stripe.weight();
+    return weight;
+  }
+
+
+  /**
+   * Returns the maximum total weight of the proofs in the cache, in bytes.
+   */
+  public final long capacity() {
+    return capacity;
+  }
+
+
+  /**
+   * Returns the number of {@linkplain #get(byte[], long) lookups} that found a proof.
+   */
+  public final long hits() {
+    return hits.sum();
+  }
+
+
+  /**
+   * Returns the number of {@linkplain #get(byte[], long) lookups} that did not find a proof.
+   */
+  public final long misses() {
+    return misses.sum();
+  }
+
+
+  /**
+   * Returns the number of proofs evicted to make room for others.
+   */
+  public final long evictions() {
+    return evictions.sum();
+  }
+
+
+  /**
+   * Resets the hit, miss, and eviction counters to zero.
+   */
+  public final void resetStats() {
+    hits.reset();
+    misses.reset();
+    evictions.reset();
+  }
+
+
+  private Stripe stripe(Key key) {
+    return stripes[Math.floorMod(key.hashCode(), stripes.length)];
+  }
+
+
+  private static int weigh(Proof proof) {
+    return proof.chainBytes() + ENTRY_OVERHEAD;
+  }
+
+
+
+  private final static class Key {
+
+    private final byte[] root;
+    private final long leafIndex;
+    private final int hashCode;
+
+    Key(byte[] root, long leafIndex) {
+      this.root = root;
+      this.leafIndex = leafIndex;
+      this.hashCode = Arrays.hashCode(root) * 31 + Long.hashCode(leafIndex);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this)
+        return true;
+      if (!(o instanceof Key))
+        return false;
+      Key other = (Key) o;
+      return leafIndex == other.leafIndex && Arrays.equals(root, other.root);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+
+
+  private final class Stripe {
+
+    private final long capacity;
+    private final LinkedHashMap<Key, Proof> lru = new LinkedHashMap<>(64, 0.75f, true);
+    private long weight;
+
+    Stripe(long capacity) {
+      this.capacity = capacity;
+    }
+
+    synchronized Proof get(Key key) {
+      return lru.get(key);
+    }
+
+    synchronized void put(Key key, Proof proof) {
+      final int w = weigh(proof);
+      if (w > capacity)
+        return;
+      Proof old = lru.put(key, proof);
+      weight += w;
+      if (old != null)
+        weight -= weigh(old);
+      for (Iterator<Map.Entry<Key, Proof>> i = lru.entrySet().iterator();
+          weight > capacity && i.hasNext(); ) {
+        weight -= weigh(i.next().getValue());
+        i.remove();
+        evictions.increment();
+      }
+    }
+
+    synchronized void clear() {
+      lru.clear();
+      weight = 0;
+    }
+
+    synchronized int size() {
+      return lru.size();
+    }
+
+    synchronized long weight() {
+      return weight;
+    }
+  }
+
+}
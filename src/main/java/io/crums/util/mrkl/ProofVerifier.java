@@ -0,0 +1,192 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A verification context that remembers the nodes of the proofs it has verified.
+ * When verifying a batch of proofs from the same tree, a proof's path is hashed
+ * only until it reaches a node already verified; the remainder of the proof is
+ * checked by comparison. So the total hashing is on the order of the size of the union
+ * of the paths, rather than <em>k</em> &times; <em>height</em>.
+ * <p>
+ * The verified nodes of each root are kept in a {@linkplain PartialTree}. The number of
+ * roots remembered is bounded: when exceeded, the least recently used root is forgotten.
+ * Instances are safe under concurrent access (verification is serialized under a
+ * {@linkplain ReentrantLock}, so virtual threads are not pinned while hashing).
+ * </p>
+ *
+ * @see Proof#verify(ProofVerifier)
+ */
+public class ProofVerifier {
+
+  /**
+   * The default maximum number of roots remembered.
+   */
+  public final static int DEFAULT_MAX_ROOTS = 16;
+
+
+  private final int maxRoots;
+  private final LinkedHashMap<RootKey, PartialTree> trees;
+  private final ReentrantLock lock = new ReentrantLock();
+
+
+  /**
+   * Creates an instance remembering up to {@linkplain #DEFAULT_MAX_ROOTS} roots.
+   */
+  public ProofVerifier() {
+    this(DEFAULT_MAX_ROOTS);
+  }
+
+
+  /**
+   * Creates an instance remembering up to the given number of roots.
+   *
+   * @param maxRoots &ge; 1
+   */
+  public ProofVerifier(int maxRoots) throws IllegalArgumentException {
+    if (maxRoots < 1)
+      throw new IllegalArgumentException("maxRoots: " + maxRoots);
+    this.maxRoots = maxRoots;
+    this.trees = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<RootKey, PartialTree> eldest) {
+        return size() > ProofVerifier.this.maxRoots;
+      }
+    };
+  }
+
+
+  /**
+   * Verifies the given proof.
+   *
+   * @return {@code true} iff the proof verifies
+   */
+  public boolean verify(Proof proof) {
+    lock.lock();
+    try {
+      RootKey key = new RootKey(proof);
+      PartialTree tree = trees.get(key);
+      if (tree != null)
+        return tree.add(proof);
+      // remember a new root only once a proof for it verifies,
+      // lest bogus proofs evict legitimate roots
+      tree = new PartialTree(key.algo, key.leafCount, key.root);
+      if (!tree.add(proof))
+        return false;
+      trees.put(key, tree);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /**
+   * Returns the maximum number of roots remembered.
+   */
+  public final int maxRoots() {
+    return maxRoots;
+  }
+
+
+  /**
+   * Returns the number of roots presently remembered.
+   */
+  public int roots() {
+    lock.lock();
+    try {
+      return trees.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /**
+   * Returns the total number of verified nodes remembered (across all roots).
+   */
+  public long verifiedNodes() {
+    lock.lock();
+    try {
+      long count = 0;
+      for (var tree : trees.values())
+        count += tree.knownNodes();
+      return count;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /**
+   * Returns the total number of hashes computed by the presently remembered roots.
+   */
+  public long hashCount() {
+    lock.lock();
+    try {
+      long count = 0;
+      for (var tree : trees.values())
+        count += tree.hashCount();
+      return count;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /**
+   * Forgets all verified nodes.
+   */
+  public void clear() {
+    lock.lock();
+    try {
+      trees.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+
+  private final static class RootKey {
+
+    private final String algo;
+    private final long leafCount;
+    private final byte[] root;
+    private final int hashCode;
+
+    RootKey(Proof proof) {
+      this.algo = Objects.requireNonNull(proof, "proof").getHashAlgo();
+      this.leafCount = proof.longLeafCount();
+      this.root = proof.link(proof.chainSize() - 1);
+      this.hashCode = Arrays.hashCode(root) ^ Long.hashCode(leafCount);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this)
+        return true;
+      if (!(o instanceof RootKey))
+        return false;
+      RootKey other = (RootKey) o;
+      return
+          leafCount == other.leafCount &&
+          Arrays.equals(root, other.root) &&
+          algo.equals(other.algo);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Objects;
+
+import io.crums.util.mrkl.index.AbstractNode;
+import io.crums.util.mrkl.index.TreeIndex;
+
+/**
+ * A tree over a prefix of a live {@linkplain Builder}'s levels. The full subtrees
+ * already hashed by the builder are shared (not copied); only the carries (at most
+ * one per level) are computed, on construction.
+ *
+ * @see Builder#snapshot()
+ */
+final class SnapshotTree extends Tree {
+
+  /** Immutable views of the builder's levels (sans carries). */
+  private final List<List<byte[]>> levels;
+  /** Indexed by level. Null, where the level has no carry. */
+  private final byte[][] carries;
+  private final int leafWidth;
+
+
+  /**
+   * @param count     the number of leaves (&ge; 2)
+   * @param levels    immutable views of the builder's levels, bottom-up; a missing (top) level
+   *                  is considered empty
+   * @param leafWidth the leaf width, if fixed; -1, otherwise
+   * @param digests   used to compute the carries
+   */
+  SnapshotTree(int count, String algo, List<List<byte[]>> levels, int leafWidth, DigestPool digests) {
+    super(count, algo);
+    this.levels = levels;
+    this.leafWidth = leafWidth;
+
+    TreeIndex<?> idx = idx();
+    this.carries = new byte[idx.height() + 1][];
+
+    MessageDigest digest = digests.borrow();
+    try {
+      // bottom-up, since a carry's right child may itself be a carry
+      for (int level = 1; level <= idx.height(); ++level) {
+        if (!idx.hasCarry(level))
+          continue;
+        int index = idx.maxIndex(level);
+        byte[] left = node(level - 1, index << 1);
+        AbstractNode rightChild = idx.getRightChild(level, index);
+        byte[] right = node(rightChild.level(), rightChild.index());
+        // Note, the left child of a carry is *never a leaf
+        carries[level] = rightChild.isLeaf() ?
+            hashUncommon(left, right, digest) :
+            hashInternals(left, right, digest);
+      }
+    } finally {
+      digests.release(digest);
+    }
+  }
+
+
+  private byte[] node(int level, int index) {
+    if (level < levels.size()) {
+      List<byte[]> stored = levels.get(level);
+      if (index < stored.size())
+        return stored.get(index);
+    }
+    return carries[level];
+  }
+
+
+  @Override
+  public byte[] data(int level, int index) {
+    Objects.checkIndex(index, idx().count(level));
+    return node(level, index).clone();
+  }
+
+
+  @Override
+  public int leafWidth() {
+    return leafWidth;
+  }
+
+}
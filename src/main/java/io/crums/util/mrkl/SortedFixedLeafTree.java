@@ -0,0 +1,170 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * A {@linkplain FixedLeafTree} whose leaves are in strictly ascending order (compared as
+ * unsigned bytes, lexicographically). The order is validated on construction. Lookups are
+ * by binary search over the {@linkplain #leavesBlock() leaves block}, so {@linkplain
+ * #indexOf(byte[])} takes O(log n) and requires no separate index. Since the leaves are
+ * sorted, the absence of an item can also be proven: see {@linkplain #absenceProof(byte[])}.
+ *
+ * @see #newInstance(ByteBuffer, int, String)
+ * @see #newInstance(FixedLeafTree)
+ */
+public class SortedFixedLeafTree extends FixedLeafTree {
+
+  private final ByteBuffer leaves;
+
+
+  private SortedFixedLeafTree(FixedLeafTree tree) {
+    super(tree);
+    this.leaves = leavesBlock();
+  }
+
+
+  /**
+   * Creates and returns a new instance from a contiguous block of sorted, fixed-width leaves.
+   *
+   * @param leaves    the leaves block, in strictly ascending order. Its position is not modified.
+   * @param leafWidth the number of bytes in a leaf node
+   * @param algo      hash algo used for the tree's internal nodes
+   *
+   * @throws IllegalArgumentException if the leaves are not in strictly ascending order, or
+   *         per {@linkplain FixedLeafTree#newInstance(ByteBuffer, int, String)}
+   */
+  public static SortedFixedLeafTree newInstance(ByteBuffer leaves, int leafWidth, String algo)
+      throws IllegalArgumentException {
+    Objects.requireNonNull(leaves, "leaves");
+    if (leafWidth >= MIN_LEAF_WIDTH)
+      checkAscending(leaves.slice(), leafWidth, leaves.remaining() / leafWidth);
+    return new SortedFixedLeafTree(FixedLeafTree.newInstance(leaves, leafWidth, algo));
+  }
+
+
+  /**
+   * Returns a sorted view of the given tree. The tree is not copied, unless it is
+   * {@linkplain MutableFixedLeafTree mutable}: in that case, a sorted view of an
+   * {@linkplain MutableFixedLeafTree#immutableCopy() immutable copy} of its present
+   * state is returned (since updates could break the order).
+   *
+   * @throws IllegalArgumentException if the tree's leaves are not in strictly ascending order
+   */
+  public static SortedFixedLeafTree newInstance(FixedLeafTree tree) throws IllegalArgumentException {
+    if (tree instanceof SortedFixedLeafTree)
+      return (SortedFixedLeafTree) tree;
+    if (tree instanceof MutableFixedLeafTree)
+      tree = ((MutableFixedLeafTree) tree).immutableCopy();
+    checkAscending(tree.leavesBlock(), tree.leafWidth(), tree.idx().count());
+    return new SortedFixedLeafTree(tree);
+  }
+
+
+  private static void checkAscending(ByteBuffer leaves, int leafWidth, int count) {
+    for (int index = 1; index < count; ++index) {
+      if (compare(leaves, (index - 1) * leafWidth, leaves, index * leafWidth, leafWidth) >= 0)
+        throw new IllegalArgumentException(
+            "leaves not in strictly ascending order at index " + index);
+    }
+  }
+
+
+  /**
+   * Compares the given regions of the given buffers as unsigned bytes. Positions are
+   * not modified.
+   */
+  private static int compare(ByteBuffer a, int aOff, ByteBuffer b, int bOff, int len) {
+    for (int i = 0; i < len; ++i) {
+      int diff = (a.get(aOff + i) & 0xff) - (b.get(bOff + i) & 0xff);
+      if (diff != 0)
+        return diff;
+    }
+    return 0;
+  }
+
+
+  /**
+   * Returns the index of the leaf with the given value, or -1 if not found.
+   *
+   * @param item {@linkplain #leafWidth()} bytes
+   */
+  public int indexOf(byte[] item) throws IllegalArgumentException {
+    int index = search(item);
+    return index < 0 ? -1 : index;
+  }
+
+
+  /**
+   * Determines whether a leaf has the given value.
+   *
+   * @param item {@linkplain #leafWidth()} bytes
+   */
+  public boolean contains(byte[] item) throws IllegalArgumentException {
+    return search(item) >= 0;
+  }
+
+
+  /**
+   * Returns the proof for the leaf with the given value, or {@code null} if not found.
+   *
+   * @param item {@linkplain #leafWidth()} bytes
+   */
+  public Proof proofOf(byte[] item) throws IllegalArgumentException {
+    int index = search(item);
+    return index < 0 ? null : proof(index);
+  }
+
+
+  /**
+   * Returns a proof that no leaf has the given value. The proof consists of the proofs of
+   * the adjacent leaves the item would fall between (just one, if it would fall before the
+   * first or after the last).
+   *
+   * @param item {@linkplain #leafWidth()} bytes
+   *
+   * @throws IllegalArgumentException if a leaf has the given value
+   */
+  public AbsenceProof absenceProof(byte[] item) throws IllegalArgumentException {
+    int index = search(item);
+    if (index >= 0)
+      throw new IllegalArgumentException("item is present at leaf index " + index);
+    int insertion = -index - 1;
+    Proof left = insertion == 0 ? null : proof(insertion - 1);
+    Proof right = insertion == idx().count() ? null : proof(insertion);
+    return new AbsenceProof(item, left, right);
+  }
+
+
+  /**
+   * Binary search.
+   *
+   * @return the item's index, if found; otherwise, <em>-(insertion point) - 1</em>
+   *         (per {@linkplain java.util.Arrays#binarySearch(int[], int)})
+   */
+  private int search(byte[] item) {
+    final int leafWidth = leafWidth();
+    if (item.length != leafWidth)
+      throw new IllegalArgumentException(
+          "item length " + item.length + "; expected " + leafWidth);
+    ByteBuffer key = ByteBuffer.wrap(item);
+    int low = 0;
+    int high = idx().count() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compare(leaves, mid * leafWidth, key, 0, leafWidth);
+      if (cmp < 0)
+        low = mid + 1;
+      else if (cmp > 0)
+        high = mid - 1;
+      else
+        return mid;
+    }
+    return -(low + 1);
+  }
+
+}
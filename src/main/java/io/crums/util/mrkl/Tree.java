@@ -4,10 +4,19 @@
 package io.crums.util.mrkl;
 
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.DigestException;
 import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import io.crums.util.mrkl.index.TreeIndex;
 
@@ -334,6 +343,147 @@ public abstract class Tree {
   }
   
   
+  /**
+   * Number of internal nodes verified per task in {@linkplain #verifyAll(ExecutorService)}.
+   */
+  private final static int VERIFY_CHUNK = 4096;
+
+
+  /**
+   * Verifies the integrity of every internal node in the tree: that each node's hash
+   * matches that of its children, as stored. Unlike {@linkplain Node#verify(MessageDigest)},
+   * no node objects are created and (for fixed-width trees) no data is copied: the hashes are
+   * computed directly over the tree's backing storage (whether on-heap, direct or
+   * memory-mapped). Since every node is checked against its own children, the nodes are
+   * verified in chunks independently, in parallel.
+   * <p>
+   * A corrupted leaf shows up as a mismatch at its parent; a corrupted internal node, as a
+   * mismatch at both the node and its parent.
+   * </p>
+   *
+   * @param executor the executor the verification tasks are submitted to
+   *
+   * @return the mismatching internal nodes, ordered by level, then index. Empty, if
+   *         the tree is intact.
+   */
+  public final List<Node> verifyAll(ExecutorService executor) throws InterruptedException {
+    Objects.requireNonNull(executor, "executor");
+    final DigestPool digests = DigestPool.of(algo);
+    var tasks = new ArrayList<Callable<List<Node>>>();
+    for (int level = 1; level <= idx.height(); ++level) {
+      final int lvl = level;
+      final int count = idx.count(level);
+      for (int start = 0; start < count; start += VERIFY_CHUNK) {
+        final int from = start;
+        final int to = Math.min(count, start + VERIFY_CHUNK);
+        tasks.add(() -> verifyRange(lvl, from, to, digests));
+      }
+    }
+
+    var mismatches = new ArrayList<Node>();
+    for (Future<List<Node>> result : executor.invokeAll(tasks)) {
+      try {
+        mismatches.addAll(result.get());
+      } catch (ExecutionException xx) {
+        Throwable cause = xx.getCause();
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException) cause;
+        if (cause instanceof Error)
+          throw (Error) cause;
+        throw new IllegalStateException("verification failed: " + cause, cause);
+      }
+    }
+    return mismatches;
+  }
+
+
+  private List<Node> verifyRange(int level, int from, int to, DigestPool digests) {
+    List<Node> mismatches = List.of();
+    MessageDigest digest = digests.borrow();
+    try {
+      byte[] scratch = new byte[digests.hashWidth()];
+      for (int index = from; index < to; ++index) {
+        if (!verifyInternal(level, index, digest, scratch)) {
+          if (mismatches.isEmpty())
+            mismatches = new ArrayList<>();
+          mismatches.add(idx.getNode(level, index));
+        }
+      }
+    } finally {
+      digests.release(digest);
+    }
+    return mismatches;
+  }
+
+
+  /**
+   * Determines whether the hash of the internal node at the given coordinates matches that
+   * of its children. Invoked concurrently by {@linkplain #verifyAll(ExecutorService)}. The
+   * base implementation reads the nodes thru {@linkplain #data(int, int)}; subclasses may
+   * override it to read their storage directly.
+   *
+   * @param digest  the digest to use (not shared)
+   * @param scratch a buffer of at least {@linkplain #hashAlgoWidth()} bytes (not shared)
+   */
+  boolean verifyInternal(int level, int index, MessageDigest digest, byte[] scratch) {
+    final int leftLevel = level - 1;
+    final int leftIndex = index << 1;
+    final int rightLevel = idx.rightChildLevel(level, index);
+    final int rightIndex = rightLevel == leftLevel ? leftIndex + 1 : idx.maxIndex(rightLevel);
+
+    digest.reset();
+    digest.update(leftLevel == 0 ? LEAF_PAD : BRANCH_PAD);
+    digest.update(data(leftLevel, leftIndex));
+    digest.update(rightLevel == 0 ? LEAF_PAD : BRANCH_PAD);
+    digest.update(data(rightLevel, rightIndex));
+    byte[] hash = data(level, index);
+    if (hash.length != digest.getDigestLength())
+      return false;
+    finishDigest(digest, scratch);
+    return Arrays.equals(scratch, 0, hash.length, hash, 0, hash.length);
+  }
+
+
+  /**
+   * Completes the digest into the start of the given buffer.
+   */
+  static void finishDigest(MessageDigest digest, byte[] scratch) {
+    try {
+      digest.digest(scratch, 0, digest.getDigestLength());
+    } catch (DigestException dx) {
+      throw new IllegalArgumentException("digest: " + dx.getMessage(), dx);
+    }
+  }
+
+
+  /**
+   * Writes this tree in the self-describing format documented in {@linkplain Trees},
+   * with a checksum.
+   * 
+   * @return the number of bytes written
+   * 
+   * @see #writeTo(WritableByteChannel, boolean)
+   * @see Trees#load(java.nio.file.Path)
+   */
+  public final long writeTo(WritableByteChannel out) throws IOException {
+    return writeTo(out, true);
+  }
+  
+  
+  /**
+   * Writes this tree in the self-describing format documented in {@linkplain Trees}.
+   * 
+   * @param out       the output channel
+   * @param checksum  if {@code true}, then a checksum of the body is computed and
+   *                  included in the header (requires an extra pass over the tree's data)
+   * 
+   * @return the number of bytes written
+   */
+  public final long writeTo(WritableByteChannel out, boolean checksum) throws IOException {
+    return Trees.write(this, out, checksum);
+  }
+  
+  
   /**
    * For debug use.
    */
@@ -0,0 +1,597 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32C;
+
+import io.crums.util.mrkl.index.BlockLayout;
+import io.crums.util.mrkl.index.TreeIndex;
+
+/**
+ * Utility methods for {@linkplain Tree}s. Chief among these is support for
+ * a self-describing binary file format for trees, and for {@linkplain #diff(Tree, Tree)
+ * diffing} trees.
+ * 
+ * <h2>File Format</h2>
+ * <p>
+ * All multi-byte values are big-endian. The file begins with a fixed size
+ * {@linkplain #HEADER_SIZE header}:
+ * </p>
+ * <pre>
+ *   offset  type    field
+ *   ------  ----    -----
+ *    0      int     magic ({@linkplain #MAGIC})
+ *    4      byte    version ({@linkplain #VERSION})
+ *    5      byte    layout (0: fixed-width leaves, 1: variable-width leaves)
+ *    6      byte    flags (bit 0 set: checksum present)
+ *    7      byte    block levels (fixed-width layout only; 0 or 1 denotes serial order)
+ *    8      long    leaf count
+ *   16      int     hash width (the algo's digest length)
+ *   20      int     leaf width (-1, if variable)
+ *   24      long    body length (the number of bytes following the header)
+ *   32      long    CRC-32C checksum of the body (zero, if absent)
+ *   40      byte    length of the hash algo's name (n)
+ *   41      n bytes hash algo name (US-ASCII), zero-padded to the end of the header
+ * </pre>
+ * <p>
+ * For fixed-width trees the body is the same as {@linkplain FixedLeafTree#dataBlock()}:
+ * the internal nodes in serial (breadth-first) order from the root down (or if the block
+ * levels field is greater than 1, in {@linkplain io.crums.util.mrkl.index.BlockLayout block layout}),
+ * followed by the leaves. For variable-width trees, the body is composed of 3 sections:
+ * </p>
+ * <ol>
+ * <li>The internal nodes in serial order (<em>count - 1</em> hashes).</li>
+ * <li>A leaf offset table (<em>count + 1</em> ints). The <em>i</em>th leaf begins at
+ * the <em>i</em>th offset and ends at the next. The offsets are relative to the start of
+ * the next section.</li>
+ * <li>The leaves, back to back.</li>
+ * </ol>
+ * 
+ * @see Tree#writeTo(WritableByteChannel)
+ * @see #load(Path)
+ */
+public final class Trees {
+
+  private Trees() {  }
+
+
+  /**
+   * File format magic number ("MRKL").
+   */
+  public final static int MAGIC = 0x4d524b4c;
+
+  /**
+   * File format version.
+   */
+  public final static byte VERSION = 1;
+
+  /**
+   * Size of the file header in bytes.
+   */
+  public final static int HEADER_SIZE = 64;
+
+
+  final static byte FIXED_LAYOUT = 0;
+  final static byte VAR_LAYOUT = 1;
+
+  private final static int CHECKSUM_FLAG = 1;
+
+  private final static int MAX_ALGO_NAME = HEADER_SIZE - 41;
+
+
+  /**
+   * Loads and returns the tree in the given file without verifying its checksum.
+   * The file is memory-mapped, not copied.
+   * 
+   * @param file  path to a file written in the format described above
+   * 
+   * @see #load(Path, boolean)
+   */
+  public static Tree load(Path file) throws IOException {
+    return load(file, false);
+  }
+
+
+  /**
+   * Loads and returns the tree in the given file. The file is memory-mapped, not copied.
+   * 
+   * @param file            path to a file written in the format described above
+   * @param verifyChecksum  if {@code true} and the file contains a checksum, then it is verified.
+   *                        (Note this touches every page in the file.)
+   * 
+   * @throws IllegalArgumentException if the file is malformed or its checksum does not match
+   */
+  public static Tree load(Path file, boolean verifyChecksum) throws IOException {
+    try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = ch.size();
+      if (size > Integer.MAX_VALUE)
+        throw new IllegalArgumentException(
+            "file too large to map: " + file + " (" + size + " bytes); " +
+            "see LongFixedLeafTree.load(Path)");
+      var block = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      return load(block, verifyChecksum);
+    }
+  }
+
+
+  /**
+   * Loads and returns the tree in the given block. The returned tree is backed by the
+   * block's contents (which should not be modified).
+   * 
+   * @param block           a block in the format described above. Read from its position;
+   *                        on return its position is advanced past the end of the tree.
+   * @param verifyChecksum  if {@code true} and the block contains a checksum, then it is verified
+   * 
+   * @throws IllegalArgumentException if the block is malformed or its checksum does not match
+   */
+  public static Tree load(ByteBuffer block, boolean verifyChecksum) throws IllegalArgumentException {
+
+    if (block.remaining() < HEADER_SIZE)
+      throw new IllegalArgumentException("block too short for header: " + block.remaining());
+
+    Header header = new Header(block.slice(block.position(), HEADER_SIZE));
+    final byte layout = header.layout;
+    final int blockLevels = header.blockLevels;
+    final int algoWidth = header.algoWidth;
+    final int leafWidth = header.leafWidth;
+    final long bodyLength = header.bodyLength;
+    final String algo = header.algo;
+
+    if (header.leafCount > Integer.MAX_VALUE)
+      throw new IllegalArgumentException(
+          "leaf count " + header.leafCount + " exceeds in-memory model capacity; " +
+          "see LongFixedLeafTree");
+
+    final int count = (int) header.leafCount;
+
+    if (bodyLength < 0 || bodyLength > block.remaining() - HEADER_SIZE)
+      throw new IllegalArgumentException(
+          "body length " + bodyLength + " > remaining bytes " + (block.remaining() - HEADER_SIZE));
+
+    ByteBuffer body = block.slice(block.position() + HEADER_SIZE, (int) bodyLength);
+
+    if (verifyChecksum && header.hasChecksum()) {
+      CRC32C crc = new CRC32C();
+      crc.update(body.duplicate());
+      if (crc.getValue() != header.checksum)
+        throw new IllegalArgumentException(
+            "checksum mismatch: expected " + Long.toHexString(header.checksum) +
+            "; actual " + Long.toHexString(crc.getValue()));
+    }
+
+    Tree tree;
+
+    switch (layout) {
+    case FIXED_LAYOUT:
+      if (bodyLength != FixedLeafTree.treeDataLength(count, algoWidth, leafWidth))
+        throw new IllegalArgumentException(
+            "body length " + bodyLength + " does not match tree [" + algo + ":" +
+            count + ":" + leafWidth + "]");
+      tree = new FixedLeafTree(count, algo, body, algoWidth, leafWidth, blockLevels);
+      break;
+
+    case VAR_LAYOUT:
+      tree = loadVariable(body, count, algo, algoWidth);
+      break;
+
+    default:
+      throw new IllegalArgumentException("unknown layout: " + layout);
+    }
+
+    block.position(block.position() + HEADER_SIZE + (int) bodyLength);
+    return tree;
+  }
+
+
+
+  /**
+   * A parsed file header.
+   */
+  final static class Header {
+
+    final byte layout;
+    final int flags;
+    final int blockLevels;
+    final long leafCount;
+    final int algoWidth;
+    final int leafWidth;
+    final long bodyLength;
+    final long checksum;
+    final String algo;
+
+    /**
+     * Parses the given header block (read from its position).
+     * 
+     * @throws IllegalArgumentException if the header is malformed
+     */
+    Header(ByteBuffer header) throws IllegalArgumentException {
+      int magic = header.getInt();
+      if (magic != MAGIC)
+        throw new IllegalArgumentException("bad magic: " + Integer.toHexString(magic));
+
+      byte version = header.get();
+      if (version < 1 || version > VERSION)
+        throw new IllegalArgumentException("unsupported version: " + version);
+
+      layout = header.get();
+      flags = header.get();
+      final byte levels = header.get();
+      if (levels < 0 || levels > BlockLayout.MAX_BLOCK_LEVELS ||
+          levels > 1 && layout != FIXED_LAYOUT)
+        throw new IllegalArgumentException(
+            "bad block levels " + levels + " for layout " + layout);
+      blockLevels = Math.max(1, levels);   // 0 and 1 both denote serial order
+      leafCount = header.getLong();
+      algoWidth = header.getInt();
+      leafWidth = header.getInt();
+      bodyLength = header.getLong();
+      checksum = header.getLong();
+
+      final int algoNameLength = header.get() & 0xff;
+      if (algoNameLength < 1 || algoNameLength > MAX_ALGO_NAME)
+        throw new IllegalArgumentException("bad algo name length: " + algoNameLength);
+      byte[] algoName = new byte[algoNameLength];
+      header.get(algoName);
+      algo = new String(algoName, StandardCharsets.US_ASCII);
+
+      if (leafCount < 2)
+        throw new IllegalArgumentException("leaf count: " + leafCount);
+    }
+
+    boolean hasChecksum() {
+      return (flags & CHECKSUM_FLAG) != 0;
+    }
+  }
+
+
+
+  private static Tree loadVariable(ByteBuffer body, int count, String algo, int algoWidth) {
+
+    final long internalsLength = (count - 1L) * algoWidth;
+    final long offsetsLength = (count + 1L) * 4;
+    if (internalsLength + offsetsLength > body.capacity())
+      throw new IllegalArgumentException("body too short: " + body.capacity());
+
+    ByteBuffer internals = body.slice(0, (int) internalsLength);
+    IntBuffer offsets = body.slice((int) internalsLength, (int) offsetsLength).asIntBuffer();
+    ByteBuffer leaves = body.slice(
+        (int) (internalsLength + offsetsLength),
+        body.capacity() - (int) (internalsLength + offsetsLength));
+
+    return new CompactFreeLeafTree(count, algo, internals, offsets, leaves);
+  }
+
+
+
+
+  /**
+   * Minimum number of leaves under a node for {@linkplain #parallelDiff(Tree, Tree)} to
+   * diff its children in parallel.
+   */
+  public final static int PARALLEL_DIFF_LEAVES = 1024;
+
+
+  /**
+   * Returns the ranges of leaves that differ between the given trees. The trees must have
+   * the same number of leaves and the same hash algo. Descending from the roots, only
+   * subtrees whose hashes differ are explored; so if <em>k</em> leaves differ, the cost is
+   * O(k log n) node comparisons (rather than the n leaf comparisons of a full scan).
+   *
+   * @return the differing leaf ranges, in ascending order, with adjacent ranges merged.
+   *         Empty, if the trees have the same root hash.
+   *
+   * @throws IllegalArgumentException if the trees' leaf counts or hash algos differ
+   *
+   * @see #parallelDiff(Tree, Tree)
+   */
+  public static List<LeafRange> diff(Tree a, Tree b) throws IllegalArgumentException {
+    checkDiffable(a, b);
+    var ranges = new ArrayList<LeafRange>();
+    diff(a, b, a.idx().height(), 0, ranges);
+    return ranges;
+  }
+
+
+  /**
+   * Parallel version of {@linkplain #diff(Tree, Tree)}, for when many leaves may differ. The
+   * subtrees of differing nodes above {@linkplain #PARALLEL_DIFF_LEAVES} leaves are diffed
+   * in parallel, using the common fork-join pool. The trees' {@linkplain Tree#data(int, int)
+   * data} methods must be safe under concurrent access (as they are for immutable trees).
+   *
+   * @return the same as {@linkplain #diff(Tree, Tree)}
+   */
+  public static List<LeafRange> parallelDiff(Tree a, Tree b) throws IllegalArgumentException {
+    checkDiffable(a, b);
+    return ForkJoinPool.commonPool().invoke(new DiffTask(a, b, a.idx().height(), 0));
+  }
+
+
+  private static void checkDiffable(Tree a, Tree b) {
+    if (!a.idx().equals(b.idx()))
+      throw new IllegalArgumentException(
+          "leaf count mismatch: " + a.idx().count() + "/" + b.idx().count());
+    if (!a.getHashAlgo().equals(b.getHashAlgo()))
+      throw new IllegalArgumentException(
+          "hash algo mismatch: " + a.getHashAlgo() + "/" + b.getHashAlgo());
+  }
+
+
+  /**
+   * Appends the differing leaf ranges under the given node to {@code ranges}, in order.
+   */
+  private static void diff(Tree a, Tree b, int level, int index, List<LeafRange> ranges) {
+    if (Arrays.equals(a.data(level, index), b.data(level, index)))
+      return;
+    if (level == 0) {
+      append(ranges, new LeafRange(index, index + 1));
+      return;
+    }
+    final int rightLevel = a.idx().rightChildLevel(level, index);
+    final int rightIndex = rightLevel == level - 1 ? 2 * index + 1 : a.idx().maxIndex(rightLevel);
+    diff(a, b, level - 1, 2 * index, ranges);
+    diff(a, b, rightLevel, rightIndex, ranges);
+  }
+
+
+  /**
+   * Appends the given range, merging it with the last, if adjacent.
+   */
+  private static void append(List<LeafRange> ranges, LeafRange range) {
+    final int last = ranges.size() - 1;
+    if (last >= 0 && ranges.get(last).end() == range.start())
+      ranges.set(last, new LeafRange(ranges.get(last).start(), range.end()));
+    else
+      ranges.add(range);
+  }
+
+
+  /**
+   * Returns the number of leaves under the given node.
+   */
+  private static int leavesUnder(TreeIndex<?> idx, int level, int index) {
+    long end = Math.min(idx.count(), ((long) index + 1) << level);
+    return (int) (end - (((long) index) << level));
+  }
+
+
+  @SuppressWarnings("serial")
+  private static class DiffTask extends RecursiveTask<List<LeafRange>> {
+
+    private final Tree a;
+    private final Tree b;
+    private final int level;
+    private final int index;
+
+    DiffTask(Tree a, Tree b, int level, int index) {
+      this.a = a;
+      this.b = b;
+      this.level = level;
+      this.index = index;
+    }
+
+    @Override
+    protected List<LeafRange> compute() {
+      var ranges = new ArrayList<LeafRange>();
+      if (level == 0 || leavesUnder(a.idx(), level, index) < PARALLEL_DIFF_LEAVES) {
+        diff(a, b, level, index, ranges);
+        return ranges;
+      }
+      if (Arrays.equals(a.data(level, index), b.data(level, index)))
+        return ranges;
+
+      final int rightLevel = a.idx().rightChildLevel(level, index);
+      final int rightIndex = rightLevel == level - 1 ? 2 * index + 1 : a.idx().maxIndex(rightLevel);
+      var right = new DiffTask(a, b, rightLevel, rightIndex);
+      right.fork();
+      ranges.addAll(new DiffTask(a, b, level - 1, 2 * index).compute());
+      for (LeafRange range : right.join())
+        append(ranges, range);
+      return ranges;
+    }
+  }
+
+
+
+
+  /**
+   * Writes the given tree. Invoked by {@linkplain Tree#writeTo(WritableByteChannel, boolean)}.
+   * A {@linkplain MutableFixedLeafTree} is first copied, since the body may be
+   * traversed twice (once for the checksum, once for output).
+   */
+  static long write(Tree tree, WritableByteChannel out, boolean checksum) throws IOException {
+
+    if (tree instanceof MutableFixedLeafTree)
+      tree = ((MutableFixedLeafTree) tree).immutableCopy();
+
+    final int count = tree.idx().count();
+    final int algoWidth = tree.hashAlgoWidth();
+    final int leafWidth = tree.leafWidth();
+    final boolean fixed = leafWidth > 0;
+
+    long crc = 0;
+    if (checksum) {
+      CRC32C crc32 = new CRC32C();
+      long len = writeBody(tree, crc32::update);
+      crc = crc32.getValue();
+      assert len == bodyLength(tree);
+    }
+
+    int blockLevels = tree instanceof FixedLeafTree ? ((FixedLeafTree) tree).blockLevels() : 1;
+
+    ByteBuffer header = header(
+        fixed ? FIXED_LAYOUT : VAR_LAYOUT, blockLevels,
+        count, algoWidth, leafWidth, bodyLength(tree),
+        tree.getHashAlgo(), checksum, crc);
+
+    writeFully(out, header);
+    long bodyLength = writeBody(tree, buffer -> writeFully(out, buffer));
+    return HEADER_SIZE + bodyLength;
+  }
+
+
+  private static long bodyLength(Tree tree) {
+    final int count = tree.idx().count();
+    final int algoWidth = tree.hashAlgoWidth();
+    final int leafWidth = tree.leafWidth();
+
+    long length = (count - 1L) * algoWidth;
+
+    if (leafWidth > 0)
+      return length + ((long) count) * leafWidth;
+
+    length += 4L * (count + 1);
+    for (int index = 0; index < count; ++index)
+      length += leafLength(tree, index);
+    return length;
+  }
+
+
+  private static int leafLength(Tree tree, int index) {
+    if (tree instanceof CompactFreeLeafTree)
+      return ((CompactFreeLeafTree) tree).leafLength(index);
+    return tree.data(0, index).length;
+  }
+
+
+  /**
+   * Returns the header for a tree with the given parameters.
+   */
+  static ByteBuffer header(
+      byte layout, int blockLevels, long leafCount, int algoWidth, int leafWidth,
+      long bodyLength, String algo, boolean hasChecksum, long checksum) {
+
+    byte[] algoName = Objects.requireNonNull(algo, "algo").getBytes(StandardCharsets.US_ASCII);
+    if (algoName.length > MAX_ALGO_NAME)
+      throw new IllegalArgumentException("algo name too long: " + algo);
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).put(VERSION).put(layout);
+    header.put((byte) (hasChecksum ? CHECKSUM_FLAG : 0)).put((byte) blockLevels);
+    header.putLong(leafCount).putInt(algoWidth).putInt(leafWidth);
+    header.putLong(bodyLength).putLong(hasChecksum ? checksum : 0);
+    header.put((byte) algoName.length).put(algoName);
+    return header.clear();
+  }
+
+
+
+  /**
+   * Body sink.
+   */
+  private interface BlockSink {
+    void accept(ByteBuffer block) throws IOException;
+  }
+
+
+  private final static int WRITE_BUFFER_SIZE = 64 * 1024;
+
+
+  private static long writeBody(Tree tree, BlockSink sink) throws IOException {
+
+    if (tree instanceof FixedLeafTree) {
+      FixedLeafTree fixed = (FixedLeafTree) tree;
+      int len = FixedLeafTree.treeDataLength(tree.idx().count(), fixed.hashWidth(), fixed.leafWidth());
+      sink.accept(fixed.dataBlock().limit(len));
+      return len;
+    }
+
+    if (tree instanceof CompactFreeLeafTree)
+      return writeCompactBody((CompactFreeLeafTree) tree, sink);
+
+    final TreeIndex<?> idx = tree.idx();
+    final int count = idx.count();
+
+    ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    long length = 0;
+
+    // internal nodes in serial order
+    for (int level = idx.height(); level > 0; --level)
+      for (int index = 0; index < idx.count(level); ++index)
+        length += put(tree.data(level, index), buffer, sink);
+
+    if (!tree.isLeafWidthFixed()) {
+      // offsets table
+      int offset = 0;
+      length += putInt(offset, buffer, sink);
+      for (int index = 0; index < count; ++index) {
+        offset += leafLength(tree, index);
+        length += putInt(offset, buffer, sink);
+      }
+    }
+
+    for (int index = 0; index < count; ++index)
+      length += put(tree.data(0, index), buffer, sink);
+
+    if (buffer.position() > 0)
+      sink.accept(buffer.flip());
+
+    return length;
+  }
+
+
+  private static long writeCompactBody(CompactFreeLeafTree tree, BlockSink sink) throws IOException {
+    ByteBuffer internals = tree.internalsBlock();
+    long length = internals.remaining();
+    sink.accept(internals);
+
+    IntBuffer offsets = tree.offsetsBlock();
+    final int base = offsets.get(0);
+    ByteBuffer buffer = ByteBuffer.allocate(Math.min(WRITE_BUFFER_SIZE, 4 * offsets.remaining()));
+    while (offsets.hasRemaining()) {
+      length += putInt(offsets.get() - base, buffer, sink);
+    }
+    sink.accept(buffer.flip());
+
+    ByteBuffer leaves = tree.leavesBlock();
+    length += leaves.remaining();
+    sink.accept(leaves);
+    return length;
+  }
+
+
+  private static int put(byte[] node, ByteBuffer buffer, BlockSink sink) throws IOException {
+    if (buffer.remaining() < node.length) {
+      sink.accept(buffer.flip());
+      buffer.clear();
+      if (buffer.remaining() < node.length) {
+        sink.accept(ByteBuffer.wrap(node));
+        return node.length;
+      }
+    }
+    buffer.put(node);
+    return node.length;
+  }
+
+
+  private static int putInt(int value, ByteBuffer buffer, BlockSink sink) throws IOException {
+    if (buffer.remaining() < 4) {
+      sink.accept(buffer.flip());
+      buffer.clear();
+    }
+    buffer.putInt(value);
+    return 4;
+  }
+
+
+  static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining())
+      out.write(buffer);
+  }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.index;
+
+
+import java.util.Objects;
+
+/**
+ * A cache-friendly storage order for the <em>internal</em> nodes of a Merkle tree.
+ * Instances map a node's {@code (level, index)} coordinates to a <em>slot</em>,
+ * an index into a contiguous array of the tree's internal nodes (in the range
+ * [0, {@linkplain TreeIndex#count() count} - 1)). Instances are immutable and
+ * safe under concurrent access.
+ * 
+ * <h2>Layout</h2>
+ * <p>
+ * The internal levels are partitioned into <em>bands</em> of {@linkplain #blockLevels()
+ * blockLevels} levels each, counting up from level 1. (The top band may have fewer levels.)
+ * Each band is partitioned into <em>blocks</em>, one for every node at the top level of
+ * the band: a block is that node's subtree truncated at the bottom of the band.
+ * Every block is stored contiguously (top level first, then breadth-first); the blocks
+ * of a band are stored left to right; the bands are stored top down (the band
+ * containing the root first).
+ * </p><p>
+ * Thus a walk from a leaf to the root touches about <em>height / blockLevels</em> blocks, instead
+ * of <em>height</em> regions of the array. With <em>blockLevels</em> set to 1, the layout is the
+ * same as the serial (breadth-first) order.
+ * </p><p>
+ * Carries (which may join nodes from non-adjacent levels) and the nodes joining them
+ * are always at the right edge of their levels; these are stored in the last block of their band.
+ * </p>
+ * 
+ * @see TreeIndex#serialIndex(int, int)
+ */
+public class BlockLayout {
+
+  /**
+   * Maximum number of levels in a block.
+   */
+  public final static int MAX_BLOCK_LEVELS = 16;
+
+
+  private final TreeIndex<?> idx;
+  private final int blockLevels;
+
+  // the following are indexed by level (index zero is unused)
+
+  /** Slot of the first node in the level's band. */
+  private final int[] bandStart;
+  /** (band top level) - level */
+  private final int[] shift;
+  /** Number of nodes in a full block of the level's band. */
+  private final int[] blockSize;
+  /** Number of nodes above the level in a full block. */
+  private final int[] inBlockOffset;
+  /** Index of the first node at the level that falls in the last block of its band. */
+  private final int[] lastBlockFirstIndex;
+  /** Slot of the above node. */
+  private final int[] lastBlockStart;
+
+
+  /**
+   * Creates a new instance.
+   * 
+   * @param idx         the tree's structure
+   * @param blockLevels the number of levels in a block (&ge; 1 and &le; {@linkplain #MAX_BLOCK_LEVELS})
+   */
+  public BlockLayout(TreeIndex<?> idx, int blockLevels) throws IllegalArgumentException {
+    this.idx = Objects.requireNonNull(idx, "idx");
+    this.blockLevels = blockLevels;
+    if (blockLevels < 1 || blockLevels > MAX_BLOCK_LEVELS)
+      throw new IllegalArgumentException("blockLevels: " + blockLevels);
+
+    final int height = idx.height();
+
+    bandStart = new int[height + 1];
+    shift = new int[height + 1];
+    blockSize = new int[height + 1];
+    inBlockOffset = new int[height + 1];
+    lastBlockFirstIndex = new int[height + 1];
+    lastBlockStart = new int[height + 1];
+
+    int slotsAbove = 0;
+
+    for (int top = height; top > 0; ) {
+
+      final int bottom = 1 + ((top - 1) / blockLevels) * blockLevels;
+      final int fullSize = (1 << (top - bottom + 1)) - 1;
+      final int lastBlock = idx.count(top) - 1;
+
+      int lastBlockOffset = slotsAbove + lastBlock * fullSize;
+
+      for (int level = top; level >= bottom; --level) {
+        bandStart[level] = slotsAbove;
+        shift[level] = top - level;
+        blockSize[level] = fullSize;
+        inBlockOffset[level] = (1 << (top - level)) - 1;
+        lastBlockFirstIndex[level] = lastBlock << (top - level);
+        lastBlockStart[level] = lastBlockOffset;
+        lastBlockOffset += idx.count(level) - lastBlockFirstIndex[level];
+      }
+
+      for (int level = top; level >= bottom; --level)
+        slotsAbove += idx.count(level);
+
+      top = bottom - 1;
+    }
+
+    assert slotsAbove == idx.count() - 1;
+  }
+
+
+  /**
+   * Returns the tree index this instance lays out.
+   */
+  public final TreeIndex<?> idx() {
+    return idx;
+  }
+
+
+  /**
+   * Returns the number of levels in a (full) block.
+   */
+  public final int blockLevels() {
+    return blockLevels;
+  }
+
+
+  /**
+   * Returns the slot of the internal node at the given coordinates.
+   * 
+   * @param level &ge; <b>1</b> and &le; {@code idx().height()}
+   * @param index &ge; 0 and &lt; {@code idx().count(level)}
+   * 
+   * @return &ge; 0 and &lt; {@code idx().count() - 1}
+   */
+  public final int slot(int level, int index) throws IndexOutOfBoundsException {
+    Objects.checkFromToIndex(1, level, idx.height());
+    Objects.checkIndex(index, idx.count(level));
+
+    if (index >= lastBlockFirstIndex[level])
+      return lastBlockStart[level] + index - lastBlockFirstIndex[level];
+
+    int block = index >> shift[level];
+    return
+        bandStart[level] + block * blockSize[level] +
+        inBlockOffset[level] + index - (block << shift[level]);
+  }
+
+
+  /** @return {@code "BlockLayout(" + idx().count() + ":" + blockLevels() + ")"} */
+  @Override
+  public String toString() {
+    return "BlockLayout(" + idx.count() + ":" + blockLevels + ")";
+  }
+
+}
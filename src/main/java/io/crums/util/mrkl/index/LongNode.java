@@ -0,0 +1,105 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.index;
+
+/**
+ * Breadth-first coordinates of a node in a Merkle tree with a 64-bit index.
+ * Instances are immutable.
+ *
+ * @see LongTreeIndex
+ */
+public final class LongNode {
+
+  private final int level;
+  private final long index;
+  private final boolean right;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param level &ge; 0 and &le; 64
+   * @param index &ge; 0
+   * @param right whether the node is the right child of its parent
+   */
+  public LongNode(int level, long index, boolean right) throws IndexOutOfBoundsException {
+    this.level = level;
+    this.index = index;
+    this.right = right;
+
+    if (level < 0 || level > 64)
+      throw new IndexOutOfBoundsException("level: " + level);
+    if (index < 0)
+      throw new IndexOutOfBoundsException("index: " + index);
+  }
+
+
+  /**
+   * Returns this node's level. Levels are counted from the bottom up: zero at the leaves,
+   * maximum at root.
+   */
+  public int level() {
+    return level;
+  }
+
+  /**
+   * Returns this node's index (at this level).
+   */
+  public long index() {
+    return index;
+  }
+
+  /**
+   * Determines whether this node is at level zero.
+   */
+  public boolean isLeaf() {
+    return level == 0;
+  }
+
+  /**
+   * Determines whether this node is the <em>right</em> child of its parent.
+   */
+  public boolean isRight() {
+    return right;
+  }
+
+  /**
+   * Determines whether this node is the <em>left</em> child of its parent.
+   * Note, for closure reasons the root node is defined to be left.
+   */
+  public boolean isLeft() {
+    return !right;
+  }
+
+
+  /**
+   * Equality semantics are governed by coordinates and handedness.
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true;
+    else if (o instanceof LongNode) {
+      LongNode other = (LongNode) o;
+      return index == other.index && level == other.level && right == other.right;
+    } else
+      return false;
+  }
+
+
+  /** <p>Consistent with {@linkplain #equals(Object)}.</p> {@inheritDoc} */
+  @Override
+  public int hashCode() {
+    int state = level * 814279 + Long.hashCode(index);
+    if (right)
+      state = -state;
+    return state;
+  }
+
+  /** @return {@code "(" + level() + ":" + index() + ")"} */
+  @Override
+  public String toString() {
+    return "(" + level + ":" + index + ")";
+  }
+
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.index;
+
+
+import java.util.Objects;
+
+/**
+ * A 64-bit version of {@linkplain TreeIndex}: a breadth-first view of the <em>structure</em> of
+ * a Merkle tree whose leaf count may exceed {@code Integer.MAX_VALUE}. The terminology and
+ * semantics are the same as those of {@code TreeIndex}; only the index type is wider.
+ * Instances are immutable and safe under concurrent access.
+ *
+ * @see TreeIndex
+ */
+public class LongTreeIndex {
+
+
+  private final long[] levelCounts;
+
+
+  /**
+   * Creates a new instance.
+   *
+   * @param count the number of items (leaf nodes) in the tree (&ge; 2)
+   */
+  public LongTreeIndex(long count) throws IllegalArgumentException {
+    this.levelCounts = computeLevelCounts(count);
+  }
+
+
+  /**
+   * Returns the number leaf nodes (data items) in the tree.
+   */
+  public final long count() {
+    return levelCounts[0];
+  }
+
+  /**
+   * Returns the total number of nodes in the tree.
+   *
+   * @return <code>2 * count() - 1</code>
+   */
+  public final long totalCount() {
+    return 2 * count() - 1;
+  }
+
+
+  /**
+   * Returns the height of the root of the tree relative to its base (the leaves).
+   */
+  public final int height() {
+    return levelCounts.length - 1;
+  }
+
+
+  /**
+   * Returns the number of nodes at the given {@code level}.
+   *
+   * @param level &ge; 0 and &le; {@code height()}
+   */
+  public final long count(int level) throws IndexOutOfBoundsException {
+    return levelCounts[level];
+  }
+
+
+  /**
+   * Returns the numbern of nodes at the given {@code level} excluding the
+   * carry (if it has one).
+   */
+  public final long countSansCarry(int level) {
+    return count() >> level;
+  }
+
+
+  /**
+   * Returns the maximum allowed index at the given {@code level}.
+   */
+  public final long maxIndex(int level) throws IndexOutOfBoundsException {
+    return levelCounts[level] - 1;
+  }
+
+
+  /**
+   * @see TreeIndex#maxIndexJoinsCarry(int)
+   */
+  public final boolean maxIndexJoinsCarry(int level) throws IndexOutOfBoundsException {
+    return (levelCounts[level] & 1) == 1;
+  }
+
+
+  /**
+   * @see TreeIndex#hasCarry(int)
+   */
+  public final boolean hasCarry(int level) throws IndexOutOfBoundsException {
+    return count(level) > countSansCarry(level);
+  }
+
+
+  /**
+   * @see TreeIndex#isCarry(int, int)
+   */
+  public final boolean isCarry(int level, long index) {
+    return index == count(level) - 1 && hasCarry(level);
+  }
+
+
+  /**
+   * Returns the serial index of the node at the given cooridinate. A node's serial index
+   * is the node's index in a breadth-first traversal of the tree, starting with the
+   * tree's root node indexed at zero.
+   *
+   * @see TreeIndex#serialIndex(int, int)
+   */
+  public final long serialIndex(int level, long index) throws IndexOutOfBoundsException {
+    Objects.checkIndex(index, count(level));
+    long zeroIndex = 0;
+    for (int h = height(); h > level; --h)
+      zeroIndex += count(h);
+    return zeroIndex + index;
+  }
+
+
+  /**
+   * Returns the node at the given coordinates.
+   */
+  public final LongNode getNode(int level, long index) throws IndexOutOfBoundsException {
+    return new LongNode(level, index, isRight(level, index));
+  }
+
+
+  /**
+   * Returns the <em>parent</em> of the node at the given coordinates.
+   *
+   * @param level &ge; 0 and <b>&lt;</b> {@code height()}
+   * @param index &ge; 0 and &lt; {@code count(level)}
+   */
+  public final LongNode getParent(int level, long index) throws IndexOutOfBoundsException {
+    LongNode sibling = getSibling(level, index);
+    if (sibling.isLeft()) {
+      level = sibling.level();
+      index = sibling.index();
+    }
+    ++level;
+    index >>= 1;
+    return new LongNode(level, index, isRight(level, index));
+  }
+
+
+  /**
+   * Returns the <em>left</em> child of the internal node at the given coordinates.
+   */
+  public final LongNode getLeftChild(int level, long index) throws IndexOutOfBoundsException {
+    Objects.checkFromToIndex(1, level, height());
+    return new LongNode(level - 1, index << 1, false);
+  }
+
+
+  /**
+   * Returns the <em>right</em> child of the internal node at the given coordinates.
+   */
+  public final LongNode getRightChild(int level, long index) throws IndexOutOfBoundsException {
+    Objects.checkFromToIndex(1, level, height());
+    return getSibling(level - 1, index << 1);
+  }
+
+
+  /**
+   * Returns the sibling of the node at the given coordinates.
+   *
+   * @param level  0 &le; <em>level</em> <b>&lt;</b> {@linkplain #height()}
+   * @param index  0 &le; <em>index</em> &lt; {@linkplain #count(int) count(level)}
+   *
+   * @see TreeIndex#getSibling(int, int)
+   */
+  public final LongNode getSibling(int level, long index) throws IndexOutOfBoundsException {
+    Objects.checkIndex(index, count(level));
+    Objects.checkIndex(level, height());
+
+    if ((index & 1) == 1)
+      return new LongNode(level, index - 1, false);
+
+    if (index < maxIndex(level))
+      return new LongNode(level, index + 1, true);
+
+    if (!hasCarry(level)) {
+      for (int subLevel = level; subLevel-- > 0; ) {
+        if (maxIndexJoinsCarry(subLevel))
+          return new LongNode(subLevel, maxIndex(subLevel), true);
+        else if (hasCarry(subLevel))
+          break;
+      }
+    }
+
+    while (!maxIndexJoinsCarry(++level));
+    return new LongNode(level, maxIndex(level), false);
+  }
+
+
+  /**
+   * Determines if the node at the given coordinates is the <em>right</em> child of its parent node.
+   * The root level is defined to be left.
+   *
+   * @see TreeIndex#isRight(int, int)
+   */
+  public final boolean isRight(int level, long index) throws IndexOutOfBoundsException {
+    Objects.checkIndex(index, count(level));
+    if ((index & 1) == 1)
+      return true;
+
+    if (index != maxIndex(level))
+      return false;
+
+    if (level == height())
+      return false;
+
+    int carries = 0;
+    for (int v = level; v >= 0; --v) {
+      if (maxIndexJoinsCarry(v))
+        ++carries;
+      if (hasCarry(v))
+        break;
+    }
+    switch (carries) {
+    case 1:   return true;
+    case 2:   return false;
+    default:
+      throw new AssertionError("(" + level + "," + index + "): " + carries);
+    }
+  }
+
+
+  /**
+   * Structural equality: instances are equal iff their counts are equal.
+   */
+  @Override
+  public final boolean equals(Object o) {
+    return o == this || o instanceof LongTreeIndex && ((LongTreeIndex) o).count() == count();
+  }
+
+
+  @Override
+  public final int hashCode() {
+    return Long.hashCode(count());
+  }
+
+
+  /** @return {@code "LongTreeIndex(" + count() + ")"} */
+  @Override
+  public String toString() {
+    return "LongTreeIndex(" + count() + ")";
+  }
+
+
+  /**
+   * Returns the height of the Merkle tree root node with <em>count</em>-many leaf elements.
+   *
+   * @param count &ge; 2
+   * @return <code>ceil(log2(<em>count</em>)</code>
+   */
+  public static int rootHeightForCount(long count) throws IllegalArgumentException {
+    if (count < 2)
+      throw new IllegalArgumentException("count (" + count + ") < 2");
+    return 64 - Long.numberOfLeadingZeros(count - 1);
+  }
+
+
+  private static long[] computeLevelCounts(long count) {
+    long[] levelCounts = new long[1 + rootHeightForCount(count)];
+    long divCount = count;
+    levelCounts[0] = divCount;
+    int carry = (int) (divCount & 1);
+    divCount >>= 1;
+    levelCounts[1] = divCount;
+    carry += (int) (divCount & 1);
+    for (int level = 2; level < levelCounts.length; ++level) {
+      divCount >>= 1;
+      if (carry == 2) {
+        divCount += 1;
+        carry = 0;
+      }
+      levelCounts[level] = divCount;
+      carry += (int) (divCount & 1);
+    }
+    return levelCounts;
+  }
+
+}
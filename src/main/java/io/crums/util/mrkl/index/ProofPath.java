@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.index;
+
+
+import java.util.Objects;
+
+/**
+ * Closed-form metadata about the path from a leaf to the root, computed from the
+ * tree's leaf count and the leaf's index alone. Unlike navigating a {@linkplain TreeIndex}
+ * (or {@linkplain LongTreeIndex}), these methods allocate nothing: each is a single
+ * O(log n) pass that tracks the level counts incrementally, just as the tree index computes
+ * them on construction.
+ *
+ * <h2>Hops</h2>
+ * <p>
+ * The path from a leaf to the root is a sequence of <em>hops</em>. At each hop, the path node is
+ * joined with its sibling to form its parent (the next path node). Hop zero joins the leaf
+ * itself. For each hop, the following are described:
+ * </p>
+ * <ul>
+ * <li><b>Handedness.</b> Whether the path node is the right child (so its sibling is on the
+ * left). See {@linkplain #rightMask(long, long)}.</li>
+ * <li><b>Hash type.</b> Whether the parent is formed by hashing 2 leaves, 2 internal nodes, or
+ * an internal node with a leaf on its right (the uncommon case). The last case occurs at most
+ * once per path (there is at most one "lonely" leaf in a tree). So hop zero is a leaves-hash,
+ * unless it is the {@linkplain #uncommonHop(long, long) uncommon hop}; every other hop is an
+ * internals-hash, unless it is the uncommon hop.</li>
+ * </ul>
+ */
+public final class ProofPath {
+
+  private ProofPath() {  }   // no one calls
+
+
+  private final static int HOPS = 0;
+  private final static int RIGHT_MASK = 1;
+  private final static int UNCOMMON_HOP = 2;
+
+
+  /**
+   * Returns the number of hops from the leaf at the given index to the root. This is the number
+   * of sibling hashes in its proof.
+   *
+   * @param count     the number of leaves in the tree (&ge; 2)
+   * @param leafIndex &ge; 0 and &lt; {@code count}
+   */
+  public static int hops(long count, long leafIndex) {
+    return (int) walk(count, leafIndex, HOPS);
+  }
+
+
+  /**
+   * Returns the handedness of the path nodes as a bitmask. Bit <em>h</em> is set iff, at hop
+   * <em>h</em>, the path node is the <em>right</em> child (and its sibling, the left).
+   *
+   * @param count     the number of leaves in the tree (&ge; 2)
+   * @param leafIndex &ge; 0 and &lt; {@code count}
+   */
+  public static long rightMask(long count, long leafIndex) {
+    return walk(count, leafIndex, RIGHT_MASK);
+  }
+
+
+  /**
+   * Returns the hop at which the parent is formed from an internal node on the left and a
+   * leaf on the right; -1, if there is none.
+   *
+   * @param count     the number of leaves in the tree (&ge; 2)
+   * @param leafIndex &ge; 0 and &lt; {@code count}
+   */
+  public static int uncommonHop(long count, long leafIndex) {
+    return (int) walk(count, leafIndex, UNCOMMON_HOP);
+  }
+
+
+
+  private static long walk(long count, long leafIndex, int what) {
+    if (count < 2)
+      throw new IllegalArgumentException("count (" + count + ") < 2");
+    Objects.checkIndex(leafIndex, count);
+
+    int hops = 0;
+    long rightMask = 0;
+    int uncommonHop = -1;
+
+    // the path node's coordinates; while waiting (for a sibling above to join),
+    // the path node remains at waitLevel
+    long index = leafIndex;
+    int waitLevel = -1;
+
+    // the lowest level whose last node dangles (awaits a sibling above); -1 if none
+    int danglingLevel = -1;
+
+    long levelCount = count;
+    for (int level = 0; levelCount != 1 || danglingLevel != -1; ++level) {
+
+      final boolean odd = (levelCount & 1) == 1;
+      final long maxIndex = levelCount - 1;
+
+      if (waitLevel != -1) {
+        // the path node dangles from below: it joins the last node at the next odd level
+        if (odd) {
+          rightMask |= 1L << hops;
+          if (waitLevel == 0)
+            uncommonHop = hops;
+          ++hops;
+          index = maxIndex >> 1;
+          waitLevel = -1;
+        }
+
+      } else if ((index & 1) == 1) {
+        // joins the node to its left
+        rightMask |= 1L << hops;
+        ++hops;
+        index >>= 1;
+
+      } else if (index != maxIndex) {
+        // joins the node to its right
+        ++hops;
+        index >>= 1;
+
+      } else if (danglingLevel != -1) {
+        // even and last: joins the dangling node below (on its right)
+        if (danglingLevel == 0)
+          uncommonHop = hops;
+        ++hops;
+        index >>= 1;
+
+      } else {
+        // even and last, with nothing dangling below: wait for a sibling above
+        waitLevel = level;
+      }
+
+      // compute the next level's count (mirrors TreeIndex's level count computation)
+      long nextCount = levelCount >> 1;
+      if (odd) {
+        if (danglingLevel == -1)
+          danglingLevel = level;
+        else {
+          // the 2 dangling nodes form a carry at the next level
+          ++nextCount;
+          danglingLevel = -1;
+        }
+      }
+      levelCount = nextCount;
+    }
+
+    switch (what) {
+    case HOPS:          return hops;
+    case RIGHT_MASK:    return rightMask;
+    case UNCOMMON_HOP:  return uncommonHop;
+    default:
+      throw new AssertionError(what);
+    }
+  }
+
+}
@@ -82,6 +82,19 @@ public class TreeIndex<N extends AbstractNode> {
   
   
   private final int[] levelCounts;
+  /**
+   * Serial index of the first node at each level.
+   */
+  private final int[] levelOffsets;
+  /**
+   * Indexed by level. The level of the sibling of the last node at each level, if
+   * that node's index is even (and not the root); -1, otherwise.
+   */
+  private final int[] edgeSiblingLevels;
+  /**
+   * Bit <em>level</em> is set iff the last node at that level is a right child.
+   */
+  private final int rightEdgeMask;
   private final NodeFactory<N> factory;
   
   
@@ -96,6 +109,27 @@ public class TreeIndex<N extends AbstractNode> {
    */
   public TreeIndex(int count, NodeFactory<N> factory) {
     this.levelCounts = computeLevelCounts(count);
+    this.levelOffsets = new int[levelCounts.length];
+    for (int level = height(), offset = 0; level >= 0; offset += levelCounts[level--])
+      levelOffsets[level] = offset;
+    this.edgeSiblingLevels = new int[levelCounts.length];
+    int rightEdges = 0;
+    for (int level = 0; level < levelCounts.length; ++level) {
+      int maxIndex = maxIndex(level);
+      if ((maxIndex & 1) == 1) {
+        rightEdges |= 1 << level;
+        edgeSiblingLevels[level] = -1;
+      } else if (level == height())
+        edgeSiblingLevels[level] = -1;
+      else {
+        int siblingLevel = scanEdgeSiblingLevel(level);
+        edgeSiblingLevels[level] = siblingLevel;
+        // if the sibling is above, then the edge node joins it from the right
+        if (siblingLevel > level)
+          rightEdges |= 1 << level;
+      }
+    }
+    this.rightEdgeMask = rightEdges;
     this.factory = Objects.requireNonNull(factory, "factory");
     factory.init(this);
   }
@@ -112,9 +146,11 @@ public class TreeIndex<N extends AbstractNode> {
    * Returns the total number of nodes in the tree.
    * 
    * @return <code>2 * count() - 1</code>
+   * @throws ArithmeticException if the total overflows an {@code int} (count &gt; 2<sup>30</sup>)
+   * @see LongTreeIndex
    */
-  public final int totalCount() {
-    return 2 * count() - 1;
+  public final int totalCount() throws ArithmeticException {
+    return Math.addExact(count(), count() - 1);
   }
   
   
@@ -155,10 +191,7 @@ public class TreeIndex<N extends AbstractNode> {
    */
   public final int serialIndex(int level, int index) throws IndexOutOfBoundsException {
     Objects.checkIndex(index, count(level));
-    int zeroIndex = 0;
-    for (int h = height(); h > level; --h)
-      zeroIndex += count(h);
-    return zeroIndex + index;
+    return levelOffsets[level] + index;
   }
   
   
@@ -405,15 +438,42 @@ public class TreeIndex<N extends AbstractNode> {
     if (index < maxIndex(level))
       return newNode(level, index + 1, true);
     
-    // index is even, and last
-    // we need to find out whether it joins with the (last) node at a level above
-    // or below it.
-    
+    // index is even, and last: it joins with the (last) node at a level
+    // above or below it (precomputed)
+    int siblingLevel = edgeSiblingLevels[level];
+    return newNode(siblingLevel, maxIndex(siblingLevel), siblingLevel < level);
+  }
+  
+  
+  /**
+   * Returns the level of the <em>right</em> child of the internal node at the given coordinates.
+   * Equivalent to {@code getRightChild(level, index).level()}, but without creating a node.
+   * The right child is at the level just below its parent, unless the parent is a carry
+   * whose children are at different levels.
+   * 
+   * @param level &ge; <b>1</b> and &le; {@code height()}
+   * @param index &ge; 0 and &lt; {@code count(level)}
+   */
+  public final int rightChildLevel(int level, int index) throws IndexOutOfBoundsException {
+    Objects.checkFromToIndex(1, level, height());
+    Objects.checkIndex(index, count(level));
+    int leftIndex = index << 1;
+    return leftIndex < maxIndex(level - 1) ? level - 1 : edgeSiblingLevels[level - 1];
+  }
+  
+  
+  /**
+   * Returns the level of the sibling of the last node at the given level, where that node's index
+   * is even. Invoked only on construction.
+   * 
+   * @param level &ge; 0 and &lt; {@code height()}
+   */
+  private int scanEdgeSiblingLevel(int level) {
     // search below (if it joins below, it joins from the left)
     if (!hasCarry(level)) {
       for (int subLevel = level; subLevel-- > 0; ) {
         if (maxIndexJoinsCarry(subLevel))
-          return newNode(subLevel, maxIndex(subLevel), true);
+          return subLevel;
         else if (hasCarry(subLevel))
           break;
       }
@@ -421,7 +481,7 @@ public class TreeIndex<N extends AbstractNode> {
     
     // search above (it must now join from the right)
     while (!maxIndexJoinsCarry(++level));
-    return newNode(level, maxIndex(level), false);
+    return level;
   }
   
   
@@ -447,38 +507,8 @@ public class TreeIndex<N extends AbstractNode> {
     if (index != maxIndex(level))
       return false;
     
-
-    // index is even, and last.
-    
-    // we punt on root (defined as left)
-    if (level == height()) {
-      assert index == 0;
-      return false;
-    }
-    
-    // Now, whether left or right depends on how many nodes join carries at the levels below
-    // i.e.
-    // "how many carries" = # of maxIndexJoinsCarries before hitting hasCarry()
-    // (cuz hasCarry(..) represents the collapse / resolution of lower level joined carries)
-    int carries = 0;
-    for (int v = level; v >= 0; --v) {
-      if (maxIndexJoinsCarry(v))
-        ++carries;
-      if (hasCarry(v))
-        break;
-    }
-    // every 2 dangling nodes (carries) join to form a parent..
-    // the node from the lower level is on the right; the node at the higher level, on the left
-    switch (carries) {
-    case 1:
-      // joins upper level node as right
-      return true;
-    case 2:
-      // joins lower level (promoted) node as left
-      return false;
-    default:
-      throw new AssertionError("(" + level + "," + index + "): " + carries);
-    }
+    // index is even, and last (precomputed; the root is defined as left)
+    return (rightEdgeMask & (1 << level)) != 0;
   }
   
   
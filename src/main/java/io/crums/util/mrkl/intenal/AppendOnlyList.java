@@ -0,0 +1,151 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.intenal;
+
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A list that only grows at the end. Elements are stored in fixed-size chunks, so existing
+ * elements never move (the list never copies its elements on growth). This allows
+ * {@linkplain #view() views} of the list's present elements to be read while the list
+ * continues to grow (or is {@linkplain #clear() cleared}).
+ * <p>
+ * Instances are not safe under concurrent access: additions and the creation of views must be
+ * externally synchronized. But once created (and safely published), a view may be read from any
+ * thread without synchronization, even as its list is being appended to.
+ * </p>
+ */
+public class AppendOnlyList<T> extends AbstractList<T> implements RandomAccess {
+
+  private final static int CHUNK_SHIFT = 8;
+  private final static int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private final static int CHUNK_MASK = CHUNK_SIZE - 1;
+  private final static int MIN_CHUNKS = 4;
+
+  private Object[][] chunks;
+  private int size;
+
+
+  /**
+   * Creates an empty instance.
+   */
+  public AppendOnlyList() {
+    chunks = new Object[MIN_CHUNKS][];
+  }
+
+
+  /**
+   * Creates an empty instance with the given initial capacity allocated up front.
+   *
+   * @param capacity &ge; 0
+   */
+  public AppendOnlyList(int capacity) {
+    if (capacity < 0)
+      throw new IllegalArgumentException("capacity: " + capacity);
+    int c = (int) ((capacity + (long) CHUNK_MASK) >>> CHUNK_SHIFT);
+    chunks = new Object[Math.max(MIN_CHUNKS, c)][];
+    for (int index = 0; index < c; ++index)
+      chunks[index] = new Object[CHUNK_SIZE];
+  }
+
+
+  /**
+   * Appends the given element.
+   *
+   * @return {@code true}
+   */
+  @Override
+  public boolean add(T e) {
+    final int c = size >>> CHUNK_SHIFT;
+    if (c == chunks.length)
+      chunks = Arrays.copyOf(chunks, c * 2);
+    if (chunks[c] == null)
+      chunks[c] = new Object[CHUNK_SIZE];
+    chunks[c][size & CHUNK_MASK] = e;
+    ++size;
+    ++modCount;
+    return true;
+  }
+
+
+  @Override
+  public T get(int index) {
+    return get(chunks, Objects.checkIndex(index, size));
+  }
+
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+
+  /**
+   * Removes all elements. Previously created {@linkplain #view() views} are not affected.
+   */
+  @Override
+  public void clear() {
+    chunks = new Object[MIN_CHUNKS][];
+    size = 0;
+    ++modCount;
+  }
+
+
+  /**
+   * Removes all elements, but retains the allocated capacity. Unlike {@linkplain #clear()},
+   * previously created views are <em>invalidated</em>: their elements are overwritten by
+   * subsequent additions.
+   */
+  public void recycle() {
+    // release the references (but not the chunks)
+    for (int c = 0, remaining = size; remaining > 0; ++c, remaining -= CHUNK_SIZE)
+      Arrays.fill(chunks[c], 0, Math.min(remaining, CHUNK_SIZE), null);
+    size = 0;
+    ++modCount;
+  }
+
+
+  /**
+   * Returns an immutable view of the list's present elements. The view is not affected
+   * by subsequent additions to (or clearing of) this list.
+   */
+  public List<T> view() {
+    return new View<>(chunks, size);
+  }
+
+
+  @SuppressWarnings("unchecked")
+  private static <T> T get(Object[][] chunks, int index) {
+    return (T) chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+  }
+
+
+
+  private final static class View<T> extends AbstractList<T> implements RandomAccess {
+
+    private final Object[][] chunks;
+    private final int size;
+
+    View(Object[][] chunks, int size) {
+      this.chunks = chunks;
+      this.size = size;
+    }
+
+    @Override
+    public T get(int index) {
+      return AppendOnlyList.get(chunks, Objects.checkIndex(index, size));
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.intenal;
+
+
+import java.util.Objects;
+
+/**
+ * A minimal open-addressing hash map from primitive {@code long} keys to non-null values.
+ * No per-entry objects are created (keys are not boxed). Removal is not supported.
+ * Not safe under concurrent access.
+ */
+public class LongObjectMap<V> {
+
+  private final static int MIN_CAPACITY = 16;
+
+  private long[] keys;
+  private Object[] values;
+  private int size;
+  private int threshold;
+
+
+  /**
+   * Creates an empty instance.
+   */
+  public LongObjectMap() {
+    this(MIN_CAPACITY);
+  }
+
+
+  /**
+   * Creates an empty instance sized for the expected number of entries.
+   */
+  public LongObjectMap(int expectedSize) {
+    if (expectedSize < 0)
+      throw new IllegalArgumentException("expectedSize: " + expectedSize);
+    int capacity = MIN_CAPACITY;
+    while (capacity * 2 / 3 < expectedSize)
+      capacity <<= 1;
+    allocate(capacity);
+  }
+
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new Object[capacity];
+    threshold = capacity * 2 / 3;
+  }
+
+
+  /**
+   * Returns the number of entries.
+   */
+  public int size() {
+    return size;
+  }
+
+
+  /**
+   * Returns the value mapped to the given key, or {@code null} if none.
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    final int mask = keys.length - 1;
+    for (int slot = slot(key, mask); values[slot] != null; slot = (slot + 1) & mask) {
+      if (keys[slot] == key)
+        return (V) values[slot];
+    }
+    return null;
+  }
+
+
+  /**
+   * Determines whether the given key is mapped.
+   */
+  public boolean containsKey(long key) {
+    return get(key) != null;
+  }
+
+
+  /**
+   * Maps the given key to the given value.
+   *
+   * @param value non-null
+   *
+   * @return the previous value, or {@code null} if none
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    Objects.requireNonNull(value, "value");
+    final int mask = keys.length - 1;
+    int slot = slot(key, mask);
+    for (; values[slot] != null; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        V old = (V) values[slot];
+        values[slot] = value;
+        return old;
+      }
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    if (++size > threshold)
+      rehash();
+    return null;
+  }
+
+
+  /**
+   * Removes all entries.
+   */
+  public void clear() {
+    allocate(MIN_CAPACITY);
+    size = 0;
+  }
+
+
+  private void rehash() {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    allocate(keys.length * 2);
+    final int mask = keys.length - 1;
+    for (int index = 0; index < oldKeys.length; ++index) {
+      if (oldValues[index] == null)
+        continue;
+      int slot = slot(oldKeys[index], mask);
+      while (values[slot] != null)
+        slot = (slot + 1) & mask;
+      keys[slot] = oldKeys[index];
+      values[slot] = oldValues[index];
+    }
+  }
+
+
+  private static int slot(long key, int mask) {
+    long h = key * 0x9e3779b97f4a7c15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.intenal;
+
+
+import java.util.Objects;
+
+/**
+ * An immutable, sparse array of fixed capacity, implemented as a 32-way trie. A modified
+ * version is produced by <em>path copying</em>: the new version shares every trie node not
+ * on the path to a modified slot with the version it was derived from. So a version costs
+ * memory on the order of the number of slots modified (times the trie's depth, which is at
+ * most 7), and the versions it was derived from are unaffected.
+ * <p>
+ * Lookups take at most depth-many steps. Instances are safe under concurrent access.
+ * </p>
+ *
+ * @see #edit()
+ */
+public final class PersistentSparseArray<V> {
+
+  private final static int BITS = 5;
+  private final static int WIDTH = 1 << BITS;
+  private final static int MASK = WIDTH - 1;
+  /** A trie node's last slot records its owning editor (if any). */
+  private final static int OWNER = WIDTH;
+
+
+  private final int capacity;
+  private final int shift;
+  private final Object[] root;
+  private final int size;
+
+
+  /**
+   * Creates an empty instance.
+   *
+   * @param capacity the maximum number of slots (&ge; 1)
+   */
+  public PersistentSparseArray(int capacity) {
+    if (capacity < 1)
+      throw new IllegalArgumentException("capacity: " + capacity);
+    this.capacity = capacity;
+    int bits = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+    this.shift = Math.max(0, (bits - 1) / BITS * BITS);
+    this.root = null;
+    this.size = 0;
+  }
+
+
+  private PersistentSparseArray(PersistentSparseArray<V> source, Object[] root, int size) {
+    this.capacity = source.capacity;
+    this.shift = source.shift;
+    this.root = root;
+    this.size = size;
+  }
+
+
+  /**
+   * Returns the capacity (the number of slots).
+   */
+  public int capacity() {
+    return capacity;
+  }
+
+
+  /**
+   * Returns the number of slots set.
+   */
+  public int size() {
+    return size;
+  }
+
+
+  /**
+   * Returns the value at the given slot, or {@code null} if unset.
+   */
+  public V get(int index) throws IndexOutOfBoundsException {
+    return get(root, index);
+  }
+
+
+  @SuppressWarnings("unchecked")
+  private V get(Object[] root, int index) {
+    Objects.checkIndex(index, capacity);
+    Object[] node = root;
+    for (int s = shift; node != null; s -= BITS) {
+      Object child = node[(index >>> s) & MASK];
+      if (s == 0)
+        return (V) child;
+      node = (Object[]) child;
+    }
+    return null;
+  }
+
+
+  /**
+   * Returns a new version with the given slot set.
+   *
+   * @param value non-null
+   */
+  public PersistentSparseArray<V> with(int index, V value) throws IndexOutOfBoundsException {
+    return edit().set(index, value).done();
+  }
+
+
+  /**
+   * Returns an editor for deriving a new version from this one. Trie nodes are copied at
+   * most once per editor, so setting many slots thru an editor is cheaper than chaining
+   * {@linkplain #with(int, Object)}.
+   */
+  public Editor edit() {
+    return new Editor();
+  }
+
+
+
+  /**
+   * Derives a new version from the instance that created it. Not safe under concurrent
+   * access.
+   */
+  public final class Editor {
+
+    private Object[] root = PersistentSparseArray.this.root;
+    private int size = PersistentSparseArray.this.size;
+    /** Identifies the trie nodes this editor has copied (and may modify). Null, when done. */
+    private Object token = new Object();
+
+    private Editor() {  }
+
+
+    /**
+     * Returns the value at the given slot (as edited so far), or {@code null} if unset.
+     */
+    public V get(int index) throws IndexOutOfBoundsException {
+      return PersistentSparseArray.this.get(root, index);
+    }
+
+
+    /**
+     * Sets the given slot.
+     *
+     * @param value non-null
+     *
+     * @return this editor
+     */
+    public Editor set(int index, V value) throws IndexOutOfBoundsException {
+      Objects.checkIndex(index, capacity);
+      Objects.requireNonNull(value, "value");
+      if (token == null)
+        throw new IllegalStateException("editor is done");
+      root = set(root, shift, index, value);
+      return this;
+    }
+
+
+    private Object[] set(Object[] node, int s, int index, V value) {
+      node = own(node);
+      final int slot = (index >>> s) & MASK;
+      if (s == 0) {
+        if (node[slot] == null)
+          ++size;
+        node[slot] = value;
+      } else
+        node[slot] = set((Object[]) node[slot], s - BITS, index, value);
+      return node;
+    }
+
+
+    private Object[] own(Object[] node) {
+      if (node == null) {
+        node = new Object[WIDTH + 1];
+        node[OWNER] = token;
+      } else if (node[OWNER] != token) {
+        node = node.clone();
+        node[OWNER] = token;
+      }
+      return node;
+    }
+
+
+    /**
+     * Returns the new version. The editor may not be used thereafter.
+     */
+    public PersistentSparseArray<V> done() {
+      if (token == null)
+        throw new IllegalStateException("editor is done");
+      token = null;
+      return new PersistentSparseArray<>(PersistentSparseArray.this, root, size);
+    }
+  }
+
+}
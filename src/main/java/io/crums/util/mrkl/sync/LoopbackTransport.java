@@ -0,0 +1,66 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.sync;
+
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * An in-memory transport that hands requests directly to a local responder. The messages
+ * are copied, as they would be over a wire. Useful for testing, and for measuring the
+ * number of round trips and bytes a sync would cost over a real link.
+ */
+public class LoopbackTransport implements Transport {
+
+  private final SyncResponder responder;
+
+  private int exchanges;
+  private long bytesSent;
+  private long bytesReceived;
+
+
+  /**
+   * @param responder the responder requests are delivered to
+   */
+  public LoopbackTransport(SyncResponder responder) {
+    this.responder = Objects.requireNonNull(responder, "responder");
+  }
+
+
+  @Override
+  public synchronized ByteBuffer exchange(ByteBuffer request) {
+    ++exchanges;
+    bytesSent += request.remaining();
+    ByteBuffer copy = ByteBuffer.allocate(request.remaining()).put(request).flip();
+    ByteBuffer response = responder.respond(copy);
+    bytesReceived += response.remaining();
+    return ByteBuffer.allocate(response.remaining()).put(response).flip();
+  }
+
+
+  /**
+   * Returns the number of round trips so far.
+   */
+  public synchronized int exchanges() {
+    return exchanges;
+  }
+
+
+  /**
+   * Returns the number of request bytes sent so far.
+   */
+  public synchronized long bytesSent() {
+    return bytesSent;
+  }
+
+
+  /**
+   * Returns the number of response bytes received so far.
+   */
+  public synchronized long bytesReceived() {
+    return bytesReceived;
+  }
+
+}
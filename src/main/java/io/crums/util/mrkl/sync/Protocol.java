@@ -0,0 +1,157 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.sync;
+
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message encoding. All multi-byte values are big-endian.
+ * <pre>
+ *   INFO request:   byte type
+ *   INFO response:  int leaf count, byte algo name length (n), n bytes algo name (US-ASCII),
+ *                   int root hash length (h), h bytes root hash
+ *   NODES request:  byte type, int node count (c), c &times; (byte level, int index)
+ *   NODES response: c &times; (int data length (d), d bytes node data), in request order
+ * </pre>
+ */
+final class Protocol {
+
+  private Protocol() {  }
+
+
+  final static byte INFO = 1;
+  final static byte NODES = 2;
+
+
+  /**
+   * A parsed INFO response.
+   */
+  final static class Info {
+    final int count;
+    final String algo;
+    final byte[] root;
+
+    Info(int count, String algo, byte[] root) {
+      this.count = count;
+      this.algo = algo;
+      this.root = root;
+    }
+  }
+
+
+  static ByteBuffer infoRequest() {
+    return ByteBuffer.allocate(1).put(INFO).flip();
+  }
+
+
+  static ByteBuffer infoResponse(Info info) {
+    byte[] algo = info.algo.getBytes(StandardCharsets.US_ASCII);
+    ByteBuffer response = ByteBuffer.allocate(4 + 1 + algo.length + 4 + info.root.length);
+    response.putInt(info.count).put((byte) algo.length).put(algo);
+    response.putInt(info.root.length).put(info.root);
+    return response.flip();
+  }
+
+
+  static Info readInfo(ByteBuffer response) throws IllegalArgumentException {
+    try {
+      int count = response.getInt();
+      byte[] algo = new byte[response.get() & 0xff];
+      response.get(algo);
+      byte[] root = readData(response);
+      return new Info(count, new String(algo, StandardCharsets.US_ASCII), root);
+    } catch (BufferUnderflowException bux) {
+      throw new IllegalArgumentException("truncated INFO response", bux);
+    }
+  }
+
+
+  /**
+   * @param nodes node coordinates, each {@linkplain #coordinates(int, int) packed}
+   */
+  static ByteBuffer nodesRequest(long[] nodes, int count) {
+    ByteBuffer request = ByteBuffer.allocate(1 + 4 + 5 * count);
+    request.put(NODES).putInt(count);
+    for (int n = 0; n < count; ++n)
+      request.put((byte) level(nodes[n])).putInt(index(nodes[n]));
+    return request.flip();
+  }
+
+
+  /**
+   * Reads the node coordinates in a NODES request (positioned after its type).
+   */
+  static long[] readNodesRequest(ByteBuffer request) throws IllegalArgumentException {
+    try {
+      int count = request.getInt();
+      if (count < 0 || count > request.remaining() / 5)
+        throw new IllegalArgumentException("bad node count: " + count);
+      long[] nodes = new long[count];
+      for (int n = 0; n < count; ++n)
+        nodes[n] = coordinates(request.get(), request.getInt());
+      return nodes;
+    } catch (BufferUnderflowException bux) {
+      throw new IllegalArgumentException("truncated NODES request", bux);
+    }
+  }
+
+
+  static ByteBuffer nodesResponse(List<byte[]> data) {
+    int size = 0;
+    for (byte[] node : data)
+      size += 4 + node.length;
+    ByteBuffer response = ByteBuffer.allocate(size);
+    for (byte[] node : data)
+      response.putInt(node.length).put(node);
+    return response.flip();
+  }
+
+
+  static List<byte[]> readNodesResponse(ByteBuffer response, int count)
+      throws IllegalArgumentException {
+    var data = new ArrayList<byte[]>(count);
+    try {
+      for (int n = 0; n < count; ++n)
+        data.add(readData(response));
+    } catch (BufferUnderflowException bux) {
+      throw new IllegalArgumentException(
+          "truncated NODES response: " + data.size() + " of " + count + " nodes", bux);
+    }
+    return data;
+  }
+
+
+  private static byte[] readData(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining())
+      throw new IllegalArgumentException("bad data length: " + length);
+    byte[] data = new byte[length];
+    buffer.get(data);
+    return data;
+  }
+
+
+  /**
+   * Packs the given node coordinates into a {@code long}.
+   */
+  static long coordinates(int level, int index) {
+    return ((long) level << 32) | (index & 0xffffffffL);
+  }
+
+
+  static int level(long coordinates) {
+    return (int) (coordinates >>> 32);
+  }
+
+
+  static int index(long coordinates) {
+    return (int) coordinates;
+  }
+
+}
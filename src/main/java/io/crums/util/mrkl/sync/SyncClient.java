@@ -0,0 +1,177 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.sync;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import io.crums.util.mrkl.Tree;
+import io.crums.util.mrkl.index.TreeIndex;
+
+/**
+ * The requesting side of the sync protocol: finds (and fetches) the leaves of a remote
+ * tree that differ from a local tree of the same size. Like {@linkplain
+ * io.crums.util.mrkl.Trees#diff(Tree, Tree) Trees.diff}, it descends from the roots,
+ * exploring only subtrees whose hashes differ; but since each step down costs a round trip,
+ * the nodes requested are batched. Each round trip requests, for every differing node on the
+ * frontier, all its descendants {@linkplain #levelsPerRound()} levels down (or its leaves,
+ * if nearer). So a sync costs 1 + &lceil;height / levelsPerRound&rceil; round trips at most
+ * (the first fetches the remote root), at the price of requesting up to
+ * 2<sup>levelsPerRound</sup> nodes per differing frontier node.
+ * <p>
+ * Instances are not safe under concurrent access.
+ * </p>
+ *
+ * @see SyncResponder
+ */
+public class SyncClient {
+
+  /**
+   * Default number of levels descended per round trip.
+   */
+  public final static int DEFAULT_LEVELS_PER_ROUND = 4;
+
+  /**
+   * Maximum number of levels descended per round trip.
+   */
+  public final static int MAX_LEVELS_PER_ROUND = 16;
+
+
+  private final Tree local;
+  private final Transport transport;
+  private final int levelsPerRound;
+
+
+  /**
+   * Creates an instance that descends {@linkplain #DEFAULT_LEVELS_PER_ROUND} levels per
+   * round trip.
+   *
+   * @param local     the local tree
+   * @param transport the transport to the remote {@linkplain SyncResponder}
+   */
+  public SyncClient(Tree local, Transport transport) {
+    this(local, transport, DEFAULT_LEVELS_PER_ROUND);
+  }
+
+
+  /**
+   * @param local           the local tree
+   * @param transport       the transport to the remote {@linkplain SyncResponder}
+   * @param levelsPerRound  the number of levels descended per round trip, 1 thru
+   *                        {@linkplain #MAX_LEVELS_PER_ROUND}. Higher values trade
+   *                        bandwidth for fewer round trips.
+   */
+  public SyncClient(Tree local, Transport transport, int levelsPerRound) {
+    this.local = Objects.requireNonNull(local, "local");
+    this.transport = Objects.requireNonNull(transport, "transport");
+    this.levelsPerRound = levelsPerRound;
+    if (levelsPerRound < 1 || levelsPerRound > MAX_LEVELS_PER_ROUND)
+      throw new IllegalArgumentException("levelsPerRound: " + levelsPerRound);
+  }
+
+
+  /**
+   * Returns the local tree.
+   */
+  public Tree local() {
+    return local;
+  }
+
+
+  /**
+   * Returns the number of levels descended per round trip.
+   */
+  public int levelsPerRound() {
+    return levelsPerRound;
+  }
+
+
+  /**
+   * Finds and fetches the remote leaves that differ from the local tree's.
+   *
+   * @throws IllegalArgumentException if the remote tree's leaf count or hash algo differ
+   *         from the local tree's, or if a response is malformed
+   */
+  public SyncResult sync() throws IOException, IllegalArgumentException {
+    Protocol.Info info = Protocol.readInfo(transport.exchange(Protocol.infoRequest()));
+    int roundTrips = 1;
+    final TreeIndex<?> idx = local.idx();
+    if (info.count != idx.count())
+      throw new IllegalArgumentException(
+          "leaf count mismatch: local " + idx.count() + "; remote " + info.count);
+    if (!info.algo.equals(local.getHashAlgo()))
+      throw new IllegalArgumentException(
+          "hash algo mismatch: local " + local.getHashAlgo() + "; remote " + info.algo);
+
+    var leaves = new TreeMap<Integer, byte[]>();
+    long nodesReceived = 1;
+
+    var frontier = new Coordinates();
+    if (!Arrays.equals(info.root, local.hash()))
+      frontier.add(Protocol.coordinates(idx.height(), 0));
+
+    while (frontier.size > 0) {
+      var batch = new Coordinates();
+      for (int f = 0; f < frontier.size; ++f)
+        expand(frontier.nodes[f], levelsPerRound, batch);
+
+      List<byte[]> remote = Protocol.readNodesResponse(
+          transport.exchange(Protocol.nodesRequest(batch.nodes, batch.size)), batch.size);
+      ++roundTrips;
+      nodesReceived += batch.size;
+
+      frontier = new Coordinates();
+      for (int n = 0; n < batch.size; ++n) {
+        int level = Protocol.level(batch.nodes[n]);
+        int index = Protocol.index(batch.nodes[n]);
+        if (Arrays.equals(remote.get(n), local.data(level, index)))
+          continue;
+        if (level == 0)
+          leaves.put(index, remote.get(n));
+        else
+          frontier.add(batch.nodes[n]);
+      }
+    }
+    return new SyncResult(leaves, roundTrips, nodesReceived);
+  }
+
+
+  /**
+   * Appends the descendants of the given node {@code depth} levels down (or its leaves,
+   * if nearer) to the batch, in leaf order.
+   */
+  private void expand(long node, int depth, Coordinates batch) {
+    final int level = Protocol.level(node);
+    if (depth == 0 || level == 0) {
+      batch.add(node);
+      return;
+    }
+    final int index = Protocol.index(node);
+    final int rightLevel = local.idx().rightChildLevel(level, index);
+    final int rightIndex =
+        rightLevel == level - 1 ? 2 * index + 1 : local.idx().maxIndex(rightLevel);
+    expand(Protocol.coordinates(level - 1, 2 * index), depth - 1, batch);
+    expand(Protocol.coordinates(rightLevel, rightIndex), depth - 1, batch);
+  }
+
+
+  /**
+   * A growable list of {@linkplain Protocol#coordinates(int, int) packed} node coordinates.
+   */
+  private static class Coordinates {
+    long[] nodes = new long[16];
+    int size;
+
+    void add(long node) {
+      if (size == nodes.length)
+        nodes = Arrays.copyOf(nodes, size * 2);
+      nodes[size++] = node;
+    }
+  }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.sync;
+
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Objects;
+
+import io.crums.util.mrkl.Tree;
+
+/**
+ * The serving side of the sync protocol: answers a {@linkplain SyncClient}'s requests
+ * for the nodes of a tree. Stateless, and safe under concurrent access if the tree is
+ * (as immutable trees are).
+ */
+public class SyncResponder {
+
+  private final Tree tree;
+
+
+  /**
+   * @param tree the tree served
+   */
+  public SyncResponder(Tree tree) {
+    this.tree = Objects.requireNonNull(tree, "tree");
+  }
+
+
+  /**
+   * Returns the tree served.
+   */
+  public Tree tree() {
+    return tree;
+  }
+
+
+  /**
+   * Returns the response to the given request.
+   *
+   * @param request an encoded request (read from its position)
+   *
+   * @throws IllegalArgumentException if the request is malformed, or names a node
+   *         not in the tree
+   */
+  public ByteBuffer respond(ByteBuffer request) throws IllegalArgumentException {
+    final byte type;
+    try {
+      type = request.get();
+    } catch (BufferUnderflowException bux) {
+      throw new IllegalArgumentException("empty request", bux);
+    }
+    switch (type) {
+    case Protocol.INFO:
+      return Protocol.infoResponse(
+          new Protocol.Info(tree.idx().count(), tree.getHashAlgo(), tree.hash()));
+
+    case Protocol.NODES:
+      long[] nodes = Protocol.readNodesRequest(request);
+      var data = new ArrayList<byte[]>(nodes.length);
+      for (long node : nodes) {
+        int level = Protocol.level(node);
+        int index = Protocol.index(node);
+        if (level < 0 || level > tree.idx().height() || index < 0 || index >= tree.idx().count(level))
+          throw new IllegalArgumentException("no such node: (" + level + ":" + index + ")");
+        data.add(tree.data(level, index));
+      }
+      return Protocol.nodesResponse(data);
+
+    default:
+      throw new IllegalArgumentException("unknown request type: " + type);
+    }
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.sync;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import io.crums.util.mrkl.LeafRange;
+import io.crums.util.mrkl.PersistentTree;
+import io.crums.util.mrkl.Tree;
+
+/**
+ * The outcome of a {@linkplain SyncClient#sync() sync}: the remote leaves that differ
+ * from the local tree's, and what it cost to find them. Instances are immutable.
+ */
+public final class SyncResult {
+
+  private final SortedMap<Integer, byte[]> leaves;
+  private final List<LeafRange> ranges;
+  private final int roundTrips;
+  private final long nodesReceived;
+
+
+  SyncResult(SortedMap<Integer, byte[]> leaves, int roundTrips, long nodesReceived) {
+    this.leaves = Collections.unmodifiableSortedMap(leaves);
+    this.roundTrips = roundTrips;
+    this.nodesReceived = nodesReceived;
+
+    var ranges = new ArrayList<LeafRange>();
+    int start = -1;
+    int end = -1;
+    for (int index : leaves.keySet()) {
+      if (index != end) {
+        if (start != -1)
+          ranges.add(new LeafRange(start, end));
+        start = index;
+      }
+      end = index + 1;
+    }
+    if (start != -1)
+      ranges.add(new LeafRange(start, end));
+    this.ranges = Collections.unmodifiableList(ranges);
+  }
+
+
+  /**
+   * Determines whether the local and remote trees were the same.
+   */
+  public boolean isInSync() {
+    return leaves.isEmpty();
+  }
+
+
+  /**
+   * Returns the ranges of leaves that differ, in ascending order, with adjacent
+   * ranges merged.
+   */
+  public List<LeafRange> ranges() {
+    return ranges;
+  }
+
+
+  /**
+   * Returns the number of leaves that differ.
+   */
+  public int leafCount() {
+    return leaves.size();
+  }
+
+
+  /**
+   * Returns the remote value of the leaf at the given index, if it differs from the
+   * local value; {@code null}, otherwise.
+   */
+  public byte[] remoteLeaf(int index) {
+    byte[] leaf = leaves.get(index);
+    return leaf == null ? null : leaf.clone();
+  }
+
+
+  /**
+   * Returns the number of round trips the sync took.
+   */
+  public int roundTrips() {
+    return roundTrips;
+  }
+
+
+  /**
+   * Returns the number of nodes (hashes and leaves) received from the remote side.
+   */
+  public long nodesReceived() {
+    return nodesReceived;
+  }
+
+
+  /**
+   * Returns a version of the given local tree with the differing leaves replaced by their
+   * remote values. Unless the remote tree changed since, its hash matches the remote root.
+   *
+   * @param local the local tree synced against
+   */
+  public PersistentTree applyTo(Tree local) {
+    PersistentTree tree = PersistentTree.newInstance(local);
+    if (leaves.isEmpty())
+      return tree;
+    int[] indices = new int[leaves.size()];
+    byte[][] values = new byte[leaves.size()][];
+    int i = 0;
+    for (Map.Entry<Integer, byte[]> entry : leaves.entrySet()) {
+      indices[i] = entry.getKey();
+      values[i++] = entry.getValue();
+    }
+    return tree.setLeaves(indices, values);
+  }
+
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.sync;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Carries a {@linkplain SyncClient}'s requests to a {@linkplain SyncResponder} and
+ * returns its responses. Each invocation of {@linkplain #exchange(ByteBuffer)} is one
+ * round trip. Implementations only move bytes; the messages are encoded and decoded by
+ * the client and responder.
+ *
+ * @see LoopbackTransport
+ */
+public interface Transport {
+
+  /**
+   * Sends the given request and returns the response.
+   *
+   * @param request the encoded request (read from its position to its limit)
+   *
+   * @return the encoded response, positioned at its beginning
+   */
+  ByteBuffer exchange(ByteBuffer request) throws IOException;
+
+}
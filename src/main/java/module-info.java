@@ -1,4 +1,5 @@
 module io.crums.util.mrkl {
   exports io.crums.util.mrkl;
   exports io.crums.util.mrkl.index;
+  exports io.crums.util.mrkl.sync;
 }
\ No newline at end of file
@@ -7,6 +7,8 @@ package io.crums.util.mrkl;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 import org.junit.jupiter.api.Test;
@@ -281,4 +283,169 @@ public class BuilderTest extends TreeTest {
   
   
   
+  
+  @Test
+  public void testConcurrentAdds() throws InterruptedException {
+    final int threads = 16;
+    final int perThread = 500;
+    Builder builder = newBuilder();
+    byte[][] byIndex = new byte[threads * perThread][];
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; ++t) {
+      final int tt = t;
+      workers[t] = new Thread(() -> {
+        Random random = new Random(tt);
+        for (int i = 0; i < perThread; ++i) {
+          byte[] item = new byte[1 + random.nextInt(48)];
+          random.nextBytes(item);
+          int index = builder.add(item);
+          byIndex[index] = item;
+        }
+      });
+      workers[t].start();
+    }
+    for (Thread worker : workers)
+      worker.join();
+    
+    assertFalse(builder.lock.isLocked());
+    Tree tree = builder.build();
+    
+    Builder serial = newBuilder();
+    for (byte[] item : byIndex)
+      serial.add(item);
+    assertArrayEquals(serial.build().hash(), tree.hash());
+  }
+  
+  
+  @Test
+  public void testSnapshot() {
+    final int count = 80;
+    Random random = new Random(39);
+    byte[][] items = new byte[count][];
+    Builder builder = newBuilder();
+    Tree[] snapshots = new Tree[count + 1];
+    for (int index = 0; index < count; ++index) {
+      items[index] = new byte[1 + random.nextInt(48)];
+      random.nextBytes(items[index]);
+      builder.add(items[index]);
+      if (index > 0)
+        snapshots[index + 1] = builder.snapshot();
+    }
+    
+    // the builder is not cleared
+    assertEquals(count, builder.count());
+    Tree built = builder.build();
+    assertEquals(0, builder.count());
+    
+    // snapshots are unaffected by later adds (or by the build)
+    for (int size = 2; size <= count; ++size) {
+      byte[][] prefix = Arrays.copyOf(items, size);
+      Tree snapshot = snapshots[size];
+      assertTree(prefix, snapshot);
+      Builder expected = newBuilder();
+      for (byte[] item : prefix)
+        expected.add(item);
+      assertArrayEquals(expected.build().hash(), snapshot.hash());
+    }
+    assertArrayEquals(built.hash(), snapshots[count].hash());
+  }
+  
+  
+  @Test
+  public void testSnapshotTooSmall() {
+    Builder builder = newBuilder();
+    assertThrows(IllegalStateException.class, () -> builder.snapshot());
+    builder.add(new byte[] { 1 });
+    assertThrows(IllegalStateException.class, () -> builder.snapshot());
+  }
+  
+  
+  @Test
+  public void testSnapshotWhileAdding() throws InterruptedException {
+    final int count = 20_000;
+    Builder builder = newBuilder();
+    Thread adder = new Thread(() -> {
+      Random random = new Random(1);
+      for (int index = 0; index < count; ++index) {
+        byte[] item = new byte[16];
+        random.nextBytes(item);
+        builder.add(item);
+      }
+    });
+    adder.start();
+    
+    MessageDigest digest = newDigest();
+    int snapshots = 0;
+    while (adder.isAlive() || snapshots == 0) {
+      if (builder.count() < 2)
+        continue;
+      Tree snapshot = builder.snapshot();
+      assertHashRecurse(snapshot.root(), digest);
+      ++snapshots;
+    }
+    adder.join();
+    
+    Tree snapshot = builder.snapshot();
+    assertEquals(count, snapshot.idx().count());
+    assertArrayEquals(builder.build().hash(), snapshot.hash());
+  }
+  
+  
+  @Test
+  public void testReuseDoubleBuffered() {
+    final int leafWidth = 24;
+    final int batch = 300;
+    FixedLeafBuilder builder = new FixedLeafBuilder(ALGO, leafWidth, true, batch, 2);
+    assertTrue(builder.isReusing());
+    assertEquals(batch, builder.expectedLeaves());
+    
+    Random random = new Random(40);
+    List<byte[]> leaves0 = builder.level(0);
+    Tree previous = null;
+    byte[] previousHash = null;
+    for (int cycle = 0; cycle < 6; ++cycle) {
+      
+      // leaf lists alternate between the 2 slabs
+      if (cycle % 2 == 0)
+        assertSame(leaves0, builder.level(0));
+      else
+        assertNotSame(leaves0, builder.level(0));
+      
+      final int count = batch - 10 + cycle * 4;   // (the last batches exceed the hint)
+      byte[][] items = new byte[count][leafWidth];
+      for (byte[] item : items) {
+        random.nextBytes(item);
+        builder.add(item);
+      }
+      Tree tree = builder.build();
+      assertTree(items, tree);
+      
+      // the tree built in the previous cycle is still valid
+      if (previous != null) {
+        assertArrayEquals(previousHash, previous.hash());
+        assertHashRecurse(previous.root(), newDigest());
+      }
+      previous = tree;
+      previousHash = tree.hash();
+    }
+  }
+  
+  
+  @Test
+  public void testReuseVariableWidth() {
+    Builder builder = new Builder(ALGO, true, 64, 1);
+    Random random = new Random(41);
+    List<byte[]> leaves = builder.level(0);
+    for (int cycle = 0; cycle < 3; ++cycle) {
+      assertSame(leaves, builder.level(0));
+      byte[][] items = new byte[50 + cycle][];
+      for (int index = 0; index < items.length; ++index) {
+        items[index] = new byte[1 + random.nextInt(40)];
+        random.nextBytes(items[index]);
+        builder.add(items[index]);
+      }
+      assertTree(items, builder.build());
+    }
+  }
+
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ */
+public class CachedTreeTest extends TreeTest {
+  
+  
+  @Test
+  public void testSameTree() {
+    for (int count = 2; count < 70; ++count) {
+      Tree tree = randomFixedTree(count, 32);
+      for (int pinned = 0; pinned < 4; ++pinned) {
+        CachedTree cached = new CachedTree(tree, pinned, 1024);
+        TreesTest.assertSameTree(tree, cached);
+        for (int index = 0; index < count; ++index)
+          assertEquals(tree.proof(index), cached.proof(index));
+        assertTrue(cached.cachedBytes() <= cached.capacity());
+      }
+    }
+  }
+  
+  
+  @Test
+  public void testHitsAndMisses() {
+    Tree tree = randomFixedTree(1000, 32);
+    CachedTree cached = new CachedTree(tree, 3, 1024 * 1024);
+    assertEquals(3, cached.pinnedLevels());
+    
+    cached.data(tree.idx().height(), 0);
+    assertEquals(1, cached.hits());
+    assertEquals(0, cached.misses());
+    
+    cached.data(0, 7);
+    assertEquals(1, cached.misses());
+    assertEquals(1, cached.cachedNodes());
+    
+    assertArrayEquals(tree.data(0, 7), cached.data(0, 7));
+    assertEquals(2, cached.hits());
+    assertEquals(1, cached.misses());
+    
+    cached.resetStats();
+    assertEquals(0, cached.hits());
+    cached.clearCache();
+    assertEquals(0, cached.cachedNodes());
+    assertEquals(0, cached.cachedBytes());
+  }
+  
+  
+  @Test
+  public void testProofThruCache() {
+    Tree tree = randomFixedTree(1000, 32);
+    CachedTree cached = new CachedTree(tree, 3, 1024 * 1024);
+    assertSame(cached, cached.root().tree());
+
+    // the proof reads the leaf, its siblings up the path, and the root
+    Proof proof = cached.proof(17);
+    assertEquals(tree.proof(17), proof);
+    final int reads = proof.hashChain().size();
+    assertEquals(reads, cached.hits() + cached.misses());
+    assertTrue(cached.misses() > 0);
+    assertEquals(cached.misses(), cached.cachedNodes());
+
+    // the unpinned nodes are now cached
+    final long misses = cached.misses();
+    final long hits = cached.hits();
+    for (int i = 0; i < 4; ++i)
+      assertEquals(proof, cached.proof(17));
+    assertEquals(misses, cached.misses());
+    assertEquals(hits + 4 * reads, cached.hits());
+  }
+  
+  
+  @Test
+  public void testEviction() {
+    Tree tree = randomFixedTree(1000, 32);
+    // room for about 2 nodes
+    CachedTree cached = new CachedTree(tree, 0, 200);
+    cached.data(0, 1);
+    cached.data(0, 2);
+    cached.data(0, 1);    // hit: makes leaf 2 the eldest
+    cached.data(0, 3);    // evicts leaf 2
+    assertEquals(2, cached.cachedNodes());
+    assertTrue(cached.cachedBytes() <= 200);
+    
+    cached.resetStats();
+    cached.data(0, 1);
+    cached.data(0, 3);
+    assertEquals(2, cached.hits());
+    cached.data(0, 2);
+    assertEquals(1, cached.misses());
+  }
+  
+  
+  @Test
+  public void testWholeTreePinned() {
+    Tree tree = randomFixedTree(33, 32);
+    CachedTree cached = new CachedTree(tree, 100, 0);
+    assertEquals(tree.idx().height() + 1, cached.pinnedLevels());
+    TreesTest.assertSameTree(tree, cached);
+    assertEquals(0, cached.misses());
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ */
+public class CompactFreeLeafTreeTest extends TreeTest {
+  
+  
+  @Test
+  public void testBuilderOutput() {
+    Tree tree = randomTree(101);
+    assertTrue(tree instanceof CompactFreeLeafTree);
+    assertHashRecurse(tree.root(), newDigest());
+  }
+  
+  
+  @Test
+  public void testNewInstance() {
+    for (int c = 2; c < 67; ++c) {
+      int count = c;
+      Tree tree = randomTree(c);
+      count = tree.idx().count();
+      byte[][] nodes = new byte[tree.idx().totalCount()][];
+      for (int serialIndex = 0; serialIndex < nodes.length; ++serialIndex)
+        nodes[serialIndex] = tree.idx().getNode(serialIndex).data();
+      FreeLeafTree free = new FreeLeafTree(nodes, count, ALGO);
+      
+      CompactFreeLeafTree compact = CompactFreeLeafTree.newInstance(free);
+      TreesTest.assertSameTree(free, compact);
+      for (int index = 0; index < count; ++index)
+        assertEquals(free.data(0, index).length, compact.leafLength(index));
+    }
+  }
+  
+  
+  @Test
+  public void testBadOffsets() {
+    byte[] internals = new byte[32];
+    byte[] leaves = new byte[8];
+    try {
+      new CompactFreeLeafTree(
+          2, ALGO, ByteBuffer.wrap(internals), IntBuffer.wrap(new int[] { 0, 5, 3 }), ByteBuffer.wrap(leaves));
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    try {
+      new CompactFreeLeafTree(
+          2, ALGO, ByteBuffer.wrap(internals), IntBuffer.wrap(new int[] { 0, 5, 9 }), ByteBuffer.wrap(leaves));
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    
+    new CompactFreeLeafTree(
+        2, ALGO, ByteBuffer.wrap(internals), IntBuffer.wrap(new int[] { 0, 5, 8 }), ByteBuffer.wrap(leaves));
+  }
+  
+  
+  private Tree randomTree(int count) {
+    Builder builder = newBuilder();
+    Random random = new Random(count);
+    for (int i = 0; i < count; ++i) {
+      byte[] item = new byte[random.nextInt(40)];
+      random.nextBytes(item);
+      builder.add(item);
+    }
+    if (builder.leafWidth() > 0)
+      builder.add(new byte[builder.leafWidth() + 1]);
+    return builder.build();
+  }
+
+}
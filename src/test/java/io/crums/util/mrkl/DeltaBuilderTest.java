@@ -106,5 +106,33 @@ public class DeltaBuilderTest extends TreeTest {
       for (int addCount = 0; addCount <= 33; ++addCount)
         testImpl(baseCount, addCount);
   }
+  
+  
+  @Test
+  public void testSnapshot() {
+    for (int baseCount = 2; baseCount <= 17; ++baseCount) {
+      for (int addCount = 0; addCount <= 17; ++addCount) {
+        DeltaBuilder builder = new DeltaBuilder(randomOmniTree(baseCount));
+        addRandom(builder, addCount);
+        Tree snapshot = builder.snapshot();
+        assertHashRecurse(snapshot.root(), newDigest());
+        assertEquals(builder.leafWidth(), snapshot.leafWidth());
+        assertTrue(snapshot.isOmniWidth());
+        Tree loaded = writeAndLoad(snapshot);
+        assertTrue(loaded instanceof FixedLeafTree);
+        TreesTest.assertSameTree(snapshot, loaded);
+        addRandom(builder, 3);
+        Tree later = builder.snapshot();
+        builder.clear();
+        assertEquals(baseCount, builder.count());
+        assertEquals(baseCount + addCount + 3, later.idx().count());
+        assertHashRecurse(later.root(), newDigest());
+        
+        DeltaBuilder expected = new DeltaBuilder(randomOmniTree(baseCount));
+        addRandom(expected, addCount);
+        assertArrayEquals(expected.build().hash(), snapshot.hash());
+      }
+    }
+  }
 
 }
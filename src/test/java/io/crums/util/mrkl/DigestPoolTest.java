@@ -0,0 +1,90 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.MessageDigest;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ */
+public class DigestPoolTest extends TreeTest {
+  
+  
+  @Test
+  public void testShared() {
+    assertSame(DigestPool.of(ALGO), DigestPool.of(ALGO));
+    assertEquals(32, DigestPool.of(ALGO).hashWidth());
+    try {
+      DigestPool.of("no-such-algo");
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+  
+  
+  @Test
+  public void testBorrowRelease() {
+    DigestPool pool = new DigestPool(ALGO);
+    MessageDigest a = pool.borrow();
+    MessageDigest b = pool.borrow();
+    assertNotSame(a, b);
+    a.update((byte) 1);
+    pool.release(a);
+    // released digests are reset
+    MessageDigest c = pool.borrow();
+    assertSame(a, c);
+    assertArrayEquals(newDigest().digest(), c.digest());
+    pool.release(b);
+    pool.release(c);
+  }
+  
+  
+  @Test
+  public void testConcurrentHash() throws InterruptedException {
+    Builder builder = newBuilder();
+    final byte[][] items = new byte[200][];
+    Random random = new Random(7);
+    for (int i = 0; i < items.length; ++i) {
+      items[i] = new byte[1 + random.nextInt(100)];
+      random.nextBytes(items[i]);
+    }
+    Thread[] threads = new Thread[8];
+    Throwable[] errors = new Throwable[threads.length];
+    for (int t = 0; t < threads.length; ++t) {
+      final int tt = t;
+      threads[t] = new Thread(() -> {
+        try {
+          MessageDigest digest = newDigest();
+          for (int r = 0; r < 20; ++r)
+            for (byte[] item : items)
+              assertArrayEquals(digest.digest(item), builder.hash(item));
+        } catch (Throwable x) {
+          errors[tt] = x;
+        }
+      });
+      threads[t].start();
+    }
+    for (int t = 0; t < threads.length; ++t) {
+      threads[t].join();
+      assertNull(errors[t]);
+    }
+  }
+  
+  
+  @Test
+  public void testNoArgVerify() {
+    Builder builder = newBuilder();
+    for (int i = 0; i < 37; ++i)
+      builder.add(new byte[] { (byte) i, 1, 2 });
+    Tree tree = builder.build();
+    assertTrue(tree.proof(11).verify());
+    assertTrue(tree.root().verify());
+  }
+
+}
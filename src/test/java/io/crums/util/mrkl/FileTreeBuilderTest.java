@@ -0,0 +1,79 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 
+ */
+public class FileTreeBuilderTest extends TreeTest {
+  
+  @TempDir
+  Path dir;
+  
+  
+  @Test
+  public void testMinimal() throws IOException {
+    testImpl(2, 32, 64);
+  }
+  
+  
+  @Test
+  public void testTinies() throws IOException {
+    for (int count = 3; count < 70; ++count)
+      testImpl(count, 32, 1);
+  }
+  
+  
+  @Test
+  public void testOddWidth() throws IOException {
+    testImpl(517, 7, 200);
+    testImpl(1029, 45, 4096);
+  }
+  
+  
+  @Test
+  public void testBadFileSize() throws IOException {
+    Path leaves = dir.resolve("bad");
+    Files.write(leaves, new byte[65]);
+    try {
+      new FileTreeBuilder(ALGO, 32).build(leaves);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+  
+  
+  private void testImpl(int count, int leafWidth, int bufferSize) throws IOException {
+    byte[] block = new byte[count * leafWidth];
+    new Random(count).nextBytes(block);
+    Path leaves = dir.resolve("leaves-" + count);
+    Files.write(leaves, block);
+    
+    FixedLeafBuilder builder = new FixedLeafBuilder(ALGO, leafWidth);
+    builder.addAll(block, 0, count);
+    FixedLeafTree expected = (FixedLeafTree) builder.build();
+    
+    FileTreeBuilder fileBuilder = new FileTreeBuilder(ALGO, leafWidth, bufferSize);
+    
+    FixedLeafTree tree = fileBuilder.build(leaves);
+    assertEquals(expected.dataBlock(), tree.dataBlock());
+    
+    Path out = dir.resolve("tree-" + count);
+    long written = fileBuilder.writeTree(leaves, out);
+    assertEquals(expected.dataBlock().remaining(), written);
+    assertEquals(expected.dataBlock(), ByteBuffer.wrap(Files.readAllBytes(out)));
+  }
+
+}
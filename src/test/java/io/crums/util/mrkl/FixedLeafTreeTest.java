@@ -7,6 +7,10 @@ package io.crums.util.mrkl;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.jupiter.api.Test;
 
@@ -31,6 +35,170 @@ public class FixedLeafTreeTest extends TreeTest {
     assertEquals(leavesBlock.remaining(), leavesBlock.capacity());
   }
 
+  
+  @Test
+  public void testAddAll() {
+    for (int count = 2; count < 67; ++count)
+      testAddAll(count);
+    testAddAll(1025);
+  }
+  
+  
+  private void testAddAll(int count) {
+    final int width = 4;
+    byte[] block = new byte[count * width + 3];
+    new Random(count).nextBytes(block);
+    
+    FixedLeafBuilder expectedBuilder = newBuilder();
+    for (int index = 0; index < count; ++index)
+      expectedBuilder.add(block, 3 + index * width, width);
+    FixedLeafTree expected = (FixedLeafTree) expectedBuilder.build();
+    
+    FixedLeafBuilder builder = newBuilder();
+    assertEquals(0, builder.addAll(block, 3, 1));
+    assertEquals(1, builder.addAll(ByteBuffer.wrap(block, 3 + width, (count - 1) * width)));
+    assertEquals(count, builder.count());
+    FixedLeafTree tree = (FixedLeafTree) builder.build();
+    
+    assertEquals(expected.dataBlock(), tree.dataBlock());
+    
+    ByteBuffer direct = ByteBuffer.allocateDirect(count * width);
+    direct.put(expected.leavesBlock()).flip();
+    builder.addAll(direct);
+    assertFalse(direct.hasRemaining());
+    assertEquals(expected.dataBlock(), ((FixedLeafTree) builder.build()).dataBlock());
+    
+    FixedLeafTree copy = FixedLeafTree.newInstance(expected.leavesBlock(), width, ALGO);
+    assertEquals(expected.dataBlock(), copy.dataBlock());
+    assertHashRecurse(copy.root(), newDigest());
+  }
+  
+  
+  @Test
+  public void testAddAllBadBlock() {
+    FixedLeafBuilder builder = newBuilder();
+    try {
+      builder.addAll(ByteBuffer.allocate(7));
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    assertEquals(0, builder.count());
+  }
+  
+
+  @Test
+  public void testBlockLayout() {
+    for (int count = 2; count < 300; count += 7) {
+      byte[] block = new byte[count * 4];
+      new Random(count).nextBytes(block);
+      FixedLeafTree serial = FixedLeafTree.newInstance(ByteBuffer.wrap(block), 4, ALGO);
+      for (int blockLevels = 2; blockLevels < 6; ++blockLevels) {
+        FixedLeafTree blocked = serial.toBlockLayout(blockLevels);
+        assertEquals(blockLevels, blocked.blockLevels());
+        assertEquals(serial.leavesBlock(), blocked.leavesBlock());
+        TreesTest.assertSameTree(serial, blocked);
+        assertEquals(serial.dataBlock(), blocked.toBlockLayout(1).dataBlock());
+      }
+      assertSame(serial, serial.toBlockLayout(1));
+    }
+  }
+  
+
+  @Test
+  public void testSnapshot() {
+    FixedLeafBuilder builder = newBuilder();
+    Random random = new Random(39);
+    byte[] leaf = new byte[4];
+    for (int count = 1; count <= 40; ++count) {
+      random.nextBytes(leaf);
+      builder.add(leaf);
+      if (count < 2)
+        continue;
+      Tree snapshot = builder.snapshot();
+      assertEquals(4, snapshot.leafWidth());
+      assertTrue(snapshot.isLeafWidthFixed());
+      Tree loaded = writeAndLoad(snapshot);
+      assertTrue(loaded instanceof FixedLeafTree);
+      assertEquals(4, loaded.leafWidth());
+      TreesTest.assertSameTree(snapshot, loaded);
+    }
+  }
+  
+  
+  @Test
+  public void testVerifyAll() throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (int count = 2; count < 100; count += 3)
+        testVerifyAll(count, executor);
+      testVerifyAll(50_001, executor);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+
+  private void testVerifyAll(int count, ExecutorService executor) throws InterruptedException {
+    final int width = 4;
+    byte[] leaves = new byte[count * width];
+    new Random(count).nextBytes(leaves);
+    FixedLeafTree tree = FixedLeafTree.newInstance(ByteBuffer.wrap(leaves), width, ALGO);
+    assertTrue(tree.verifyAll(executor).isEmpty());
+    assertTrue(tree.toBlockLayout(3).verifyAll(executor).isEmpty());
+
+    // a direct (off-heap) copy, corrupted
+    ByteBuffer direct = ByteBuffer.allocateDirect(tree.dataBlock().remaining());
+    direct.put(tree.dataBlock()).flip();
+    FixedLeafTree copy = new FixedLeafTree(count, ALGO, direct, tree.hashWidth(), width);
+    assertTrue(copy.verifyAll(executor).isEmpty());
+
+    // corrupt the last leaf: its parent mismatches
+    int lastLeaf = (count - 1) * tree.hashWidth() + (count - 1) * width;
+    direct.put(lastLeaf, (byte) (direct.get(lastLeaf) + 1));
+    Node parent = tree.idx().getParent(0, count - 1);
+    assertEquals(List.of(parent), copy.verifyAll(executor));
+
+    // also corrupt the root: it mismatches too
+    direct.put(0, (byte) (direct.get(0) + 1));
+    List<Node> mismatches = copy.verifyAll(executor);
+    assertTrue(mismatches.contains(copy.root()));
+    assertTrue(mismatches.contains(parent));
+    assertEquals(parent.equals(copy.root()) ? 1 : 2, mismatches.size());
+  }
+
+
+  @Test
+  public void testVerifyAllGeneric() throws InterruptedException {
+    final int count = 37;
+    byte[] leaves = new byte[count * 4];
+    new Random(count).nextBytes(leaves);
+    FixedLeafTree base = FixedLeafTree.newInstance(ByteBuffer.wrap(leaves), 4, ALGO);
+    Node corrupted = base.idx().getNode(2, 3);
+
+    // thru Tree's default implementation
+    Tree tree = new Tree(base) {
+      @Override
+      public byte[] data(int level, int index) {
+        byte[] data = base.data(level, index);
+        if (level == corrupted.level() && index == corrupted.index())
+          ++data[0];
+        return data;
+      }
+      @Override
+      public int leafWidth() {
+        return base.leafWidth();
+      }
+    };
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertTrue(PersistentTree.newInstance(base).verifyAll(executor).isEmpty());
+      List<Node> mismatches = tree.verifyAll(executor);
+      assertEquals(List.of(corrupted, tree.idx().getParent(corrupted)), mismatches);
+    } finally {
+      executor.shutdown();
+    }
+  }
+  
+
   /* (non-Javadoc)
    * @see io.crums.util.mrkl.TreeTest#newBuilder()
    */
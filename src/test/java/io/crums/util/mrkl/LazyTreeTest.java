@@ -0,0 +1,87 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ */
+public class LazyTreeTest extends TreeTest {
+  
+  
+  @Test
+  public void testTinies() {
+    for (int count = 2; count < 70; ++count) {
+      FixedLeafTree tree = randomFixedTree(count, 32);
+      for (int stored = 1; stored <= tree.idx().height() + 1; ++stored) {
+        LazyTree lazy = new LazyTree(ALGO, tree.leavesBlock(), 32, stored, false);
+        TreesTest.assertSameTree(tree, lazy);
+        assertEquals(0, lazy.memoizedNodes());
+      }
+    }
+  }
+  
+  
+  @Test
+  public void testOddWidth() {
+    FixedLeafTree tree = randomFixedTree(1027, 5);
+    LazyTree lazy = new LazyTree(ALGO, tree.leavesBlock(), 5, 3, true);
+    assertEquals(tree.idx().height() - 2, lazy.minStoredLevel());
+    assertEquals(0, lazy.memoizedNodes());
+    TreesTest.assertSameTree(tree, lazy);
+    for (int index = 0; index < 1027; index += 13)
+      assertEquals(tree.proof(index), lazy.proof(index));
+  }
+  
+  
+  @Test
+  public void testMemoize() {
+    FixedLeafTree tree = randomFixedTree(1000, 32);
+    LazyTree lazy = LazyTree.newInstance(tree, 2, true);
+    assertTrue(lazy.isMemoized());
+    assertEquals(0, lazy.memoizedNodes());
+    assertEquals(tree.proof(400), lazy.proof(400));
+    int memoized = lazy.memoizedNodes();
+    assertTrue(memoized > 0);
+    assertEquals(tree.proof(400), lazy.proof(400));
+    assertEquals(memoized, lazy.memoizedNodes());
+    
+    // returned copies may be modified without effect
+    byte[] node = lazy.data(3, 0);
+    node[0]++;
+    assertArrayEquals(tree.data(3, 0), lazy.data(3, 0));
+  }
+  
+  
+  @Test
+  public void testNewInstanceCopiesLeaves() {
+    FixedLeafTree tree = randomFixedTree(300, 8);
+    byte[] bytes = toBytes(tree);
+    FixedLeafTree source = (FixedLeafTree) Trees.load(ByteBuffer.wrap(bytes), true);
+    LazyTree lazy = LazyTree.newInstance(source, 2, false);
+    TreesTest.assertSameTree(tree, lazy);
+    
+    // clobber the source's backing array
+    Arrays.fill(bytes, (byte) 0);
+    assertFalse(Arrays.equals(tree.data(0, 0), source.data(0, 0)));
+    TreesTest.assertSameTree(tree, lazy);
+  }
+  
+  
+  @Test
+  public void testBadLeaves() {
+    try {
+      new LazyTree(ALGO, ByteBuffer.allocate(65), 32, 1, false);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ */
+public class LeafIndexTest extends TreeTest {
+
+  private final static int LEAF_WIDTH = 32;
+
+  @TempDir
+  Path dir;
+
+
+  @Test
+  public void testIndexOf() {
+    Random random = new Random(48);
+    for (int count = 2; count < 300; count += 1 + count / 4) {
+      Tree tree = newFixedTree(randomLeaves(count, LEAF_WIDTH, random), LEAF_WIDTH);
+      for (int prefix : new int[] { 0, 8 }) {
+        LeafIndex index = LeafIndex.newInstance(tree, prefix);
+        assertTrue(index.slots() * LeafIndex.MAX_LOAD_FACTOR >= count);
+        for (int leaf = 0; leaf < count; ++leaf)
+          assertEquals(leaf, index.indexOf(tree.data(0, leaf)));
+        byte[] missing = new byte[LEAF_WIDTH];
+        random.nextBytes(missing);
+        assertEquals(-1, index.indexOf(missing));
+        assertNull(index.proofOf(missing));
+      }
+    }
+  }
+
+
+  @Test
+  public void testProofOf() {
+    Tree tree = newFixedTree(randomLeaves(10_007, LEAF_WIDTH, new Random(49)), LEAF_WIDTH);
+    LeafIndex index = LeafIndex.newInstance(tree, 8);
+    for (int leaf : new int[] { 0, 1, 5000, 10_006 }) {
+      Proof proof = index.proofOf(tree.data(0, leaf));
+      assertEquals(leaf, proof.leafIndex());
+      assertTrue(proof.verify());
+    }
+  }
+
+
+  @Test
+  public void testDuplicatesAndPrefixCollisions() {
+    // leaves share an 8-byte prefix; 3 and 9 are duplicates
+    byte[][] leaves = new byte[12][LEAF_WIDTH];
+    for (int i = 0; i < leaves.length; ++i)
+      leaves[i][LEAF_WIDTH - 1] = (byte) i;
+    leaves[9] = leaves[3];
+    Builder builder = newBuilder();
+    for (byte[] leaf : leaves)
+      builder.add(leaf);
+    Tree tree = builder.build();
+
+    LeafIndex index = LeafIndex.newInstance(tree, 8);
+    assertEquals(3, index.indexOf(leaves[9]));
+    for (int i = 0; i < leaves.length; ++i)
+      if (i != 9)
+        assertEquals(i, index.indexOf(leaves[i]));
+    assertEquals(-1, index.indexOf(new byte[LEAF_WIDTH - 1]));
+  }
+
+
+  @Test
+  public void testPersistence() throws IOException {
+    Tree tree = newFixedTree(randomLeaves(3001, LEAF_WIDTH, new Random(50)), LEAF_WIDTH);
+    LeafIndex index = LeafIndex.newInstance(tree, 8);
+
+    // write the index right after the tree, in the same file
+    Path file = dir.resolve("tree-with-index");
+    long written;
+    try (var ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      written = tree.writeTo(ch);
+      written += index.writeTo(ch);
+      assertEquals(ch.size(), written);
+    }
+
+    ByteBuffer block;
+    try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      block = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+    }
+    Tree loadedTree = Trees.load(block, true);
+    LeafIndex loaded = LeafIndex.load(loadedTree, block);
+    assertFalse(block.hasRemaining());
+    assertEquals(index.slots(), loaded.slots());
+    assertEquals(8, loaded.prefix());
+    for (int leaf = 0; leaf < 3001; leaf += 7)
+      assertEquals(leaf, loaded.indexOf(tree.data(0, leaf)));
+
+    // not the same tree
+    block.rewind();
+    Trees.load(block, false);
+    Tree other = newFixedTree(randomLeaves(3001, LEAF_WIDTH, new Random(51)), LEAF_WIDTH);
+    assertThrows(IllegalArgumentException.class, () -> LeafIndex.load(other, block));
+  }
+
+
+  @Test
+  public void testSingleFile() throws IOException {
+    Tree tree = newFixedTree(randomLeaves(2049, LEAF_WIDTH, new Random(54)), LEAF_WIDTH);
+    LeafIndex index = LeafIndex.newInstance(tree, 8);
+    Path file = dir.resolve("single");
+    long indexBytes;
+    try (var ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      long written = index.writeWithTree(ch);
+      assertEquals(ch.size(), written);
+    }
+    try (var ch = FileChannel.open(
+        dir.resolve("index-only"), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      indexBytes = index.writeTo(ch);
+    }
+    final long treeBytes = Files.size(file) - indexBytes;
+
+    LeafIndex loaded = LeafIndex.loadWithTree(file, true);
+    assertArrayEquals(tree.hash(), loaded.tree().hash());
+    assertEquals(8, loaded.prefix());
+    for (int leaf = 0; leaf < 2049; leaf += 11) {
+      Proof proof = loaded.proofOf(tree.data(0, leaf));
+      assertEquals(leaf, proof.leafIndex());
+      assertArrayEquals(tree.hash(), proof.rootHash());
+    }
+
+    // the index alone, at its offset in the file
+    LeafIndex atOffset = LeafIndex.load(tree, file, treeBytes);
+    assertEquals(2048, atOffset.indexOf(tree.data(0, 2048)));
+    assertThrows(IllegalArgumentException.class, () -> LeafIndex.load(tree, file));
+    assertThrows(IllegalArgumentException.class, () -> LeafIndex.load(tree, file, -1));
+  }
+
+
+  @Test
+  public void testLoadStandalone() throws IOException {
+    Tree tree = newFixedTree(randomLeaves(77, LEAF_WIDTH, new Random(52)), LEAF_WIDTH);
+    Path file = dir.resolve("index");
+    try (var ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      LeafIndex.newInstance(tree).writeTo(ch);
+    }
+    LeafIndex loaded = LeafIndex.load(tree, file);
+    assertEquals(76, loaded.indexOf(tree.data(0, 76)));
+    assertThrows(IllegalArgumentException.class, () -> LeafIndex.load(tree, ByteBuffer.allocate(8)));
+  }
+
+
+  @Test
+  public void testBadRootLength() throws IOException {
+    Tree tree = newFixedTree(randomLeaves(40, LEAF_WIDTH, new Random(53)), LEAF_WIDTH);
+    Path file = dir.resolve("index");
+    try (var ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      LeafIndex.newInstance(tree).writeTo(ch);
+    }
+    ByteBuffer block = ByteBuffer.wrap(Files.readAllBytes(file));
+    for (int length : new int[] { -1, Integer.MIN_VALUE, Integer.MAX_VALUE, block.capacity() }) {
+      ByteBuffer corrupt = ByteBuffer.wrap(block.array().clone());
+      corrupt.putInt(20, length);
+      assertThrows(IllegalArgumentException.class, () -> LeafIndex.load(tree, corrupt));
+    }
+    LeafIndex.load(tree, block);
+  }
+
+  
+  
+  @Test
+  public void testCorruptSlots() throws IOException {
+    Tree tree = newFixedTree(randomLeaves(40, LEAF_WIDTH, new Random(55)), LEAF_WIDTH);
+    Path file = dir.resolve("index");
+    try (var ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      LeafIndex.newInstance(tree).writeTo(ch);
+    }
+    ByteBuffer block = ByteBuffer.wrap(Files.readAllBytes(file));
+    final int slotsOffset = 24 + tree.hash().length;
+    final int slots = LeafIndex.load(tree, block.duplicate()).slots();
+    int used = -1;
+    for (int slot = 0; used == -1; ++slot)
+      if (block.getInt(slotsOffset + slot * 4) != 0)
+        used = slotsOffset + slot * 4;
+    for (int value : new int[] { 41, -1, Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+      ByteBuffer corrupt = ByteBuffer.wrap(block.array().clone());
+      corrupt.putInt(used, value);
+      assertThrows(IllegalArgumentException.class, () -> LeafIndex.load(tree, corrupt));
+    }
+    
+    // no empty slots
+    ByteBuffer full = ByteBuffer.wrap(block.array().clone());
+    for (int slot = 0; slot < slots; ++slot)
+      if (full.getInt(slotsOffset + slot * 4) == 0)
+        full.putInt(slotsOffset + slot * 4, 1);
+    assertThrows(IllegalArgumentException.class, () -> LeafIndex.load(tree, full));
+    
+    block.putInt(used, 40);
+    LeafIndex.load(tree, block);
+  }
+
+}
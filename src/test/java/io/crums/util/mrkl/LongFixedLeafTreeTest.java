@@ -0,0 +1,91 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 
+ */
+public class LongFixedLeafTreeTest extends TreeTest {
+  
+  @TempDir
+  Path dir;
+  
+  
+  @Test
+  public void testMinimal() throws IOException {
+    testImpl(2, 32, LongFixedLeafTree.DEFAULT_SEGMENT_SIZE);
+  }
+  
+  
+  @Test
+  public void testStraddledSegments() throws IOException {
+    testImpl(77, 32, 1);
+    testImpl(301, 13, 100);
+    testImpl(1025, 8, 4096);
+  }
+  
+  
+  @Test
+  public void testBlockLayoutRejected() throws IOException {
+    FixedLeafBuilder builder = new FixedLeafBuilder(ALGO, 8);
+    byte[] block = new byte[8 * 100];
+    new Random(1).nextBytes(block);
+    builder.addAll(block, 0, 100);
+    Tree tree = ((FixedLeafTree) builder.build()).toBlockLayout(2);
+    Path file = dir.resolve("blocked");
+    try (var ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      tree.writeTo(ch);
+    }
+    try {
+      LongFixedLeafTree.load(file);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+  
+  
+  private void testImpl(int count, int leafWidth, int segmentSize) throws IOException {
+    byte[] block = new byte[count * leafWidth];
+    new Random(count).nextBytes(block);
+    Path leaves = dir.resolve("leaves-" + count);
+    Files.write(leaves, block);
+    
+    FixedLeafBuilder builder = new FixedLeafBuilder(ALGO, leafWidth);
+    builder.addAll(block, 0, count);
+    Tree expected = builder.build();
+    
+    Path treeFile = dir.resolve("tree-" + count);
+    new FileTreeBuilder(ALGO, leafWidth, 1000).writeTreeFile(leaves, treeFile);
+    
+    LongFixedLeafTree tree = LongFixedLeafTree.load(treeFile, segmentSize);
+    assertEquals(count, tree.idx().count());
+    assertEquals(leafWidth, tree.leafWidth());
+    assertArrayEquals(expected.hash(), tree.hash());
+    
+    for (int level = 0; level <= expected.idx().height(); ++level)
+      for (int index = 0; index < expected.idx().count(level); ++index)
+        assertArrayEquals(expected.data(level, index), tree.data(level, index));
+    
+    var digest = newDigest();
+    for (int index = 0; index < count; ++index) {
+      Proof proof = tree.proof(index);
+      assertEquals(new Proof(expected, index), proof);
+      assertEquals(index, proof.longLeafIndex());
+      assertTrue(proof.verify(digest));
+    }
+  }
+
+}
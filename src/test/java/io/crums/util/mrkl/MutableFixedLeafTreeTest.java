@@ -0,0 +1,181 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ */
+public class MutableFixedLeafTreeTest extends TreeTest {
+
+  private final static int LEAF_WIDTH = 20;
+
+
+  @Test
+  public void testSetLeaf() {
+    Random random = new Random(44);
+    for (int count = 2; count <= 70; ++count) {
+      byte[] leaves = randomLeaves(count, LEAF_WIDTH, random);
+      MutableFixedLeafTree tree = MutableFixedLeafTree.newInstance(newFixedTree(leaves, LEAF_WIDTH));
+
+      for (int trial = 0; trial < 3; ++trial) {
+        int index = random.nextInt(count);
+        byte[] leaf = new byte[LEAF_WIDTH];
+        random.nextBytes(leaf);
+        tree.setLeaf(index, leaf);
+        System.arraycopy(leaf, 0, leaves, index * LEAF_WIDTH, LEAF_WIDTH);
+
+        FixedLeafTree expected = newFixedTree(leaves, LEAF_WIDTH);
+        assertArrayEquals(expected.hash(), tree.hash(), "count " + count);
+        assertArrayEquals(leaf, tree.data(0, index));
+        assertTrue(tree.consistentProof(index).verify());
+      }
+      assertHashRecurse(tree.root(), newDigest());
+    }
+  }
+
+
+  @Test
+  public void testSetLeaves() {
+    Random random = new Random(45);
+    final int count = 50_001;
+    byte[] leaves = randomLeaves(count, LEAF_WIDTH, random);
+    FixedLeafTree original = newFixedTree(leaves, LEAF_WIDTH);
+    MutableFixedLeafTree tree = MutableFixedLeafTree.newInstance(original);
+    assertArrayEquals(original.hash(), tree.hash());
+
+    // enough updates to hash the lower levels in parallel; include the last leaf
+    // (a carry's right child), and a repeated index
+    final int updates = 4000;
+    int[] indices = new int[updates];
+    byte[][] newLeaves = new byte[updates][LEAF_WIDTH];
+    for (int u = 0; u < updates; ++u) {
+      indices[u] = u == 0 ? count - 1 : u == 1 ? 7 : random.nextInt(count);
+      random.nextBytes(newLeaves[u]);
+    }
+    indices[2] = 7;
+
+    int rehashed = tree.setLeaves(indices, newLeaves);
+    for (int u = 0; u < updates; ++u)
+      System.arraycopy(newLeaves[u], 0, leaves, indices[u] * LEAF_WIDTH, LEAF_WIDTH);
+    assertArrayEquals(newLeaves[2], tree.data(0, 7));
+
+    FixedLeafTree expected = newFixedTree(leaves, LEAF_WIDTH);
+    assertArrayEquals(expected.hash(), tree.hash());
+    assertTrue(rehashed < updates * tree.idx().height());
+
+    FixedLeafTree copy = tree.immutableCopy();
+    assertArrayEquals(expected.hash(), copy.hash());
+    tree.setLeaf(0, new byte[LEAF_WIDTH]);
+    assertArrayEquals(expected.hash(), copy.hash());
+    assertFalse(Arrays.equals(expected.hash(), tree.hash()));
+  }
+
+
+  @Test
+  public void testStorageViewsAreCopies() {
+    Random random = new Random(47);
+    byte[] leaves = randomLeaves(33, LEAF_WIDTH, random);
+    MutableFixedLeafTree tree = MutableFixedLeafTree.newInstance(newFixedTree(leaves, LEAF_WIDTH));
+    FixedLeafTree before = newFixedTree(leaves, LEAF_WIDTH);
+
+    ByteBuffer dataBlock = tree.dataBlock();
+    ByteBuffer leavesBlock = tree.leavesBlock();
+    FixedLeafTree serial = tree.toBlockLayout(1);
+    FixedLeafTree blocked = tree.toBlockLayout(3);
+    assertNotSame(tree, serial);
+
+    byte[] leaf = new byte[LEAF_WIDTH];
+    random.nextBytes(leaf);
+    tree.setLeaf(5, leaf);
+
+    assertEquals(before.dataBlock(), dataBlock);
+    assertEquals(before.leavesBlock(), leavesBlock);
+    assertArrayEquals(before.hash(), serial.hash());
+    assertArrayEquals(before.hash(), blocked.hash());
+    assertFalse(serial instanceof MutableFixedLeafTree);
+    assertArrayEquals(leaf, tree.toBlockLayout(1).data(0, 5));
+  }
+
+
+  @Test
+  public void testVerifyAllDuringUpdates() throws Exception {
+    Random random = new Random(48);
+    final int count = 20_000;
+    FixedLeafTree base = newFixedTree(randomLeaves(count, LEAF_WIDTH, random), LEAF_WIDTH);
+    MutableFixedLeafTree tree = MutableFixedLeafTree.newInstance(base);
+    AtomicBoolean done = new AtomicBoolean();
+    Thread updater = new Thread(() -> {
+      Random r = new Random(49);
+      byte[] leaf = new byte[LEAF_WIDTH];
+      while (!done.get()) {
+        r.nextBytes(leaf);
+        tree.setLeaf(r.nextInt(count), leaf);
+      }
+    });
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    updater.start();
+    try {
+      for (int run = 0; run < 5; ++run)
+        assertTrue(tree.verifyAll(executor).isEmpty());
+    } finally {
+      done.set(true);
+      updater.join();
+      executor.shutdown();
+    }
+  }
+
+
+  @Test
+  public void testWriteDuringUpdates() throws Exception {
+    Random random = new Random(50);
+    final int count = 4_000;
+    FixedLeafTree base = newFixedTree(randomLeaves(count, LEAF_WIDTH, random), LEAF_WIDTH);
+    MutableFixedLeafTree tree = MutableFixedLeafTree.newInstance(base);
+    AtomicBoolean done = new AtomicBoolean();
+    Thread updater = new Thread(() -> {
+      Random r = new Random(51);
+      byte[] leaf = new byte[LEAF_WIDTH];
+      while (!done.get()) {
+        r.nextBytes(leaf);
+        tree.setLeaf(r.nextInt(count), leaf);
+      }
+    });
+    updater.start();
+    try {
+      for (int run = 0; run < 100; ++run) {
+        Tree loaded = writeAndLoad(tree);
+        assertEquals(count, loaded.idx().count());
+        assertHashRecurse(loaded.root(), newDigest());
+      }
+    } finally {
+      done.set(true);
+      updater.join();
+    }
+  }
+
+
+  @Test
+  public void testBadArgs() {
+    byte[] leaves = randomLeaves(5, LEAF_WIDTH, new Random(46));
+    MutableFixedLeafTree tree = MutableFixedLeafTree.newInstance(newFixedTree(leaves, LEAF_WIDTH));
+    assertThrows(IllegalArgumentException.class, () -> tree.setLeaf(0, new byte[LEAF_WIDTH + 1]));
+    assertThrows(IndexOutOfBoundsException.class, () -> tree.setLeaf(5, new byte[LEAF_WIDTH]));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> tree.setLeaves(new int[] { 1 }, new byte[2][LEAF_WIDTH]));
+  }
+
+}
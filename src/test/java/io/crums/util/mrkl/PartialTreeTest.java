@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ */
+public class PartialTreeTest extends TreeTest {
+  
+  
+  @Test
+  public void testTinies() {
+    for (int count = 2; count < 70; ++count) {
+      Tree tree = randomVarTree(count);
+      for (int index = 0; index < count; ++index) {
+        PartialTree partial = PartialTree.newInstance(tree.proof(index));
+        assertTrue(partial.covers(index));
+        assertEquals(tree.proof(index), partial.proof(index));
+        // the chain plus the computed nodes between the leaf and the root
+        assertEquals(2 * tree.proof(index).chainSize() - 3, partial.knownNodes());
+      }
+      
+      PartialTree partial = PartialTree.newInstance(tree.proof(0));
+      for (int index = 0; index < count; ++index)
+        assertTrue(partial.add(tree.proof(index)));
+      assertEquals(tree.idx().totalCount(), partial.knownNodes());
+      for (int level = 0; level <= tree.idx().height(); ++level)
+        for (int index = 0; index < tree.idx().count(level); ++index)
+          assertArrayEquals(tree.data(level, index), partial.data(level, index));
+    }
+  }
+  
+  
+  @Test
+  public void testCoverage() {
+    Tree tree = randomVarTree(1000);
+    PartialTree partial = PartialTree.newInstance(tree.proof(500));
+    assertTrue(partial.covers(500));
+    assertTrue(partial.covers(501));  // sibling
+    assertFalse(partial.covers(502));
+    assertNull(partial.data(0, 502));
+    try {
+      partial.proof(502);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+    
+    // verify covered, without adding
+    assertTrue(partial.verify(tree.proof(501)));
+    // verify uncovered, without adding
+    int known = partial.knownNodes();
+    assertTrue(partial.verify(tree.proof(7)));
+    assertEquals(known, partial.knownNodes());
+    assertFalse(partial.covers(7));
+    
+    assertTrue(partial.add(tree.proof(7)));
+    assertTrue(partial.covers(7));
+    assertEquals(tree.proof(6), partial.proof(6));
+  }
+  
+  
+  @Test
+  public void testTampered() {
+    Tree tree = randomVarTree(777);
+    PartialTree partial = PartialTree.newInstance(tree.proof(3));
+    final int known = partial.knownNodes();
+    
+    for (int index : new int[] { 3, 2, 100, 776 }) {
+      Proof proof = tree.proof(index);
+      for (int c = 0; c < proof.chainSize() - 1; ++c) {
+        byte[][] chain = proof.hashChain().toArray(new byte[0][]);
+        chain[c][chain[c].length - 1]++;
+        Proof bad = new Proof(ALGO, 777, index, chain);
+        assertFalse(partial.verify(bad));
+        assertFalse(partial.add(bad));
+        assertEquals(known, partial.knownNodes());
+      }
+    }
+    
+    // another tree
+    Tree other = randomVarTree(778);
+    assertFalse(partial.verify(other.proof(3)));
+    try {
+      partial.add(other.proof(3));
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ */
+public class PersistentTreeTest extends TreeTest {
+
+  private final static int LEAF_WIDTH = 20;
+
+
+  @Test
+  public void testVersions() {
+    Random random = new Random(45);
+    for (int count = 2; count <= 70; ++count) {
+      byte[] leaves = randomLeaves(count, LEAF_WIDTH, random);
+      FixedLeafTree base = newFixedTree(leaves, LEAF_WIDTH);
+      PersistentTree tree = PersistentTree.newInstance(base);
+      assertEquals(0, tree.version());
+      assertEquals(0, tree.changedNodes());
+      assertArrayEquals(base.hash(), tree.hash());
+
+      List<PersistentTree> versions = new ArrayList<>();
+      List<byte[]> hashes = new ArrayList<>();
+      versions.add(tree);
+      hashes.add(base.hash());
+
+      for (int trial = 0; trial < 4; ++trial) {
+        int index = random.nextInt(count);
+        byte[] leaf = new byte[LEAF_WIDTH];
+        random.nextBytes(leaf);
+        int changed = tree.changedNodes();
+        tree = tree.setLeaf(index, leaf);
+        System.arraycopy(leaf, 0, leaves, index * LEAF_WIDTH, LEAF_WIDTH);
+
+        assertEquals(trial + 1, tree.version());
+        assertTrue(tree.changedNodes() - changed <= tree.idx().height() + 1);
+        FixedLeafTree expected = newFixedTree(leaves, LEAF_WIDTH);
+        assertArrayEquals(expected.hash(), tree.hash(), "count " + count);
+        assertArrayEquals(leaf, tree.data(0, index));
+        assertVersionProof(tree, index, leaf);
+        int other = random.nextInt(count);
+        assertVersionProof(tree, other, tree.data(0, other));
+        assertSame(tree, tree.root().tree());
+        versions.add(tree);
+        hashes.add(expected.hash());
+      }
+      assertHashRecurse(tree.root(), newDigest());
+
+      // old versions are unaffected
+      for (int v = 0; v < versions.size(); ++v)
+        assertArrayEquals(hashes.get(v), versions.get(v).hash());
+      assertArrayEquals(hashes.get(0), base.hash());
+    }
+  }
+
+
+  @Test
+  public void testSetLeaves() {
+    Random random = new Random(46);
+    final int count = 10_001;
+    byte[] leaves = randomLeaves(count, LEAF_WIDTH, random);
+    FixedLeafTree base = newFixedTree(leaves, LEAF_WIDTH);
+    PersistentTree v0 = PersistentTree.newInstance(base);
+
+    // include the last leaf (a carry's right child), and a repeated index
+    final int updates = 500;
+    int[] indices = new int[updates];
+    byte[][] newLeaves = new byte[updates][LEAF_WIDTH];
+    for (int u = 0; u < updates; ++u) {
+      indices[u] = u == 0 ? count - 1 : u == 1 ? 7 : random.nextInt(count);
+      random.nextBytes(newLeaves[u]);
+    }
+    indices[2] = 7;
+
+    PersistentTree v1 = v0.setLeaves(indices, newLeaves);
+    for (int u = 0; u < updates; ++u)
+      System.arraycopy(newLeaves[u], 0, leaves, indices[u] * LEAF_WIDTH, LEAF_WIDTH);
+    assertArrayEquals(newLeaves[2], v1.data(0, 7));
+    assertArrayEquals(newFixedTree(leaves, LEAF_WIDTH).hash(), v1.hash());
+    assertArrayEquals(base.hash(), v0.hash());
+    assertTrue(v1.changedNodes() < updates * (v1.idx().height() + 1));
+    assertVersionProof(v1, count - 1, newLeaves[0]);
+    assertVersionProof(v1, 7, newLeaves[2]);
+    assertVersionProof(v0, 7, base.data(0, 7));
+    assertSame(base, v1.base());
+  }
+
+
+  @Test
+  public void testVariableWidthBase() {
+    Builder builder = newBuilder();
+    Random random = new Random(47);
+    for (int i = 0; i < 13; ++i) {
+      byte[] item = new byte[1 + random.nextInt(30)];
+      random.nextBytes(item);
+      builder.add(item);
+    }
+    PersistentTree tree = PersistentTree.newInstance(builder.build());
+    byte[] leaf = { 1, 2, 3 };
+    tree = tree.setLeaf(12, leaf).setLeaf(3, leaf);
+    assertArrayEquals(leaf, tree.data(0, 12));
+    assertVersionProof(tree, 12, leaf);
+    assertVersionProof(tree, 3, leaf);
+    assertHashRecurse(tree.root(), newDigest());
+  }
+
+
+  @Test
+  public void testBadArgs() {
+    FixedLeafTree base = newFixedTree(randomLeaves(5, LEAF_WIDTH, new Random(48)), LEAF_WIDTH);
+    PersistentTree tree = PersistentTree.newInstance(base);
+    assertThrows(IllegalArgumentException.class, () -> tree.setLeaf(0, new byte[LEAF_WIDTH + 1]));
+    assertThrows(IndexOutOfBoundsException.class, () -> tree.setLeaf(5, new byte[LEAF_WIDTH]));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> tree.setLeaves(new int[] { 1 }, new byte[2][LEAF_WIDTH]));
+  }
+
+
+  /**
+   * Asserts the version's proof is of the given leaf, and to the version's root.
+   */
+  private void assertVersionProof(PersistentTree version, int index, byte[] leaf) {
+    Proof proof = version.proof(index);
+    assertTrue(proof.verify());
+    assertArrayEquals(leaf, proof.item());
+    assertArrayEquals(version.hash(), proof.rootHash());
+  }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ */
+public class ProofCacheTest extends TreeTest {
+  
+  
+  @Test
+  public void testProof() {
+    Tree tree = randomFixedTree(300, 32);
+    ProofCache cache = new ProofCache(1024 * 1024);
+    
+    Proof proof = cache.proof(tree, 17);
+    assertEquals(tree.proof(17), proof);
+    assertEquals(1, cache.misses());
+    assertEquals(0, cache.hits());
+    assertEquals(1, cache.size());
+    
+    assertSame(proof, cache.proof(tree, 17));
+    assertEquals(1, cache.hits());
+    assertSame(proof, cache.get(tree.hash(), 17));
+    assertNull(cache.get(tree.hash(), 18));
+    
+    // different root, same index
+    Tree other = randomFixedTree(301, 32);
+    assertNull(cache.get(other.hash(), 17));
+    assertEquals(other.proof(17), cache.proof(other, 17));
+    assertEquals(2, cache.size());
+    assertTrue(cache.weight() > 0);
+    
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.weight());
+  }
+  
+  
+  @Test
+  public void testPut() {
+    Tree tree = randomFixedTree(64, 32);
+    ProofCache cache = new ProofCache(1024 * 1024, 1);
+    Proof proof = tree.proof(5);
+    cache.put(proof);
+    assertSame(proof, cache.get(tree.hash(), 5));
+  }
+  
+  
+  @Test
+  public void testMutableTree() throws InterruptedException {
+    MutableFixedLeafTree tree = MutableFixedLeafTree.newInstance(randomFixedTree(512, 32));
+    ProofCache cache = new ProofCache(1024 * 1024);
+    AtomicBoolean done = new AtomicBoolean();
+    Thread updater = new Thread(() -> {
+      Random r = new Random(84);
+      byte[] leaf = new byte[tree.leafWidth()];
+      while (!done.get()) {
+        r.nextBytes(leaf);
+        tree.setLeaf(r.nextInt(512), leaf);
+      }
+    });
+    updater.start();
+    try {
+      for (int index = 0; index < 512; ++index) {
+        Proof proof = cache.proof(tree, index);
+        assertTrue(proof.verify());
+        assertSame(proof, cache.get(proof.rootHash(), index));
+      }
+    } finally {
+      done.set(true);
+      updater.join();
+    }
+  }
+  
+  
+  @Test
+  public void testEviction() {
+    Tree tree = randomFixedTree(1024, 32);
+    Proof proof = tree.proof(0);
+    // room for about 3 proofs in a single stripe
+    long capacity = 3 * (proof.chainBytes() + 100);
+    ProofCache cache = new ProofCache(capacity, 1);
+    for (int index = 0; index < 10; ++index)
+      cache.proof(tree, index);
+    assertTrue(cache.weight() <= capacity);
+    assertEquals(3, cache.size());
+    assertEquals(7, cache.evictions());
+    
+    cache.resetStats();
+    cache.proof(tree, 9);
+    cache.proof(tree, 0);
+    assertEquals(1, cache.hits());
+    assertEquals(1, cache.misses());
+  }
+  
+  
+  @Test
+  public void testConcurrent() throws InterruptedException {
+    Tree tree = randomFixedTree(500, 32);
+    ProofCache cache = new ProofCache(64 * 1024, 4);
+    Thread[] threads = new Thread[4];
+    Throwable[] errors = new Throwable[threads.length];
+    for (int t = 0; t < threads.length; ++t) {
+      final int tt = t;
+      threads[t] = new Thread(() -> {
+        try {
+          Random random = new Random(tt);
+          for (int i = 0; i < 2000; ++i) {
+            int index = random.nextInt(500);
+            assertEquals(index, cache.proof(tree, index).leafIndex());
+          }
+        } catch (Throwable x) {
+          errors[tt] = x;
+        }
+      });
+      threads[t].start();
+    }
+    for (int t = 0; t < threads.length; ++t) {
+      threads[t].join();
+      assertNull(errors[t]);
+    }
+    assertEquals(8000, cache.hits() + cache.misses());
+    assertTrue(cache.weight() <= cache.capacity());
+  }
+
+}
@@ -8,6 +8,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Random;
 
 import org.junit.jupiter.api.Test;
@@ -76,6 +77,37 @@ public class ProofTest extends TreeTest {
   }
 
 
+  @Test
+  public void testLongCoordinates() {
+    final long count = (1L << 35) + 3;
+    final long index = count - 2;
+    int cLen = Proof.chainLength(count, index);
+    assertEquals(cLen - 2, Proof.funnelLength(count, index));
+    for (int c = 3; c < 40; ++c)
+      assertEquals(Proof.chainLength(c, c - 2), Proof.chainLength((long) c, c - 2L));
+    
+    byte[][] chain = new byte[cLen][];
+    Random random = new Random(cLen);
+    for (int i = 0; i < cLen; ++i) {
+      chain[i] = new byte[32];
+      random.nextBytes(chain[i]);
+    }
+    Proof proof = new Proof(ALGO, count, index, chain, true);
+    assertEquals(count, proof.longLeafCount());
+    assertEquals(index, proof.longLeafIndex());
+    assertFalse(proof.verify(newDigest()));
+    try {
+      proof.leafIndex();
+      fail();
+    } catch (ArithmeticException expected) {  }
+    
+    try {
+      new Proof(ALGO, count, index, Arrays.copyOf(chain, cLen - 1), true);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+
+
   @Test
   public void testFunnel() {
     // I keep forgetting it's tested every time..
@@ -86,6 +118,43 @@ public class ProofTest extends TreeTest {
   
   
   
+  @Test
+  public void testScratch() {
+    final int count = 77;
+    Tree tree = newRandomTree(count, 1, 48);
+    MessageDigest digest = newDigest();
+    final int width = digest.getDigestLength();
+    byte[] scratch = new byte[width];
+    byte[] out = new byte[width + 9];
+    for (int leaf = 0; leaf < count; ++leaf) {
+      Proof proof = new Proof(tree, leaf);
+      assertTrue(proof.verify(digest, scratch));
+      
+      proof.computeRoot(digest, out, 9);
+      assertArrayEquals(proof.rootHash(), Arrays.copyOfRange(out, 9, out.length));
+      
+      ByteBuffer item = ByteBuffer.wrap(proof.item());
+      var funnel = proof.funnel();
+      Arrays.fill(out, (byte) 0);
+      Proof.merkleRoot(item, leaf, count, funnel, digest, out, 3);
+      assertArrayEquals(proof.rootHash(), Arrays.copyOfRange(out, 3, 3 + width));
+      assertEquals(0, item.position());
+      
+      // tamper with the item
+      byte[][] chain = proof.hashChain().toArray(new byte[0][]);
+      chain[0][0]++;
+      Proof bad = new Proof(ALGO, count, leaf, chain, false);
+      assertFalse(bad.verify(digest, scratch));
+    }
+    
+    Proof proof = new Proof(tree, 5);
+    assertThrows(IndexOutOfBoundsException.class, () -> proof.verify(digest, new byte[width - 1]));
+    assertThrows(IndexOutOfBoundsException.class, () -> proof.computeRoot(digest, out, 10));
+  }
+  
+  
+  
+  
   private void testRandom(int count) {
     Tree tree = newRandomTree(count, 16, 48);
     MessageDigest digest = newDigest();
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ */
+public class ProofVerifierTest extends TreeTest {
+  
+  
+  @Test
+  public void testBatch() {
+    final int count = 1025;
+    Tree tree = randomVarTree(count);
+    ProofVerifier verifier = new ProofVerifier();
+    long naiveHashes = 0;
+    for (int index = 0; index < count; ++index) {
+      Proof proof = tree.proof(index);
+      naiveHashes += Proof.funnelLength(count, index) + 1;
+      assertTrue(proof.verify(verifier));
+    }
+    assertEquals(1, verifier.roots());
+    assertEquals(tree.idx().totalCount(), verifier.verifiedNodes());
+    // each internal node is computed at most once
+    assertTrue(verifier.hashCount() <= count - 1);
+    assertTrue(verifier.hashCount() * 5 < naiveHashes);
+    
+    // re-verification is free
+    long hashes = verifier.hashCount();
+    for (int index = 0; index < count; index += 7)
+      assertTrue(verifier.verify(tree.proof(index)));
+    assertEquals(hashes, verifier.hashCount());
+  }
+  
+  
+  @Test
+  public void testTampered() {
+    Tree tree = randomVarTree(100);
+    ProofVerifier verifier = new ProofVerifier();
+    assertTrue(verifier.verify(tree.proof(50)));
+    
+    Proof proof = tree.proof(51);
+    byte[][] chain = proof.hashChain().toArray(new byte[0][]);
+    chain[0][0]++;
+    assertFalse(verifier.verify(new Proof(ALGO, 100, 51, chain)));
+    
+    // a bad root is its own (unverifiable) root, and is not remembered
+    chain = proof.hashChain().toArray(new byte[0][]);
+    chain[chain.length - 1][0]++;
+    assertFalse(new Proof(ALGO, 100, 51, chain).verify(verifier));
+    assertEquals(1, verifier.roots());
+  }
+  
+  
+  @Test
+  public void testBogusRootsDontEvict() {
+    Tree tree = randomVarTree(100);
+    ProofVerifier verifier = new ProofVerifier(1);
+    assertTrue(verifier.verify(tree.proof(50)));
+    
+    Proof proof = tree.proof(51);
+    for (int i = 0; i < 5; ++i) {
+      byte[][] chain = proof.hashChain().toArray(new byte[0][]);
+      chain[chain.length - 1][0] += 1 + i;
+      assertFalse(verifier.verify(new Proof(ALGO, 100, 51, chain)));
+    }
+    assertEquals(1, verifier.roots());
+    
+    // the legit root is still remembered
+    long before = verifier.hashCount();
+    assertTrue(verifier.verify(tree.proof(50)));
+    assertEquals(before, verifier.hashCount());
+  }
+  
+  
+  @Test
+  public void testMaxRoots() {
+    ProofVerifier verifier = new ProofVerifier(2);
+    for (int count = 10; count < 15; ++count) {
+      Tree tree = randomVarTree(count);
+      assertTrue(verifier.verify(tree.proof(count / 2)));
+    }
+    assertEquals(2, verifier.roots());
+    verifier.clear();
+    assertEquals(0, verifier.roots());
+  }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ */
+public class SortedFixedLeafTreeTest extends TreeTest {
+
+  private final static int LEAF_WIDTH = 8;
+
+
+  @Test
+  public void testIndexOf() {
+    Random random = new Random(49);
+    for (int count = 2; count < 200; count += 1 + count / 3) {
+      byte[][] items = sortedItems(count, random);
+      SortedFixedLeafTree tree = newTree(items);
+      for (int index = 0; index < count; ++index) {
+        assertEquals(index, tree.indexOf(items[index]));
+        assertTrue(tree.proofOf(items[index]).verify());
+      }
+      byte[] missing = new byte[LEAF_WIDTH];
+      do {
+        random.nextBytes(missing);
+      } while (Arrays.stream(items).anyMatch(item -> Arrays.equals(item, missing)));
+      assertEquals(-1, tree.indexOf(missing));
+      assertFalse(tree.contains(missing));
+      assertNull(tree.proofOf(missing));
+    }
+  }
+
+
+  @Test
+  public void testAbsenceProof() {
+    Random random = new Random(50);
+    final int count = 1001;
+    byte[][] items = sortedItems(count, random);
+    SortedFixedLeafTree tree = newTree(items);
+
+    for (int trial = 0; trial < 200; ++trial) {
+      byte[] item = new byte[LEAF_WIDTH];
+      random.nextBytes(item);
+      if (tree.contains(item))
+        continue;
+      AbsenceProof proof = tree.absenceProof(item);
+      assertTrue(proof.verify());
+      assertArrayEquals(tree.hash(), proof.rootHash());
+      assertEquals(count, proof.leafCount());
+    }
+
+    // below the first, and above the last
+    byte[] low = new byte[LEAF_WIDTH];
+    byte[] high = new byte[LEAF_WIDTH];
+    Arrays.fill(high, (byte) -1);
+    if (!tree.contains(low)) {
+      AbsenceProof proof = tree.absenceProof(low);
+      assertNull(proof.left());
+      assertEquals(0, proof.right().leafIndex());
+      assertTrue(proof.verify());
+    }
+    if (!tree.contains(high)) {
+      AbsenceProof proof = tree.absenceProof(high);
+      assertNull(proof.right());
+      assertEquals(count - 1, proof.left().leafIndex());
+      assertTrue(proof.verify());
+    }
+
+    assertThrows(IllegalArgumentException.class, () -> tree.absenceProof(tree.data(0, 5)));
+  }
+
+
+  @Test
+  public void testForgedAbsenceProof() {
+    Random random = new Random(51);
+    byte[][] items = sortedItems(64, random);
+    SortedFixedLeafTree tree = newTree(items);
+    byte[] present = items[20];
+
+    // non-adjacent leaves bracketing a present item
+    assertFalse(new AbsenceProof(present, tree.proof(19), tree.proof(21)).verify());
+    // adjacent leaves not bracketing the item
+    assertFalse(new AbsenceProof(present, tree.proof(30), tree.proof(31)).verify());
+    // missing edge proof
+    assertFalse(new AbsenceProof(present, null, tree.proof(21)).verify());
+    assertFalse(new AbsenceProof(present, tree.proof(19), null).verify());
+    // proofs from different trees
+    SortedFixedLeafTree other = newTree(sortedItems(64, random));
+    byte[] item = tree.data(0, 40);
+    ++item[LEAF_WIDTH - 1];
+    if (!tree.contains(item))
+      assertFalse(new AbsenceProof(item, tree.proof(40), other.proof(41)).verify());
+    assertThrows(IllegalArgumentException.class, () -> new AbsenceProof(item, null, null));
+  }
+
+
+  @Test
+  public void testUnsorted() {
+    Random random = new Random(52);
+    byte[][] items = sortedItems(10, random);
+    byte[][] swapped = items.clone();
+    swapped[4] = items[5];
+    swapped[5] = items[4];
+    assertThrows(IllegalArgumentException.class, () -> newTree(swapped));
+
+    byte[][] duplicate = items.clone();
+    duplicate[5] = items[4];
+    assertThrows(IllegalArgumentException.class, () -> newTree(duplicate));
+
+    FixedLeafTree unsorted = FixedLeafTree.newInstance(
+        ByteBuffer.wrap(concat(swapped)), LEAF_WIDTH, ALGO);
+    assertThrows(IllegalArgumentException.class, () -> SortedFixedLeafTree.newInstance(unsorted));
+
+    FixedLeafTree sorted = FixedLeafTree.newInstance(
+        ByteBuffer.wrap(concat(items)), LEAF_WIDTH, ALGO);
+    SortedFixedLeafTree view = SortedFixedLeafTree.newInstance(sorted);
+    assertArrayEquals(sorted.hash(), view.hash());
+    assertEquals(7, view.indexOf(items[7]));
+    assertThrows(IllegalArgumentException.class, () -> view.indexOf(new byte[LEAF_WIDTH + 1]));
+  }
+
+
+  @Test
+  public void testMutableSourceCopied() {
+    byte[][] items = sortedItems(20, new Random(53));
+    FixedLeafTree sorted = FixedLeafTree.newInstance(
+        ByteBuffer.wrap(concat(items)), LEAF_WIDTH, ALGO);
+    MutableFixedLeafTree mutable = MutableFixedLeafTree.newInstance(sorted);
+    SortedFixedLeafTree view = SortedFixedLeafTree.newInstance(mutable);
+
+    // breaks the order in the mutable tree, but not in the view
+    mutable.setLeaf(3, items[19]);
+    assertEquals(3, view.indexOf(items[3]));
+    assertEquals(19, view.indexOf(items[19]));
+    assertArrayEquals(sorted.hash(), view.hash());
+  }
+
+
+  @Test
+  public void testUnsignedOrder() {
+    // 0x7f < 0x80 as unsigned bytes
+    byte[][] items = new byte[3][LEAF_WIDTH];
+    items[1][0] = 0x7f;
+    items[2][0] = (byte) 0x80;
+    SortedFixedLeafTree tree = newTree(items);
+    assertEquals(2, tree.indexOf(items[2]));
+    byte[] between = new byte[LEAF_WIDTH];
+    between[0] = 0x7f;
+    between[1] = 1;
+    AbsenceProof proof = tree.absenceProof(between);
+    assertEquals(1, proof.left().leafIndex());
+    assertTrue(proof.verify());
+  }
+
+
+  private SortedFixedLeafTree newTree(byte[][] items) {
+    return SortedFixedLeafTree.newInstance(ByteBuffer.wrap(concat(items)), LEAF_WIDTH, ALGO);
+  }
+
+
+  private byte[] concat(byte[][] items) {
+    ByteBuffer leaves = ByteBuffer.allocate(items.length * LEAF_WIDTH);
+    for (byte[] item : items)
+      leaves.put(item);
+    return leaves.array();
+  }
+
+
+  private byte[][] sortedItems(int count, Random random) {
+    var set = new TreeSet<byte[]>(Arrays::compareUnsigned);
+    while (set.size() < count) {
+      byte[] item = new byte[LEAF_WIDTH];
+      random.nextBytes(item);
+      set.add(item);
+    }
+    return set.toArray(new byte[count][]);
+  }
+
+}
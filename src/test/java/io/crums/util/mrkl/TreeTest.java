@@ -6,8 +6,14 @@ package io.crums.util.mrkl;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Random;
 
 /**
  * (Factored out test code.)
@@ -47,9 +53,74 @@ abstract class TreeTest {
     return new Builder(algo);
   }
   
+  
+  /**
+   * Returns a tree with {@code count} random items of varying width (1 to 40 bytes).
+   * The items are seeded by {@code count}.
+   */
+  protected Tree randomVarTree(int count) {
+    Random random = new Random(count);
+    Builder builder = newBuilder();
+    for (int index = 0; index < count; ++index) {
+      byte[] item = new byte[1 + random.nextInt(40)];
+      random.nextBytes(item);
+      builder.add(item);
+    }
+    return builder.build();
+  }
+  
+  
+  /**
+   * Returns a fixed-width tree with {@code count} random leaves, seeded by {@code count}.
+   */
+  protected FixedLeafTree randomFixedTree(int count, int leafWidth) {
+    return newFixedTree(randomLeaves(count, leafWidth, new Random(count)), leafWidth);
+  }
+  
+  
+  /**
+   * Returns a fixed-width tree over the given leaves block.
+   */
+  protected FixedLeafTree newFixedTree(byte[] leaves, int leafWidth) {
+    return FixedLeafTree.newInstance(ByteBuffer.wrap(leaves), leafWidth, algo);
+  }
+  
+  
+  /**
+   * Returns a block of {@code count} random leaves, each {@code leafWidth} bytes wide.
+   */
+  protected static byte[] randomLeaves(int count, int leafWidth, Random random) {
+    byte[] leaves = new byte[count * leafWidth];
+    random.nextBytes(leaves);
+    return leaves;
+  }
+  
 
   
   
+  /**
+   * Writes the given tree (with a checksum) to memory, and loads it back, verifying
+   * the checksum.
+   */
+  protected static Tree writeAndLoad(Tree tree) {
+    return Trees.load(ByteBuffer.wrap(toBytes(tree)), true);
+  }
+  
+  
+  /**
+   * Returns the given tree written (with a checksum) as a byte array.
+   */
+  protected static byte[] toBytes(Tree tree) {
+    var out = new ByteArrayOutputStream();
+    try {
+      tree.writeTo(Channels.newChannel(out));
+    } catch (IOException iox) {
+      throw new UncheckedIOException(iox);
+    }
+    return out.toByteArray();
+  }
+  
+  
   public static void assertHash(Node node, MessageDigest digest) {
     assertHash(node, digest, false);
   }
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 
+ */
+public class TreesTest extends TreeTest {
+  
+  @TempDir
+  Path dir;
+  
+  
+  @Test
+  public void testFixed() throws IOException {
+    for (int count = 2; count < 40; ++count) {
+      Tree tree = randomTree(count, 32, 32);
+      Tree loaded = writeAndLoad(tree, "fixed-" + count, true);
+      assertTrue(loaded instanceof FixedLeafTree);
+      assertSameTree(tree, loaded);
+    }
+  }
+  
+  
+  @Test
+  public void testBlocked() throws IOException {
+    FixedLeafTree tree = ((FixedLeafTree) randomTree(1029, 32, 32)).toBlockLayout(4);
+    Tree loaded = writeAndLoad(tree, "blocked", true);
+    assertEquals(4, ((FixedLeafTree) loaded).blockLevels());
+    assertSameTree(tree, loaded);
+  }
+  
+  
+  @Test
+  public void testVariable() throws IOException {
+    for (int count = 2; count < 40; ++count) {
+      Tree tree = randomTree(count, 0, 67);
+      Tree loaded = writeAndLoad(tree, "var-" + count, true);
+      assertEquals(-1, loaded.leafWidth());
+      assertTrue(loaded instanceof CompactFreeLeafTree);
+      assertSameTree(tree, loaded);
+    }
+  }
+  
+  
+  @Test
+  public void testDelta() throws IOException {
+    Tree base = randomTree(19, 32, 32);
+    DeltaBuilder builder = new DeltaBuilder(base);
+    byte[] item = new byte[32];
+    Random random = new Random(5);
+    for (int i = 0; i < 6; ++i) {
+      random.nextBytes(item);
+      builder.add(item);
+    }
+    Tree tree = builder.build();
+    assertTrue(tree instanceof DeltaTree);
+    Tree loaded = writeAndLoad(tree, "delta", false);
+    assertTrue(loaded instanceof FixedLeafTree);
+    assertSameTree(tree, loaded);
+  }
+  
+  
+  @Test
+  public void testChecksum() throws IOException {
+    Tree tree = randomTree(9, 32, 32);
+    Path file = dir.resolve("corrupt");
+    try (var ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      tree.writeTo(ch);
+    }
+    byte[] bytes = Files.readAllBytes(file);
+    ++bytes[bytes.length - 1];
+    Files.write(file, bytes);
+    
+    Trees.load(file);
+    try {
+      Trees.load(file, true);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+  
+  
+  @Test
+  public void testBadMagic() {
+    ByteBuffer block = ByteBuffer.allocate(Trees.HEADER_SIZE + 128);
+    try {
+      Trees.load(block, false);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+  
+  
+  @Test
+  public void testBadAlgoNameLength() throws IOException {
+    ByteBuffer block = writeToBuffer(randomTree(9, 32, 32));
+    for (int length : new int[] { 0, 0x7f, 0x80, 0xff }) {
+      ByteBuffer corrupt = ByteBuffer.allocate(block.capacity()).put(block.duplicate()).flip();
+      corrupt.put(40, (byte) length);
+      assertThrows(IllegalArgumentException.class, () -> Trees.load(corrupt, false));
+    }
+    Trees.load(block, false);
+  }
+  
+  
+  @Test
+  public void testBadBlockLevels() throws IOException {
+    ByteBuffer fixed = writeToBuffer(randomTree(9, 32, 32));
+    for (int levels : new int[] { -1, -128, 17 })
+      assertThrows(IllegalArgumentException.class, () -> Trees.load(blockLevels(fixed, levels), false));
+    assertEquals(1, ((FixedLeafTree) Trees.load(blockLevels(fixed, 0), false)).blockLevels());
+    
+    ByteBuffer variable = writeToBuffer(randomTree(9, 0, 67));
+    assertThrows(IllegalArgumentException.class, () -> Trees.load(blockLevels(variable, 3), false));
+    Trees.load(blockLevels(variable, 0), false);
+  }
+  
+  
+  private ByteBuffer blockLevels(ByteBuffer block, int levels) {
+    ByteBuffer copy = ByteBuffer.allocate(block.capacity()).put(block.duplicate()).flip();
+    return copy.put(7, (byte) levels);
+  }
+  
+  
+  @Test
+  public void testFileTreeBuilder() throws IOException {
+    final int count = 1037;
+    Tree tree = randomTree(count, 32, 32);
+    Path leaves = dir.resolve("leaves");
+    try (var ch = FileChannel.open(leaves, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      ch.write(((FixedLeafTree) tree).leavesBlock());
+    }
+    Path file = dir.resolve("tree");
+    long written = new FileTreeBuilder(ALGO, 32, 256).writeTreeFile(leaves, file);
+    assertEquals(Files.size(file), written);
+    assertSameTree(tree, Trees.load(file, true));
+  }
+  
+  
+  @Test
+  public void testDiff() {
+    final int width = 16;
+    Random random = new Random(46);
+    for (int count = 2; count < 100; ++count) {
+      byte[] leaves = new byte[count * width];
+      random.nextBytes(leaves);
+      Tree a = FixedLeafTree.newInstance(ByteBuffer.wrap(leaves), width, ALGO);
+      assertTrue(Trees.diff(a, a).isEmpty());
+
+      byte[] changed = leaves.clone();
+      for (int trial = random.nextInt(4); trial-- > 0; )
+        ++changed[random.nextInt(changed.length)];
+      ++changed[changed.length - 1];
+      Tree b = FixedLeafTree.newInstance(ByteBuffer.wrap(changed), width, ALGO);
+
+      List<LeafRange> expected = scanDiff(a, b);
+      assertEquals(expected, Trees.diff(a, b), "count " + count);
+      assertEquals(expected, Trees.diff(b, a));
+      assertEquals(expected, Trees.parallelDiff(a, b));
+    }
+  }
+
+
+  @Test
+  public void testParallelDiff() {
+    final int count = 100_003;
+    final int width = 8;
+    Random random = new Random(47);
+    byte[] leaves = new byte[count * width];
+    random.nextBytes(leaves);
+    byte[] changed = leaves.clone();
+    // a contiguous run, and scattered leaves
+    for (int i = 5000 * width; i < 7000 * width; i += width)
+      ++changed[i];
+    for (int trial = 0; trial < 3000; ++trial)
+      ++changed[random.nextInt(changed.length)];
+
+    Tree a = FixedLeafTree.newInstance(ByteBuffer.wrap(leaves), width, ALGO);
+    Tree b = FixedLeafTree.newInstance(ByteBuffer.wrap(changed), width, ALGO);
+    List<LeafRange> expected = scanDiff(a, b);
+    assertTrue(expected.stream().anyMatch(r -> r.contains(5000) && r.contains(6999)));
+    assertEquals(expected, Trees.diff(a, b));
+    assertEquals(expected, Trees.parallelDiff(a, b));
+  }
+
+
+  @Test
+  public void testDiffVariable() {
+    Tree a = randomTree(37, 0, 67);
+    Builder builder = newBuilder();
+    for (int index = 0; index < 37; ++index)
+      builder.add(index == 36 ? new byte[] { 1 } : a.data(0, index));
+    Tree b = builder.build();
+    assertEquals(List.of(new LeafRange(36, 37)), Trees.diff(a, b));
+  }
+
+
+  @Test
+  public void testDiffMismatch() {
+    Tree a = randomTree(9, 32, 32);
+    Tree b = randomTree(10, 32, 32);
+    assertThrows(IllegalArgumentException.class, () -> Trees.diff(a, b));
+    assertThrows(IllegalArgumentException.class, () -> Trees.parallelDiff(a, b));
+  }
+
+
+  /**
+   * Returns the differing leaf ranges by comparing every leaf.
+   */
+  private List<LeafRange> scanDiff(Tree a, Tree b) {
+    var ranges = new ArrayList<LeafRange>();
+    int start = -1;
+    final int count = a.idx().count();
+    for (int index = 0; index <= count; ++index) {
+      boolean differs = index < count && !Arrays.equals(a.data(0, index), b.data(0, index));
+      if (differs && start == -1)
+        start = index;
+      else if (!differs && start != -1) {
+        ranges.add(new LeafRange(start, index));
+        start = -1;
+      }
+    }
+    return ranges;
+  }
+
+
+  private ByteBuffer writeToBuffer(Tree tree) throws IOException {
+    var out = new ByteArrayOutputStream();
+    tree.writeTo(Channels.newChannel(out));
+    return ByteBuffer.wrap(out.toByteArray());
+  }
+  
+  
+  private Tree writeAndLoad(Tree tree, String filename, boolean checksum) throws IOException {
+    Path file = dir.resolve(filename);
+    long written;
+    try (var ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      written = tree.writeTo(ch, checksum);
+    }
+    assertEquals(Files.size(file), written);
+    return Trees.load(file, true);
+  }
+  
+  
+  static void assertSameTree(Tree expected, Tree actual) {
+    assertEquals(expected.getHashAlgo(), actual.getHashAlgo());
+    assertEquals(expected.idx(), actual.idx());
+    assertEquals(expected.leafWidth(), actual.leafWidth());
+    for (int level = 0; level <= expected.idx().height(); ++level)
+      for (int index = 0; index < expected.idx().count(level); ++index)
+        assertArrayEquals(expected.data(level, index), actual.data(level, index));
+  }
+  
+  
+  Tree randomTree(int count, int minWidth, int maxWidth) {
+    Builder builder = newBuilder();
+    Random random = new Random(count);
+    for (int i = 0; i < count; ++i) {
+      byte[] item = new byte[minWidth + random.nextInt(maxWidth - minWidth + 1)];
+      random.nextBytes(item);
+      builder.add(item);
+    }
+    return builder.build();
+  }
+
+}
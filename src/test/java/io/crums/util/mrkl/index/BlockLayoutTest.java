@@ -0,0 +1,84 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.index;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ */
+public class BlockLayoutTest {
+  
+  
+  @Test
+  public void testSerial() {
+    for (int count = 2; count < 300; ++count) {
+      TreeIndex<?> idx = TreeIndex.newGeneric(count);
+      BlockLayout layout = new BlockLayout(idx, 1);
+      for (int level = 1; level <= idx.height(); ++level)
+        for (int index = 0; index < idx.count(level); ++index)
+          assertEquals(idx.serialIndex(level, index), layout.slot(level, index));
+    }
+  }
+  
+  
+  @Test
+  public void testBijection() {
+    for (int count = 2; count < 600; ++count)
+      for (int blockLevels = 2; blockLevels < 7; ++blockLevels)
+        assertBijection(count, blockLevels);
+    assertBijection(1024 * 1024 - 3, 4);
+  }
+  
+  
+  @Test
+  public void testFullBlocksContiguous() {
+    final int blockLevels = 3;
+    TreeIndex<?> idx = TreeIndex.newGeneric(1000);
+    BlockLayout layout = new BlockLayout(idx, blockLevels);
+    // band 0 covers levels 1..3; the block under (3, j) must occupy 7 adjacent slots
+    final int blockSize = (1 << blockLevels) - 1;
+    for (int j = 0; j + 1 < idx.count(3); ++j) {
+      int start = layout.slot(3, j);
+      assertEquals(start + 1, layout.slot(2, 2 * j));
+      assertEquals(start + 2, layout.slot(2, 2 * j + 1));
+      for (int k = 0; k < 4; ++k)
+        assertEquals(start + 3 + k, layout.slot(1, 4 * j + k));
+      if (j > 0)
+        assertEquals(start - blockSize, layout.slot(3, j - 1));
+    }
+  }
+  
+  
+  @Test
+  public void testBounds() {
+    BlockLayout layout = new BlockLayout(TreeIndex.newGeneric(17), 2);
+    try {
+      layout.slot(0, 0);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {  }
+    try {
+      new BlockLayout(TreeIndex.newGeneric(17), 0);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+  
+  
+  private void assertBijection(int count, int blockLevels) {
+    TreeIndex<?> idx = TreeIndex.newGeneric(count);
+    BlockLayout layout = new BlockLayout(idx, blockLevels);
+    boolean[] taken = new boolean[count - 1];
+    for (int level = 1; level <= idx.height(); ++level) {
+      for (int index = 0; index < idx.count(level); ++index) {
+        int slot = layout.slot(level, index);
+        assertFalse(taken[slot], layout + ": (" + level + ":" + index + ") -> " + slot);
+        taken[slot] = true;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.index;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ */
+public class LongTreeIndexTest {
+  
+  @Test
+  public void testOne() {
+    try {
+      new LongTreeIndex(1);
+      fail();
+    } catch (IllegalArgumentException expected) {  }
+  }
+  
+  
+  @Test
+  public void testAgainstTreeIndex() {
+    for (int count = 2; count < 300; ++count)
+      assertSameStructure(TreeIndex.newGeneric(count), new LongTreeIndex(count));
+  }
+  
+  
+  @Test
+  public void testBeyondInt() {
+    final long count = (1L << 33) + 0x5a5a5L;
+    LongTreeIndex idx = new LongTreeIndex(count);
+    assertEquals(34, idx.height());
+    assertEquals(2 * count - 1, idx.totalCount());
+    
+    long total = 0;
+    for (int level = 0; level <= idx.height(); ++level)
+      total += idx.count(level);
+    assertEquals(idx.totalCount(), total);
+    assertEquals(1, idx.count(idx.height()));
+    assertEquals(idx.totalCount() - count, idx.serialIndex(0, 0));
+    
+    // walk every leaf path at the right edge to the root
+    for (long leaf = count - 70; leaf < count; ++leaf) {
+      LongNode node = idx.getNode(0, leaf);
+      while (node.level() != idx.height()) {
+        LongNode sibling = idx.getSibling(node.level(), node.index());
+        assertNotEquals(node.isRight(), sibling.isRight());
+        LongNode parent = idx.getParent(node.level(), node.index());
+        LongNode left = node.isLeft() ? node : sibling;
+        assertEquals(idx.getLeftChild(parent.level(), parent.index()), left);
+        node = parent;
+      }
+      assertEquals(0, node.index());
+    }
+  }
+  
+  
+  @Test
+  public void testTreeIndexTotalCountOverflow() {
+    assertEquals(Integer.MAX_VALUE, TreeIndex.newGeneric(1 << 30).totalCount());
+    try {
+      TreeIndex.newGeneric((1 << 30) + 1).totalCount();
+      fail();
+    } catch (ArithmeticException expected) {  }
+  }
+  
+  
+  private void assertSameStructure(TreeIndex<?> expected, LongTreeIndex idx) {
+    assertEquals(expected.height(), idx.height());
+    assertEquals(expected.totalCount(), idx.totalCount());
+    for (int level = 0; level <= expected.height(); ++level) {
+      assertEquals(expected.count(level), idx.count(level));
+      assertEquals(expected.hasCarry(level), idx.hasCarry(level));
+      for (int index = 0; index < expected.count(level); ++index) {
+        assertEquals(expected.serialIndex(level, index), idx.serialIndex(level, index));
+        assertEquals(expected.isRight(level, index), idx.isRight(level, index));
+        if (level < expected.height()) {
+          assertSameNode(expected.getSibling(level, index), idx.getSibling(level, index));
+          assertSameNode(expected.getParent(level, index), idx.getParent(level, index));
+        }
+        if (level > 0)
+          assertSameNode(expected.getRightChild(level, index), idx.getRightChild(level, index));
+      }
+    }
+  }
+  
+  
+  private void assertSameNode(AbstractNode expected, LongNode node) {
+    assertEquals(expected.level(), node.level());
+    assertEquals(expected.index(), node.index());
+    assertEquals(expected.isRight(), node.isRight());
+  }
+
+}
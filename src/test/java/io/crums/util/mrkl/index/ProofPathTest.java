@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.index;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ */
+public class ProofPathTest {
+
+  @Test
+  public void testBadArgs() {
+    assertThrows(IllegalArgumentException.class, () -> ProofPath.hops(1, 0));
+    assertThrows(IndexOutOfBoundsException.class, () -> ProofPath.hops(5, 5));
+    assertThrows(IndexOutOfBoundsException.class, () -> ProofPath.rightMask(5, -1));
+  }
+
+
+  @Test
+  public void testExhaustive() {
+    for (int count = 2; count <= 700; ++count) {
+      LongTreeIndex idx = new LongTreeIndex(count);
+      for (int leaf = 0; leaf < count; ++leaf)
+        assertPath(idx, leaf);
+    }
+  }
+
+
+  @Test
+  public void testBeyondInt() {
+    Random random = new Random(42);
+    for (int trial = 0; trial < 50; ++trial) {
+      long count = (1L << 32) + (random.nextLong() >>> 20);
+      LongTreeIndex idx = new LongTreeIndex(count);
+      assertPath(idx, 0);
+      assertPath(idx, count - 1);
+      assertPath(idx, count - 2);
+      assertPath(idx, (random.nextLong() >>> 1) % count);
+    }
+  }
+
+
+  /**
+   * Asserts the closed-form path agrees with navigating the tree index.
+   */
+  private void assertPath(LongTreeIndex idx, long leafIndex) {
+    int hops = 0;
+    long rightMask = 0;
+    int uncommonHop = -1;
+
+    LongNode node = idx.getNode(0, leafIndex);
+    while (node.level() != idx.height()) {
+      LongNode sibling = idx.getSibling(node.level(), node.index());
+      LongNode left = node.isLeft() ? node : sibling;
+      LongNode right = node.isLeft() ? sibling : node;
+      if (node.isRight())
+        rightMask |= 1L << hops;
+      if (right.isLeaf() && !left.isLeaf()) {
+        assertEquals(-1, uncommonHop, "more than one uncommon hop");
+        uncommonHop = hops;
+      } else
+        assertEquals(hops == 0, right.isLeaf());
+      ++hops;
+      node = idx.getParent(node.level(), node.index());
+    }
+
+    final long count = idx.count();
+    String msg = leafIndex + ":" + count;
+    assertEquals(hops, ProofPath.hops(count, leafIndex), msg);
+    assertEquals(rightMask, ProofPath.rightMask(count, leafIndex), msg);
+    assertEquals(uncommonHop, ProofPath.uncommonHop(count, leafIndex), msg);
+  }
+
+}
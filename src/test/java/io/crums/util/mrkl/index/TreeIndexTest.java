@@ -329,6 +329,72 @@ public class TreeIndexTest {
   }
   
   
+  @Test
+  public void testPrecomputedNavigation() {
+    for (int count = 2; count <= 1100; ++count) {
+      TreeIndex<AbstractNode> tree = newTreeIndex(count);
+      int serialIndex = 0;
+      for (int level = tree.height(); level >= 0; --level) {
+        for (int index = 0; index < tree.count(level); ++index, ++serialIndex) {
+          assertEquals(serialIndex, tree.serialIndex(level, index));
+          assertEquals(scanIsRight(tree, level, index), tree.isRight(level, index));
+          if (level != tree.height()) {
+            AbstractNode sibling = tree.getSibling(level, index);
+            assertEquals(scanSibling(tree, level, index), sibling);
+            assertEquals(!tree.isRight(level, index), sibling.isRight());
+          }
+          if (level != 0) {
+            int rightLevel = tree.getRightChild(level, index).level();
+            assertEquals(rightLevel, tree.rightChildLevel(level, index));
+          }
+        }
+      }
+      assertEquals(tree.totalCount(), serialIndex);
+    }
+  }
+  
+  
+  /**
+   * Reference (scanning) implementation of {@code TreeIndex.isRight}.
+   */
+  private boolean scanIsRight(TreeIndex<?> tree, int level, int index) {
+    if ((index & 1) == 1)
+      return true;
+    if (index != tree.maxIndex(level) || level == tree.height())
+      return false;
+    int carries = 0;
+    for (int v = level; v >= 0; --v) {
+      if (tree.maxIndexJoinsCarry(v))
+        ++carries;
+      if (tree.hasCarry(v))
+        break;
+    }
+    assertTrue(carries == 1 || carries == 2);
+    return carries == 1;
+  }
+  
+  
+  /**
+   * Reference (scanning) implementation of {@code TreeIndex.getSibling}.
+   */
+  private AbstractNode scanSibling(TreeIndex<?> tree, int level, int index) {
+    if ((index & 1) == 1)
+      return AbstractNode.FACTORY.newNode(level, index - 1, false);
+    if (index < tree.maxIndex(level))
+      return AbstractNode.FACTORY.newNode(level, index + 1, true);
+    if (!tree.hasCarry(level)) {
+      for (int subLevel = level; subLevel-- > 0; ) {
+        if (tree.maxIndexJoinsCarry(subLevel))
+          return AbstractNode.FACTORY.newNode(subLevel, tree.maxIndex(subLevel), true);
+        else if (tree.hasCarry(subLevel))
+          break;
+      }
+    }
+    while (!tree.maxIndexJoinsCarry(++level));
+    return AbstractNode.FACTORY.newNode(level, tree.maxIndex(level), false);
+  }
+  
+  
   private void assertRoot(TreeIndex<?> tree, AbstractNode root) {
     assertEquals(tree.height(), root.level());
     assertEquals(0, root.index());
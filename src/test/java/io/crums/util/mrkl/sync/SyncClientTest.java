@@ -0,0 +1,156 @@
+/*
+ * Copyright 2026 Babak Farhang
+ */
+package io.crums.util.mrkl.sync;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import io.crums.util.mrkl.Builder;
+import io.crums.util.mrkl.FixedLeafTree;
+import io.crums.util.mrkl.LeafRange;
+import io.crums.util.mrkl.Tree;
+import io.crums.util.mrkl.Trees;
+
+/**
+ *
+ */
+public class SyncClientTest {
+
+  private final static String ALGO = "SHA-256";
+  private final static int LEAF_WIDTH = 16;
+
+
+  @Test
+  public void testInSync() throws IOException {
+    Tree tree = newTree(randomLeaves(100, new Random(47)));
+    var transport = new LoopbackTransport(new SyncResponder(tree));
+    SyncResult result = new SyncClient(tree, transport).sync();
+    assertTrue(result.isInSync());
+    assertEquals(1, result.roundTrips());
+    assertEquals(1, transport.exchanges());
+    assertSame(tree, result.applyTo(tree).base());
+  }
+
+
+  @Test
+  public void testSync() throws IOException {
+    Random random = new Random(48);
+    for (int count = 2; count < 80; ++count) {
+      byte[] leaves = randomLeaves(count, random);
+      byte[] remoteLeaves = leaves.clone();
+      for (int trial = random.nextInt(4); trial-- > 0; )
+        ++remoteLeaves[random.nextInt(remoteLeaves.length)];
+      ++remoteLeaves[remoteLeaves.length - 1];
+      Tree local = newTree(leaves);
+      Tree remote = newTree(remoteLeaves);
+
+      for (int levels = 1; levels <= 5; ++levels) {
+        var transport = new LoopbackTransport(new SyncResponder(remote));
+        SyncResult result = new SyncClient(local, transport, levels).sync();
+        assertSync(local, remote, result);
+        assertEquals(transport.exchanges(), result.roundTrips());
+        int height = local.idx().height();
+        assertTrue(result.roundTrips() <= 1 + (height + levels - 1) / levels);
+      }
+    }
+  }
+
+
+  @Test
+  public void testBatchingSavesRoundTrips() throws IOException {
+    final int count = 70_001;
+    Random random = new Random(49);
+    byte[] leaves = randomLeaves(count, random);
+    byte[] remoteLeaves = leaves.clone();
+    for (int trial = 0; trial < 40; ++trial)
+      ++remoteLeaves[random.nextInt(remoteLeaves.length)];
+    Tree local = newTree(leaves);
+    Tree remote = newTree(remoteLeaves);
+
+    SyncResult slow = new SyncClient(local, new LoopbackTransport(new SyncResponder(remote)), 1).sync();
+    SyncResult fast = new SyncClient(local, new LoopbackTransport(new SyncResponder(remote)), 6).sync();
+    assertSync(local, remote, slow);
+    assertSync(local, remote, fast);
+    assertEquals(1 + local.idx().height(), slow.roundTrips());
+    assertTrue(fast.roundTrips() <= 1 + (local.idx().height() + 5) / 6);
+  }
+
+
+  @Test
+  public void testVariableWidth() throws IOException {
+    Random random = new Random(50);
+    Builder a = new Builder(ALGO);
+    Builder b = new Builder(ALGO);
+    for (int i = 0; i < 29; ++i) {
+      byte[] item = new byte[1 + random.nextInt(40)];
+      random.nextBytes(item);
+      a.add(item);
+      b.add(i == 11 ? new byte[] { 7 } : item);
+    }
+    Tree local = a.build();
+    Tree remote = b.build();
+    SyncResult result = new SyncClient(local, new LoopbackTransport(new SyncResponder(remote))).sync();
+    assertEquals(List.of(new LeafRange(11, 12)), result.ranges());
+    assertArrayEquals(new byte[] { 7 }, result.remoteLeaf(11));
+    assertSync(local, remote, result);
+  }
+
+
+  @Test
+  public void testMismatch() {
+    Tree local = newTree(randomLeaves(9, new Random(51)));
+    Tree remote = newTree(randomLeaves(10, new Random(51)));
+    var client = new SyncClient(local, new LoopbackTransport(new SyncResponder(remote)));
+    assertThrows(IllegalArgumentException.class, client::sync);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new SyncClient(local, new LoopbackTransport(new SyncResponder(remote)), 0));
+  }
+
+
+  @Test
+  public void testBadRequest() {
+    var responder = new SyncResponder(newTree(randomLeaves(9, new Random(52))));
+    assertThrows(IllegalArgumentException.class, () -> responder.respond(ByteBuffer.allocate(0)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> responder.respond(ByteBuffer.allocate(1).put((byte) 99).flip()));
+    ByteBuffer request = ByteBuffer.allocate(10).put(Protocol.NODES).putInt(1);
+    request.put((byte) 1).putInt(5).flip();
+    assertThrows(IllegalArgumentException.class, () -> responder.respond(request));
+  }
+
+
+  private void assertSync(Tree local, Tree remote, SyncResult result) {
+    assertEquals(Trees.diff(local, remote), result.ranges());
+    int leaves = 0;
+    for (LeafRange range : result.ranges()) {
+      leaves += range.size();
+      for (int index = range.start(); index < range.end(); ++index)
+        assertArrayEquals(remote.data(0, index), result.remoteLeaf(index));
+    }
+    assertEquals(leaves, result.leafCount());
+    assertArrayEquals(remote.hash(), result.applyTo(local).hash());
+  }
+
+
+  private Tree newTree(byte[] leaves) {
+    return FixedLeafTree.newInstance(ByteBuffer.wrap(leaves), LEAF_WIDTH, ALGO);
+  }
+
+
+  private byte[] randomLeaves(int count, Random random) {
+    byte[] leaves = new byte[count * LEAF_WIDTH];
+    random.nextBytes(leaves);
+    return leaves;
+  }
+
+}